@@ -0,0 +1,52 @@
+package com.banking.payment.benchmark;
+
+import com.banking.payment.dto.PaymentRequest;
+import com.banking.payment.model.Payment;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Representative payloads shared by the benchmarks, shaped like the ones the API receives.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static PaymentRequest validRequest() {
+        return PaymentRequest.builder()
+                .senderAccount("1234567890")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal("1000.00"))
+                .currency("INR")
+                .paymentMethod("UPI")
+                .description("Benchmark payment")
+                .build();
+    }
+
+    static PaymentRequest invalidRequest() {
+        return PaymentRequest.builder()
+                .senderAccount("12AB")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal("0.00"))
+                .currency("JPY")
+                .build();
+    }
+
+    static Payment payment() {
+        return Payment.builder()
+                .id(1L)
+                .transactionId("TXN-6f1c2d3e-4b5a-4c7d-8e9f-0a1b2c3d4e5f")
+                .senderAccount("1234567890")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal("1000.00"))
+                .currency("INR")
+                .status(Payment.PaymentStatus.PENDING)
+                .paymentMethod("UPI")
+                .description("Benchmark payment")
+                .createdAt(LocalDateTime.of(2024, 1, 15, 10, 30))
+                .updatedAt(LocalDateTime.of(2024, 1, 15, 10, 30))
+                .build();
+    }
+}
@@ -0,0 +1,54 @@
+package com.banking.payment.benchmark;
+
+import com.banking.payment.PaymentProcessingSystemApplication;
+import com.banking.payment.dto.PaymentRequest;
+import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.service.PaymentService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link PaymentService#createPayment}: validation, insert and outbox write
+ * against H2, with the outbox relay and listeners draining to the embedded vm:// broker in
+ * the background, as in the integration tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class CreatePaymentBenchmark {
+
+    private ConfigurableApplicationContext context;
+    private PaymentService paymentService;
+    private PaymentRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(PaymentProcessingSystemApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .properties(
+                        "logging.level.root=WARN",
+                        "logging.level.com.banking.payment=WARN",
+                        "spring.jpa.show-sql=false")
+                .run();
+        paymentService = context.getBean(PaymentService.class);
+        request = BenchmarkFixtures.validRequest();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public PaymentResponse createPayment() {
+        return paymentService.createPayment(request);
+    }
+}
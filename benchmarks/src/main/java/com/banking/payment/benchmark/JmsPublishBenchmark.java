@@ -0,0 +1,124 @@
+package com.banking.payment.benchmark;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.messaging.JmsProducer;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.notification.PaymentNotification;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.Connection;
+import jakarta.jms.JMSException;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Notification sends to the embedded vm:// broker, scored in messages per second.
+ * {@code connection-per-batch} is how {@link JmsProducer} sent before it went through a
+ * {@link CachingConnectionFactory}: a new connection, session and producer for every batch.
+ * {@code cached} is the current transacted path and {@code cached-async} the
+ * {@code payment.notifications.async-send} mode, waiting for every broker confirmation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@OperationsPerInvocation(JmsPublishBenchmark.MESSAGES)
+public class JmsPublishBenchmark {
+
+    static final int MESSAGES = 100;
+
+    @Param({"connection-per-batch", "cached", "cached-async"})
+    private String mode;
+
+    @Param({"1", "10", "100"})
+    private int batchSize;
+
+    private ActiveMQConnectionFactory brokerConnectionFactory;
+    private CachingConnectionFactory cachingConnectionFactory;
+    private Connection drainConnection;
+    private MessageConverter converter;
+    private JmsProducer producer;
+    private List<List<PaymentNotification>> batches;
+
+    @Setup(Level.Trial)
+    public void setUp() throws JMSException {
+        // JmsProducer logs every batch at INFO
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME))
+                .setLevel(ch.qos.logback.classic.Level.WARN);
+
+        brokerConnectionFactory = new ActiveMQConnectionFactory("vm://bench?broker.persistent=false");
+        brokerConnectionFactory.setProducerWindowSize(1024 * 1024);
+
+        // Keeps the queue empty so the broker does not start flow-controlling the producers
+        drainConnection = brokerConnectionFactory.createConnection();
+        Session drainSession = drainConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer drain = drainSession.createConsumer(drainSession.createQueue(JmsConfig.PAYMENT_NOTIFICATION_QUEUE));
+        drain.setMessageListener(message -> { });
+        drainConnection.start();
+
+        converter = new JmsConfig().jacksonJmsMessageConverter();
+        cachingConnectionFactory = new CachingConnectionFactory(brokerConnectionFactory);
+        cachingConnectionFactory.setSessionCacheSize(10);
+        cachingConnectionFactory.setCacheProducers(true);
+        JmsTemplate jmsTemplate = new JmsTemplate(cachingConnectionFactory);
+        jmsTemplate.setMessageConverter(converter);
+        producer = new JmsProducer(jmsTemplate, cachingConnectionFactory,
+                new PaymentMetrics(new SimpleMeterRegistry()), "cached-async".equals(mode));
+
+        batches = new ArrayList<>();
+        for (int start = 0; start < MESSAGES; start += batchSize) {
+            List<PaymentNotification> batch = new ArrayList<>();
+            for (int i = start; i < Math.min(start + batchSize, MESSAGES); i++) {
+                batch.add(new PaymentNotification("TXN-" + i, "COMPLETED",
+                        "Payment processed successfully", LocalDateTime.now()));
+            }
+            batches.add(batch);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws JMSException {
+        cachingConnectionFactory.destroy();
+        drainConnection.close();
+    }
+
+    @Benchmark
+    public void publish() throws JMSException {
+        if ("connection-per-batch".equals(mode)) {
+            for (List<PaymentNotification> batch : batches) {
+                publishOverNewConnection(batch);
+            }
+            return;
+        }
+        List<CompletableFuture<Void>> sent = new ArrayList<>(batches.size());
+        for (List<PaymentNotification> batch : batches) {
+            sent.add(producer.publishNotifications(batch));
+        }
+        CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new)).join();
+    }
+
+    private void publishOverNewConnection(List<PaymentNotification> batch) throws JMSException {
+        try (Connection connection = brokerConnectionFactory.createConnection();
+             Session session = connection.createSession(true, Session.SESSION_TRANSACTED)) {
+            MessageProducer messageProducer = session.createProducer(session.createQueue(JmsConfig.PAYMENT_NOTIFICATION_QUEUE));
+            for (PaymentNotification notification : batch) {
+                messageProducer.send(converter.toMessage(notification, session));
+            }
+            session.commit();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.banking.payment.benchmark;
+
+import com.banking.payment.notification.NotificationDispatcher;
+import com.banking.payment.notification.PaymentNotification;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The JSON body written for every notification {@link NotificationDispatcher} publishes,
+ * measured without the broker send.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NotificationMessageBenchmark {
+
+    private ObjectWriter writer;
+    private PaymentNotification notification;
+
+    @Setup
+    public void setUp() {
+        writer = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build()
+                .writerFor(PaymentNotification.class);
+        notification = new PaymentNotification(BenchmarkFixtures.payment().getTransactionId(),
+                "COMPLETED", "Payment processed successfully", LocalDateTime.now());
+    }
+
+    @Benchmark
+    public String notificationPayload() throws JsonProcessingException {
+        return writer.writeValueAsString(notification);
+    }
+}
@@ -0,0 +1,31 @@
+package com.banking.payment.benchmark;
+
+import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.model.Payment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity to DTO copy performed for every payment returned by the API.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PaymentMappingBenchmark {
+
+    private Payment payment;
+
+    @Setup
+    public void setUp() {
+        payment = BenchmarkFixtures.payment();
+    }
+
+    @Benchmark
+    public PaymentResponse fromEntity() {
+        return PaymentResponse.fromEntity(payment);
+    }
+}
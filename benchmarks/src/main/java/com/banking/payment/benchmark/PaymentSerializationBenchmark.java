@@ -0,0 +1,58 @@
+package com.banking.payment.benchmark;
+
+import com.banking.payment.messaging.PaymentMessage;
+import com.banking.payment.messaging.PaymentMessageCodec;
+import com.banking.payment.model.Payment;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wire encoding of a payment between pipeline stages: the binary {@link PaymentMessageCodec}
+ * used by PaymentOutbox and JmsConsumer, next to the Jackson round trip of the full
+ * {@link Payment} that older messages still use. Jackson uses the application's builder defaults.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PaymentSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Payment payment;
+    private String json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        payment = BenchmarkFixtures.payment();
+        json = objectMapper.writeValueAsString(payment);
+        binary = PaymentMessageCodec.encode(PaymentMessage.from(payment));
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return PaymentMessageCodec.encode(PaymentMessage.from(payment));
+    }
+
+    @Benchmark
+    public PaymentMessage decodeBinary() {
+        return PaymentMessageCodec.decode(binary);
+    }
+
+    @Benchmark
+    public String serializeJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(payment);
+    }
+
+    @Benchmark
+    public Payment deserializeJson() throws JsonProcessingException {
+        return objectMapper.readValue(json, Payment.class);
+    }
+}
@@ -1,12 +1,19 @@
 package com.banking.payment.config;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
 import jakarta.jms.ConnectionFactory;
 import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.ActiveMQSession;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
 import org.springframework.jms. annotation.EnableJms;
 import org.springframework.jms. config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.connection.CachingConnectionFactory;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.support.converter.MappingJackson2MessageConverter;
 import org.springframework. jms.support.converter.MessageConverter;
@@ -25,23 +32,52 @@ public class JmsConfig {
     @Value("${spring.activemq.password}")
     private String password;
 
+    @Value("${payment.processing.batch.enabled:false}")
+    private boolean batchProcessing;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${payment.jms.producer.session-cache-size:10}")
+    private int producerSessionCacheSize;
+
+    @Value("${payment.jms.producer.window-bytes:1048576}")
+    private int producerWindowBytes;
+
     public static final String PAYMENT_QUEUE = "payment.queue";
     public static final String PAYMENT_PROCESSING_QUEUE = "payment.processing.queue";
     public static final String PAYMENT_NOTIFICATION_QUEUE = "payment.notification.queue";
+    public static final String PAYMENT_RETRY_QUEUE = "payment.retry.queue";
+    public static final String PAYMENT_DEAD_LETTER_QUEUE = "payment.dead.letter.queue";
 
+    // Consumers (listener containers, batch consumer) open their own long-lived connections from this one
     @Bean
+    @Primary
     public ConnectionFactory connectionFactory() {
         ActiveMQConnectionFactory factory = new ActiveMQConnectionFactory();
         factory.setBrokerURL(brokerUrl);
         factory.setUserName(username);
         factory.setPassword(password);
+        // Caps unacknowledged bytes per producer for async sends
+        factory.setProducerWindowSize(producerWindowBytes);
+        return factory;
+    }
+
+    // Every send shares one connection and reuses cached sessions and producers instead of
+    // opening and closing all three per message or batch
+    @Bean
+    public CachingConnectionFactory producerConnectionFactory() {
+        CachingConnectionFactory factory = new CachingConnectionFactory(connectionFactory());
+        factory.setSessionCacheSize(producerSessionCacheSize);
+        factory.setCacheProducers(true);
+        factory.setReconnectOnException(true);
         return factory;
     }
 
     @Bean
     public JmsTemplate jmsTemplate() {
         JmsTemplate template = new JmsTemplate();
-        template.setConnectionFactory(connectionFactory());
+        template.setConnectionFactory(producerConnectionFactory());
         template.setMessageConverter(jacksonJmsMessageConverter());
         return template;
     }
@@ -52,14 +88,56 @@ public class JmsConfig {
         factory.setConnectionFactory(connectionFactory());
         factory.setMessageConverter(jacksonJmsMessageConverter());
         factory.setConcurrency("3-10");
+        applyThreading(factory);
+        return factory;
+    }
+
+    // Messages are acknowledged one by one when their async processing finishes, not when the listener returns.
+    // In batch mode BatchPaymentConsumer reads the queue instead and these containers stay stopped.
+    @Bean
+    public DefaultJmsListenerContainerFactory processingListenerContainerFactory() {
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+        factory.setAutoStartup(!batchProcessing);
+        factory.setConnectionFactory(connectionFactory());
+        factory.setMessageConverter(jacksonJmsMessageConverter());
+        factory.setSessionAcknowledgeMode(ActiveMQSession.INDIVIDUAL_ACKNOWLEDGE);
+        factory.setConcurrency("3-10");
+        applyThreading(factory);
+        return factory;
+    }
+
+    // Retry messages are held unacknowledged until their delay is up, then acknowledged one by one.
+    // A single consumer with its own prefetch, so waiting retries never hold processing consumers.
+    @Bean
+    public DefaultJmsListenerContainerFactory retryListenerContainerFactory() {
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory());
+        factory.setSessionAcknowledgeMode(ActiveMQSession.INDIVIDUAL_ACKNOWLEDGE);
+        factory.setConcurrency("1");
+        applyThreading(factory);
         return factory;
     }
 
+    // Listener consumers normally each hold a platform thread. With spring.threads.virtual.enabled
+    // (Java 21+) they run on virtual threads, so a consumer blocked on JDBC or the broker only
+    // parks; Tomcat request threads switch over through Spring Boot itself.
+    private void applyThreading(DefaultJmsListenerContainerFactory factory) {
+        if (virtualThreads) {
+            factory.setTaskExecutor(new VirtualThreadTaskExecutor("jms-listener-"));
+        }
+    }
+
     @Bean
     public MessageConverter jacksonJmsMessageConverter() {
         MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
         converter.setTargetType(MessageType.TEXT);
         converter.setTypeIdPropertyName("_type");
+        // java.time support for notification timestamps; the converter's default mapper has none
+        converter.setObjectMapper(JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build());
         return converter;
     }
 }
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.banking.payment.controller;
+
+import com.banking.payment.dto.AccountBalanceResponse;
+import com.banking.payment.dto.DepositRequest;
+import com.banking.payment.exception.UnsupportedCurrencyException;
+import com.banking.payment.ledger.PaymentLedger;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/ledger")
+@ConditionalOnProperty(name = "payment.ledger.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class LedgerController {
+
+    // Same set PaymentRequest and DepositRequest accept
+    private static final Set<String> SUPPORTED_CURRENCIES = Set.of("INR", "USD", "EUR", "GBP");
+
+    private final PaymentLedger paymentLedger;
+
+    @PostMapping("/deposits")
+    public ResponseEntity<AccountBalanceResponse> deposit(@Valid @RequestBody DepositRequest request) {
+        log.info("Received deposit of {} {} for {}", request.getAmount(), request.getCurrency(), request.getAccount());
+        paymentLedger.deposit(request.getAccount(), request.getCurrency(), request.getAmount());
+        return new ResponseEntity<>(balance(request.getAccount(), request.getCurrency()), HttpStatus.CREATED);
+    }
+
+    @GetMapping("/accounts/{account}/balances/{currency}")
+    public ResponseEntity<AccountBalanceResponse> getBalance(@PathVariable String account,
+                                                             @PathVariable String currency) {
+        if (!SUPPORTED_CURRENCIES.contains(currency)) {
+            throw new UnsupportedCurrencyException("Unsupported currency: " + currency);
+        }
+        return ResponseEntity.ok(balance(account, currency));
+    }
+
+    private AccountBalanceResponse balance(String account, String currency) {
+        return AccountBalanceResponse.builder()
+                .account(account)
+                .currency(currency)
+                .balance(paymentLedger.balance(account, currency))
+                .build();
+    }
+}
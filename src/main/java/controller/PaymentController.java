@@ -1,17 +1,32 @@
 package com.banking.payment.controller;
 
+import com.banking.payment.dto.BatchPaymentResponse;
+import com.banking.payment.dto.PaymentPage;
 import com.banking.payment. dto.PaymentRequest;
 import com.banking.payment.dto. PaymentResponse;
+import com.banking.payment.dto.PaymentStatsResponse;
+import com.banking.payment.metrics.PaymentStatistics;
 import com. banking.payment.model.Payment;
+import com.banking.payment.model.StatsGranularity;
+import com.banking.payment.service.IdempotencyService;
 import com.banking.payment.service.PaymentService;
+import com.banking.payment.service.PaymentStatusBroadcaster;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework. http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/payments")
@@ -19,13 +34,39 @@ import java.util.List;
 @Slf4j
 public class PaymentController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
+    private final ObjectMapper objectMapper;
+    private final PaymentStatusBroadcaster statusBroadcaster;
+    private final PaymentStatistics paymentStatistics;
 
     @PostMapping
-    public ResponseEntity<PaymentResponse> createPayment(@Valid @RequestBody PaymentRequest request) {
+    public ResponseEntity<PaymentResponse> createPayment(
+            @Valid @RequestBody PaymentRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("Received payment request from {} to {}", request.getSenderAccount(), request.getReceiverAccount());
-        PaymentResponse response = paymentService. createPayment(request);
-        return new ResponseEntity<>(response, HttpStatus.CREATED);
+        if (idempotencyKey == null) {
+            PaymentResponse response = paymentService. createPayment(request);
+            return new ResponseEntity<>(response, HttpStatus.CREATED);
+        }
+
+        IdempotencyService.IdempotentResult result =
+                idempotencyService.execute(idempotencyKey, request, () -> paymentService.createPayment(request));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(IDEMPOTENT_REPLAYED_HEADER, String.valueOf(result.replayed()))
+                .body(result.response());
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<BatchPaymentResponse> createPayments(@RequestBody List<PaymentRequest> requests) {
+        log.info("Received batch payment request with {} payments", requests.size());
+        BatchPaymentResponse response = paymentService.createPayments(requests);
+        HttpStatus status = response.getAccepted() == response.getReceived() ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return new ResponseEntity<>(response, status);
     }
 
     @GetMapping("/{id}")
@@ -43,31 +84,102 @@ public class PaymentController {
     }
 
     @GetMapping
-    public ResponseEntity<List<PaymentResponse>> getAllPayments() {
-        log.info("Fetching all payments");
-        List<PaymentResponse> payments = paymentService.getAllPayments();
-        return ResponseEntity.ok(payments);
+    public ResponseEntity<List<PaymentResponse>> getAllPayments(
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(required = false) Integer limit) {
+        log.info("Fetching payments after ID {}", after);
+        return pageResponse(paymentService.getAllPayments(after, limit));
     }
 
     @GetMapping("/sender/{senderAccount}")
-    public ResponseEntity<List<PaymentResponse>> getPaymentsBySender(@PathVariable String senderAccount) {
+    public ResponseEntity<List<PaymentResponse>> getPaymentsBySender(
+            @PathVariable String senderAccount,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(required = false) Integer limit) {
         log.info("Fetching payments for sender: {}", senderAccount);
-        List<PaymentResponse> payments = paymentService.getPaymentsBySender(senderAccount);
-        return ResponseEntity.ok(payments);
+        return pageResponse(paymentService.getPaymentsBySender(senderAccount, after, limit));
     }
 
     @GetMapping("/receiver/{receiverAccount}")
-    public ResponseEntity<List<PaymentResponse>> getPaymentsByReceiver(@PathVariable String receiverAccount) {
+    public ResponseEntity<List<PaymentResponse>> getPaymentsByReceiver(
+            @PathVariable String receiverAccount,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(required = false) Integer limit) {
         log.info("Fetching payments for receiver: {}", receiverAccount);
-        List<PaymentResponse> payments = paymentService.getPaymentsByReceiver(receiverAccount);
-        return ResponseEntity.ok(payments);
+        return pageResponse(paymentService.getPaymentsByReceiver(receiverAccount, after, limit));
     }
 
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<PaymentResponse>> getPaymentsByStatus(@PathVariable Payment.PaymentStatus status) {
+    public ResponseEntity<List<PaymentResponse>> getPaymentsByStatus(
+            @PathVariable Payment.PaymentStatus status,
+            @RequestParam(defaultValue = "0") long after,
+            @RequestParam(required = false) Integer limit) {
         log.info("Fetching payments with status: {}", status);
-        List<PaymentResponse> payments = paymentService.getPaymentsByStatus(status);
-        return ResponseEntity.ok(payments);
+        return pageResponse(paymentService.getPaymentsByStatus(status, after, limit));
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllPayments() {
+        log.info("Streaming all payments");
+        return ndjson(paymentService::streamAllPayments);
+    }
+
+    @GetMapping(value = "/sender/{senderAccount}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPaymentsBySender(@PathVariable String senderAccount) {
+        log.info("Streaming payments for sender: {}", senderAccount);
+        return ndjson(consumer -> paymentService.streamPaymentsBySender(senderAccount, consumer));
+    }
+
+    @GetMapping(value = "/receiver/{receiverAccount}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPaymentsByReceiver(@PathVariable String receiverAccount) {
+        log.info("Streaming payments for receiver: {}", receiverAccount);
+        return ndjson(consumer -> paymentService.streamPaymentsByReceiver(receiverAccount, consumer));
+    }
+
+    @GetMapping(value = "/status/{status}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamPaymentsByStatus(@PathVariable Payment.PaymentStatus status) {
+        log.info("Streaming payments with status: {}", status);
+        return ndjson(consumer -> paymentService.streamPaymentsByStatus(status, consumer));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<PaymentStatsResponse> getPaymentStats(
+            @RequestParam(defaultValue = "HOUR") StatsGranularity granularity) {
+        log.info("Fetching payment statistics by {}", granularity);
+        return ResponseEntity.ok(paymentStatistics.snapshot(granularity));
+    }
+
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToAllPayments() {
+        log.info("Opening status event stream for all payments");
+        SseEmitter emitter = statusBroadcaster.newEmitter();
+        statusBroadcaster.subscribeToAll(emitter);
+        return emitter;
+    }
+
+    @GetMapping(value = "/transaction/{transactionId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToPayment(@PathVariable String transactionId) {
+        log.info("Opening status event stream for transaction: {}", transactionId);
+        SseEmitter emitter = statusBroadcaster.newEmitter();
+        // Subscribe before reading so a change committed in between is not missed
+        PaymentStatusBroadcaster.Subscription subscription = statusBroadcaster.subscribeToTransaction(transactionId, emitter);
+        PaymentResponse current;
+        try {
+            current = paymentService.getPaymentByTransactionId(transactionId);
+        } catch (RuntimeException e) {
+            subscription.close();
+            throw e;
+        }
+        subscription.sendCurrent(current);
+        return emitter;
+    }
+
+    @GetMapping(value = "/accounts/{account}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToAccount(@PathVariable String account) {
+        log.info("Opening status event stream for account: {}", account);
+        SseEmitter emitter = statusBroadcaster.newEmitter();
+        statusBroadcaster.subscribeToAccount(account, emitter);
+        return emitter;
     }
 
     @PatchMapping("/{id}/status")
@@ -85,4 +197,26 @@ public class PaymentController {
         paymentService.deletePayment(id);
         return ResponseEntity.noContent().build();
     }
+
+    private static ResponseEntity<List<PaymentResponse>> pageResponse(PaymentPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        return response.body(page.getItems());
+    }
+
+    // Writes one JSON document per line as rows come off the cursor; nothing is buffered per request
+    private ResponseEntity<StreamingResponseBody> ndjson(Consumer<Consumer<PaymentResponse>> query) {
+        ObjectWriter writer = objectMapper.writerFor(PaymentResponse.class);
+        StreamingResponseBody body = out -> query.accept(payment -> {
+            try {
+                out.write(writer.writeValueAsBytes(payment));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,16 @@
+package com.banking.payment.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AccountBalanceResponse {
+
+    private String account;
+    private String currency;
+    private BigDecimal balance;
+}
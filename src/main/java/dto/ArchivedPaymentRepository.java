@@ -0,0 +1,83 @@
+package com.banking.payment.repository;
+
+import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.dto.PaymentStatsEntry;
+import com.banking.payment.model.ArchivedPayment;
+import com.banking.payment.model.Payment;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+
+/**
+ * Read side of the cold tier, mirroring the keyset and streaming queries of
+ * {@link PaymentRepository} so results from both tiers can be merged by ID.
+ */
+@Repository
+public interface ArchivedPaymentRepository extends JpaRepository<ArchivedPayment, Long> {
+
+    String SELECT_RESPONSE = "select new com.banking.payment.dto.PaymentResponse("
+            + "p.id, p.transactionId, p.senderAccount, p.receiverAccount, p.amount, p.currency, "
+            + "p.status, p.paymentMethod, p.description, p.createdAt, p.updatedAt) from ArchivedPayment p ";
+
+    @Query("select p.id from ArchivedPayment p where p.transactionId = :transactionId")
+    Optional<Long> findIdByTransactionId(@Param("transactionId") String transactionId);
+
+    @Query(SELECT_RESPONSE + "where p.id = :id")
+    Optional<PaymentResponse> findResponseById(@Param("id") Long id);
+
+    @Query(SELECT_RESPONSE + "where p.id > :after order by p.id")
+    List<PaymentResponse> findPage(@Param("after") Long after, Limit limit);
+
+    @Query(SELECT_RESPONSE + "where p.senderAccount = :senderAccount and p.id > :after order by p.id")
+    List<PaymentResponse> findPageBySenderAccount(@Param("senderAccount") String senderAccount,
+                                                  @Param("after") Long after, Limit limit);
+
+    @Query(SELECT_RESPONSE + "where p.receiverAccount = :receiverAccount and p.id > :after order by p.id")
+    List<PaymentResponse> findPageByReceiverAccount(@Param("receiverAccount") String receiverAccount,
+                                                    @Param("after") Long after, Limit limit);
+
+    @Query(SELECT_RESPONSE + "where p.status = :status and p.id > :after order by p.id")
+    List<PaymentResponse> findPageByStatus(@Param("status") Payment.PaymentStatus status,
+                                           @Param("after") Long after, Limit limit);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESPONSE + "order by p.id")
+    Stream<PaymentResponse> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESPONSE + "where p.senderAccount = :senderAccount order by p.id")
+    Stream<PaymentResponse> streamBySenderAccount(@Param("senderAccount") String senderAccount);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESPONSE + "where p.receiverAccount = :receiverAccount order by p.id")
+    Stream<PaymentResponse> streamByReceiverAccount(@Param("receiverAccount") String receiverAccount);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESPONSE + "where p.status = :status order by p.id")
+    Stream<PaymentResponse> streamByStatus(@Param("status") Payment.PaymentStatus status);
+
+    // Copies a batch straight from the hot table; the status check skips rows changed since selection
+    @Modifying
+    @Query("insert into ArchivedPayment (id, transactionId, senderAccount, receiverAccount, amount, currency, "
+            + "status, paymentMethod, description, createdAt, updatedAt, archivedAt) "
+            + "select p.id, p.transactionId, p.senderAccount, p.receiverAccount, p.amount, p.currency, "
+            + "p.status, p.paymentMethod, p.description, p.createdAt, p.updatedAt, local datetime "
+            + "from Payment p where p.id in :ids and p.status = :status")
+    int copyFromPayments(@Param("ids") List<Long> ids, @Param("status") Payment.PaymentStatus status);
+
+    // Full aggregate, run once at startup to rebuild the in-memory statistics totals
+    @Query("select new com.banking.payment.dto.PaymentStatsEntry(p.status, p.currency, count(p), sum(p.amount)) "
+            + "from ArchivedPayment p group by p.status, p.currency")
+    List<PaymentStatsEntry> aggregateByStatusAndCurrency();
+}
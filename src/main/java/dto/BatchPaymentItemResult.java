@@ -0,0 +1,51 @@
+package com.banking.payment.dto;
+
+import com.banking.payment.model.Payment;
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchPaymentItemResult {
+
+    private int index;
+    private ItemStatus status;
+    private Long id;
+    private String transactionId;
+    private List<String> errors;
+
+    public static BatchPaymentItemResult accepted(int index, Payment payment) {
+        return BatchPaymentItemResult.builder()
+                .index(index)
+                .status(ItemStatus.ACCEPTED)
+                .id(payment.getId())
+                .transactionId(payment.getTransactionId())
+                .build();
+    }
+
+    public static BatchPaymentItemResult rejected(int index, List<String> errors) {
+        return BatchPaymentItemResult.builder()
+                .index(index)
+                .status(ItemStatus.REJECTED)
+                .errors(errors)
+                .build();
+    }
+
+    public static BatchPaymentItemResult failed(int index, String error) {
+        return BatchPaymentItemResult.builder()
+                .index(index)
+                .status(ItemStatus.FAILED)
+                .errors(List.of(error))
+                .build();
+    }
+
+    // ACCEPTED: persisted and queued, REJECTED: failed validation, FAILED: persistence error
+    public enum ItemStatus {
+        ACCEPTED,
+        REJECTED,
+        FAILED
+    }
+}
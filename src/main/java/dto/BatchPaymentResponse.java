@@ -0,0 +1,18 @@
+package com.banking.payment.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchPaymentResponse {
+
+    private int received;
+    private int accepted;
+    private int rejected;
+    private int failed;
+    private List<BatchPaymentItemResult> results;
+}
@@ -0,0 +1,26 @@
+package com.banking.payment.dto;
+
+import jakarta.validation.constraints.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DepositRequest {
+
+    @NotBlank(message = "Account is required")
+    @Pattern(regexp = "^[0-9]{10,20}$", message = "Invalid account format")
+    private String account;
+
+    @NotNull(message = "Amount is required")
+    @DecimalMin(value = "0.01", message = "Amount must be greater than 0")
+    @Digits(integer = 13, fraction = 2, message = "Amount must have at most 2 decimal places")
+    private BigDecimal amount;
+
+    @NotBlank(message = "Currency is required")
+    @Pattern(regexp = "^(INR|USD|EUR|GBP)$", message = "Invalid currency")
+    private String currency;
+}
@@ -0,0 +1,36 @@
+package com.banking.payment.repository;
+
+import com.banking.payment.model.JournalEntry;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+@Repository
+public interface JournalEntryRepository extends JpaRepository<JournalEntry, Long> {
+
+    @Query("select max(e.sequence) from JournalEntry e")
+    Optional<Long> findMaxSequence();
+
+    // Replayed on startup on top of the latest snapshot; consume inside a transaction and close
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("select e from JournalEntry e where e.sequence > :after order by e.sequence")
+    Stream<JournalEntry> streamAfter(@Param("after") long after);
+
+    // A payment's suspense legs cancel out once it is settled or released; what is left is still held
+    @Query("select e.paymentId from JournalEntry e where e.account = :account and e.paymentId is not null "
+            + "group by e.paymentId having sum(e.amountMinor) <> 0")
+    List<Long> findOpenPaymentIds(@Param("account") String account);
+}
@@ -0,0 +1,29 @@
+package com.banking.payment.repository;
+
+import com.banking.payment.model.LedgerSnapshotBalance;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
+
+@Repository
+public interface LedgerSnapshotBalanceRepository extends JpaRepository<LedgerSnapshotBalance, Long> {
+
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    Stream<LedgerSnapshotBalance> streamBySnapshotId(Long snapshotId);
+
+    @Modifying
+    @Query("delete from LedgerSnapshotBalance b where b.snapshotId < :snapshotId")
+    int deleteOlderThan(@Param("snapshotId") Long snapshotId);
+}
@@ -0,0 +1,20 @@
+package com.banking.payment.repository;
+
+import com.banking.payment.model.LedgerSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface LedgerSnapshotRepository extends JpaRepository<LedgerSnapshot, Long> {
+
+    Optional<LedgerSnapshot> findFirstByOrderByIdDesc();
+
+    @Modifying
+    @Query("delete from LedgerSnapshot s where s.id < :id")
+    int deleteOlderThan(@Param("id") Long id);
+}
@@ -0,0 +1,22 @@
+package com.banking.payment.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentPage {
+
+    private List<PaymentResponse> items;
+
+    // ID to pass as ?after= for the next page, null when this is the last page
+    private Long nextCursor;
+
+    public static PaymentPage of(List<PaymentResponse> items, int limit) {
+        Long nextCursor = items.size() < limit ? null : items.get(items.size() - 1).getId();
+        return new PaymentPage(items, nextCursor);
+    }
+}
@@ -1,20 +1,151 @@
 package com.banking.payment.repository;
 
+import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.dto.PaymentStatsEntry;
 import com.banking.payment.model.Payment;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository. JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org. springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
+    // Read paths select straight into the DTO: no managed entities, no persistence context growth
+    String SELECT_RESPONSE = "select new com.banking.payment.dto.PaymentResponse("
+            + "p.id, p.transactionId, p.senderAccount, p.receiverAccount, p.amount, p.currency, "
+            + "p.status, p.paymentMethod, p.description, p.createdAt, p.updatedAt) from Payment p ";
+
     Optional<Payment> findByTransactionId(String transactionId);
 
-    List<Payment> findBySenderAccount(String senderAccount);
+    // Batch consumer: one locking IN query per batch instead of a select per message
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Payment> findByTransactionIdIn(Collection<String> transactionIds);
+
+    // Batch final write: locks the rows first so the UPDATE that follows moves exactly these
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<Payment> findByIdInAndStatus(Collection<Long> ids, Payment.PaymentStatus status);
+
+    // Bulk transition; clears the persistence context so loaded entities are not flushed row by row
+    @Modifying(clearAutomatically = true)
+    @Query("update Payment p set p.status = :to, p.updatedAt = :now where p.id in :ids and p.status = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids, @Param("from") Payment.PaymentStatus from,
+                     @Param("to") Payment.PaymentStatus to, @Param("now") LocalDateTime now);
 
-    List<Payment> findByReceiverAccount(String receiverAccount);
+    // Single-statement transitions: the WHERE clause enforces the transition table, the row count reports success
 
+    @Modifying
+    @Query("update Payment p set p.status = :to, p.updatedAt = :now where p.id = :id and p.status in :from")
+    int transition(@Param("id") Long id, @Param("from") Collection<Payment.PaymentStatus> from,
+                   @Param("to") Payment.PaymentStatus to, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update Payment p set p.status = :to, p.updatedAt = :now "
+            + "where p.transactionId = :transactionId and p.status in :from")
+    int transitionByTransactionId(@Param("transactionId") String transactionId,
+                                  @Param("from") Collection<Payment.PaymentStatus> from,
+                                  @Param("to") Payment.PaymentStatus to, @Param("now") LocalDateTime now);
+
+    // Ledger reconciliation on startup; only payments that are in flight
     List<Payment> findByStatus(Payment.PaymentStatus status);
-}
\ No newline at end of file
+
+    // PROCESSING rows nobody has touched since the cutoff: their attempt died without a retry
+    @Query("select p from Payment p where p.status = :status and p.updatedAt < :cutoff "
+            + "and p.gatewayAnswer is null order by p.id")
+    List<Payment> findStale(@Param("status") Payment.PaymentStatus status, @Param("cutoff") LocalDateTime cutoff,
+                            Limit limit);
+
+    // Stale rows whose gateway answer is already known: stored, never sent to the gateway again
+    @Query("select p from Payment p where p.status = :status and p.updatedAt < :cutoff "
+            + "and p.gatewayAnswer is not null order by p.id")
+    List<Payment> findStaleAnswered(@Param("status") Payment.PaymentStatus status,
+                                    @Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    // Leaves updatedAt alone, so the row still counts as stale
+    @Modifying
+    @Query("update Payment p set p.gatewayAnswer = :answer "
+            + "where p.transactionId = :transactionId and p.status = :status")
+    int recordGatewayAnswer(@Param("transactionId") String transactionId, @Param("status") Payment.PaymentStatus status,
+                            @Param("answer") Payment.PaymentStatus answer);
+
+    // Also checks the timestamp, so a payment that was requeued and restarted in the meantime is left alone
+    @Modifying(clearAutomatically = true)
+    @Query("update Payment p set p.status = :to, p.updatedAt = :now "
+            + "where p.id = :id and p.status = :from and p.updatedAt < :cutoff and p.gatewayAnswer is null")
+    int transitionIfStale(@Param("id") Long id, @Param("from") Payment.PaymentStatus from,
+                          @Param("to") Payment.PaymentStatus to, @Param("cutoff") LocalDateTime cutoff,
+                          @Param("now") LocalDateTime now);
+
+    @Query("select p.status from Payment p where p.id = :id")
+    Optional<Payment.PaymentStatus> findStatusById(@Param("id") Long id);
+
+    @Query("select p.id from Payment p where p.transactionId = :transactionId")
+    Optional<Long> findIdByTransactionId(@Param("transactionId") String transactionId);
+
+    @Query(SELECT_RESPONSE + "where p.id = :id")
+    Optional<PaymentResponse> findResponseById(@Param("id") Long id);
+
+    // Keyset pagination: callers pass the last ID they saw, never an offset
+
+    @Query(SELECT_RESPONSE + "where p.id > :after order by p.id")
+    List<PaymentResponse> findPage(@Param("after") Long after, Limit limit);
+
+    @Query(SELECT_RESPONSE + "where p.senderAccount = :senderAccount and p.id > :after order by p.id")
+    List<PaymentResponse> findPageBySenderAccount(@Param("senderAccount") String senderAccount,
+                                                  @Param("after") Long after, Limit limit);
+
+    @Query(SELECT_RESPONSE + "where p.receiverAccount = :receiverAccount and p.id > :after order by p.id")
+    List<PaymentResponse> findPageByReceiverAccount(@Param("receiverAccount") String receiverAccount,
+                                                    @Param("after") Long after, Limit limit);
+
+    @Query(SELECT_RESPONSE + "where p.status = :status and p.id > :after order by p.id")
+    List<PaymentResponse> findPageByStatus(@Param("status") Payment.PaymentStatus status,
+                                           @Param("after") Long after, Limit limit);
+
+    // Forward-only streams for NDJSON export; must be consumed inside a transaction and closed
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESPONSE + "order by p.id")
+    Stream<PaymentResponse> streamAll();
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESPONSE + "where p.senderAccount = :senderAccount order by p.id")
+    Stream<PaymentResponse> streamBySenderAccount(@Param("senderAccount") String senderAccount);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESPONSE + "where p.receiverAccount = :receiverAccount order by p.id")
+    Stream<PaymentResponse> streamByReceiverAccount(@Param("receiverAccount") String receiverAccount);
+
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "500"))
+    @Query(SELECT_RESPONSE + "where p.status = :status order by p.id")
+    Stream<PaymentResponse> streamByStatus(@Param("status") Payment.PaymentStatus status);
+
+    // Archiving: walks (status, id) in key order so each batch is a short index range scan
+
+    @Query("select p.id from Payment p where p.status = :status and p.id > :after and p.updatedAt < :cutoff order by p.id")
+    List<Long> findArchivableIds(@Param("status") Payment.PaymentStatus status, @Param("after") Long after,
+                                 @Param("cutoff") LocalDateTime cutoff, Limit limit);
+
+    @Modifying
+    @Query("delete from Payment p where p.id in :ids and p.status = :status")
+    int deleteArchived(@Param("ids") List<Long> ids, @Param("status") Payment.PaymentStatus status);
+
+    // Full aggregate, run once at startup to rebuild the in-memory statistics totals
+    @Query("select new com.banking.payment.dto.PaymentStatsEntry(p.status, p.currency, count(p), sum(p.amount)) "
+            + "from Payment p group by p.status, p.currency")
+    List<PaymentStatsEntry> aggregateByStatusAndCurrency();
+}
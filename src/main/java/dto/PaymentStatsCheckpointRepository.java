@@ -0,0 +1,20 @@
+package com.banking.payment.repository;
+
+import com.banking.payment.model.PaymentStatsCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface PaymentStatsCheckpointRepository extends JpaRepository<PaymentStatsCheckpoint, Long> {
+
+    List<PaymentStatsCheckpoint> findByInstanceId(String instanceId);
+
+    @Modifying
+    @Query("delete from PaymentStatsCheckpoint c where c.instanceId = :instanceId")
+    int deleteByInstanceId(@Param("instanceId") String instanceId);
+}
@@ -0,0 +1,26 @@
+package com.banking.payment.dto;
+
+import com.banking.payment.model.Payment;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentStatsEntry {
+
+    // Start of the time bucket; null for running totals
+    private LocalDateTime bucketStart;
+    private Payment.PaymentStatus status;
+    private String currency;
+    private long count;
+    private BigDecimal amount;
+
+    // Used by the JPQL aggregate that seeds the totals
+    public PaymentStatsEntry(Payment.PaymentStatus status, String currency, Long count, BigDecimal amount) {
+        this(null, status, currency, count, amount == null ? BigDecimal.ZERO : amount);
+    }
+}
@@ -0,0 +1,27 @@
+package com.banking.payment.dto;
+
+import com.banking.payment.model.StatsGranularity;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentStatsResponse {
+
+    private LocalDateTime generatedAt;
+
+    // The node that answered; the figures are that node's, not the cluster's
+    private String instanceId;
+
+    // Payments currently in each status
+    private List<PaymentStatsEntry> totals;
+
+    private StatsGranularity granularity;
+
+    // Payments entering each status per time bucket, oldest first
+    private List<PaymentStatsEntry> buckets;
+}
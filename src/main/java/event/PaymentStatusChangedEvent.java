@@ -0,0 +1,25 @@
+package com.banking.payment.event;
+
+import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.model.Payment;
+
+/**
+ * Published inside the transaction that changes a payment's status. Listeners that touch
+ * anything outside the database (caches, subscribers, counters) should use
+ * {@code @TransactionalEventListener} so they only see committed transitions.
+ */
+public record PaymentStatusChangedEvent(Long paymentId,
+                                        String transactionId,
+                                        Payment.PaymentStatus previousStatus,
+                                        Payment.PaymentStatus newStatus,
+                                        PaymentResponse payment) {
+
+    public static PaymentStatusChangedEvent of(Payment payment, Payment.PaymentStatus previousStatus) {
+        return new PaymentStatusChangedEvent(
+                payment.getId(),
+                payment.getTransactionId(),
+                previousStatus,
+                payment.getStatus(),
+                PaymentResponse.fromEntity(payment));
+    }
+}
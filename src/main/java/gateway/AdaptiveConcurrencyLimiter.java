@@ -0,0 +1,83 @@
+package com.banking.payment.gateway;
+
+/**
+ * Concurrency limit for gateway calls that follows the gateway's latency. A short-term and a
+ * long-term average of the round trip are kept; while they agree the limit grows by about
+ * sqrt(limit) per sample, and once queueing at the gateway pushes the short-term average above
+ * {@code tolerance} times the long-term one the limit shrinks in proportion. Errors and timeouts
+ * cut the limit by 10%. The limit only grows while at least half of it is in use, so an idle
+ * system does not talk itself into a limit it has never tested.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SHORT_RTT_WEIGHT = 0.2;
+    private static final int LONG_RTT_WINDOW = 600;
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private double limit;
+    private int inFlight;
+    private long samples;
+    private double shortRtt;
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /** Returns a permit without a measurement, e.g. when the call was never made. */
+    public synchronized void release() {
+        inFlight--;
+    }
+
+    /** Returns a permit and adjusts the limit with the call's round trip. */
+    public synchronized void onComplete(long rttNanos, boolean dropped) {
+        int inFlightAtCompletion = inFlight--;
+        if (dropped) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+            return;
+        }
+
+        samples++;
+        if (samples == 1) {
+            shortRtt = rttNanos;
+            longRtt = rttNanos;
+        }
+        shortRtt += (rttNanos - shortRtt) * SHORT_RTT_WEIGHT;
+        longRtt += (rttNanos - longRtt) / Math.min(samples, LONG_RTT_WINDOW);
+        if (longRtt / shortRtt > 2) {
+            // Latency fell well below the baseline (e.g. the gateway recovered); let the baseline follow
+            longRtt *= 0.95;
+        }
+
+        if (inFlightAtCompletion * 2 < limit) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + newLimit * smoothing));
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
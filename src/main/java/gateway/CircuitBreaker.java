@@ -0,0 +1,108 @@
+package com.banking.payment.gateway;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker. Opens when at least {@code failureRatePercent} of the last
+ * {@code windowSize} calls failed (once {@code minimumCalls} have been seen), rejects everything
+ * for {@code openDurationMs}, then lets {@code halfOpenCalls} trial calls through: all of them
+ * succeeding closes it again, any failure reopens it. Declines are answers, not failures.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] window;
+    private final int minimumCalls;
+    private final int failureRatePercent;
+    private final long openDurationNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoClock;
+    private State state = State.CLOSED;
+    private int position;
+    private int calls;
+    private int failures;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialSuccesses;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, int failureRatePercent, long openDurationMs,
+                          int halfOpenCalls, LongSupplier nanoClock) {
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRatePercent = failureRatePercent;
+        this.openDurationNanos = openDurationMs * 1_000_000;
+        this.halfOpenCalls = halfOpenCalls;
+        this.nanoClock = nanoClock;
+    }
+
+    /** Whether a call may go to the gateway now; a half-open breaker hands out a limited number of trials. */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openDurationNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialsStarted = 0;
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsStarted >= halfOpenCalls) {
+                return false;
+            }
+            trialsStarted++;
+        }
+        return true;
+    }
+
+    public synchronized void record(boolean success) {
+        switch (state) {
+            case HALF_OPEN -> {
+                if (!success) {
+                    open();
+                } else if (++trialSuccesses >= halfOpenCalls) {
+                    close();
+                }
+            }
+            case CLOSED -> {
+                if (calls == window.length) {
+                    failures -= window[position] ? 1 : 0;
+                } else {
+                    calls++;
+                }
+                window[position] = !success;
+                failures += success ? 0 : 1;
+                position = (position + 1) % window.length;
+                if (calls >= minimumCalls && failures * 100 >= failureRatePercent * calls) {
+                    open();
+                }
+            }
+            // Late answers from calls started before the breaker opened
+            case OPEN -> { }
+        }
+    }
+
+    /** Milliseconds until an open breaker lets trial calls through; 0 unless it is open. */
+    public synchronized long remainingOpenMs() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        return Math.max(0, openDurationNanos - (nanoClock.getAsLong() - openedAt)) / 1_000_000;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        calls = 0;
+        failures = 0;
+        position = 0;
+    }
+}
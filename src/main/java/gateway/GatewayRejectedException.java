@@ -0,0 +1,27 @@
+package com.banking.payment.gateway;
+
+/** The call was not sent to the gateway: the circuit is open or the bulkhead is full. */
+public class GatewayRejectedException extends RuntimeException {
+
+    private final String reason;
+    private final long retryAfterMs;
+
+    public GatewayRejectedException(String reason, String message) {
+        this(reason, message, 0);
+    }
+
+    public GatewayRejectedException(String reason, String message, long retryAfterMs) {
+        super(message);
+        this.reason = reason;
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /** How long until the gateway is expected to take calls again; 0 when unknown. */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+}
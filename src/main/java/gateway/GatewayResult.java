@@ -0,0 +1,12 @@
+package com.banking.payment.gateway;
+
+public record GatewayResult(boolean approved, String reason) {
+
+    public static GatewayResult approve() {
+        return new GatewayResult(true, null);
+    }
+
+    public static GatewayResult decline(String reason) {
+        return new GatewayResult(false, reason);
+    }
+}
@@ -0,0 +1,16 @@
+package com.banking.payment.gateway;
+
+import com.banking.payment.model.Payment;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Downstream payment gateway. Implementations must not block the calling thread:
+ * the returned future completes when the gateway answers. A call that timed out is retried
+ * later with the same payment, so implementations must treat the transaction ID as an
+ * idempotency key.
+ */
+public interface PaymentGateway {
+
+    CompletableFuture<GatewayResult> process(Payment payment);
+}
@@ -0,0 +1,172 @@
+package com.banking.payment.gateway;
+
+import com.banking.payment.model.Payment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The gateway the processors call. Wraps the implementation named by
+ * {@code payment.gateway.delegate} with:
+ * <ul>
+ *   <li>an {@link AdaptiveConcurrencyLimiter} on calls in flight at the gateway,</li>
+ *   <li>a bulkhead: calls over the limit wait in a queue of at most {@code max-queued}, beyond
+ *       which they are rejected,</li>
+ *   <li>a {@link CircuitBreaker} that rejects calls while the gateway keeps erroring or timing out.</li>
+ * </ul>
+ * Rejected calls complete with {@link GatewayRejectedException} without reaching the gateway; a
+ * circuit-open rejection says how long until the breaker lets trial calls through.
+ * Nothing here blocks the caller.
+ */
+@Component
+@Primary
+@Slf4j
+public class ResilientPaymentGateway implements PaymentGateway {
+
+    private final PaymentGateway delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final CircuitBreaker circuitBreaker;
+    private final int maxQueued;
+    private final long timeoutMs;
+    private final Queue<PendingCall> waiting = new ArrayDeque<>();
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public ResilientPaymentGateway(BeanFactory beanFactory,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${payment.gateway.delegate:simulatedPaymentGateway}") String delegateName,
+                                   @Value("${payment.gateway.timeout-ms:30000}") long timeoutMs,
+                                   @Value("${payment.gateway.limit.initial:20}") int initialLimit,
+                                   @Value("${payment.gateway.limit.min:1}") int minLimit,
+                                   @Value("${payment.gateway.limit.max:1000}") int maxLimit,
+                                   @Value("${payment.gateway.limit.tolerance:2.0}") double tolerance,
+                                   @Value("${payment.gateway.limit.smoothing:0.2}") double smoothing,
+                                   @Value("${payment.gateway.bulkhead.max-queued:1000}") int maxQueued,
+                                   @Value("${payment.gateway.circuit.window-size:100}") int windowSize,
+                                   @Value("${payment.gateway.circuit.minimum-calls:20}") int minimumCalls,
+                                   @Value("${payment.gateway.circuit.failure-rate-percent:50}") int failureRatePercent,
+                                   @Value("${payment.gateway.circuit.open-duration-ms:30000}") long openDurationMs,
+                                   @Value("${payment.gateway.circuit.half-open-calls:5}") int halfOpenCalls) {
+        this(beanFactory.getBean(delegateName, PaymentGateway.class), meterRegistry, timeoutMs,
+                new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, tolerance, smoothing), maxQueued,
+                new CircuitBreaker(windowSize, minimumCalls, failureRatePercent, openDurationMs, halfOpenCalls,
+                        System::nanoTime));
+    }
+
+    public ResilientPaymentGateway(PaymentGateway delegate, MeterRegistry meterRegistry, long timeoutMs,
+                                   AdaptiveConcurrencyLimiter limiter, int maxQueued, CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.timeoutMs = timeoutMs;
+        this.limiter = limiter;
+        this.maxQueued = maxQueued;
+        this.circuitBreaker = circuitBreaker;
+        Gauge.builder("payment.gateway.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit for gateway calls")
+                .register(meterRegistry);
+        Gauge.builder("payment.gateway.inflight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Gateway calls in flight")
+                .register(meterRegistry);
+        Gauge.builder("payment.gateway.queued", this, ResilientPaymentGateway::queued)
+                .description("Gateway calls waiting for the concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("payment.gateway.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public CompletableFuture<GatewayResult> process(Payment payment) {
+        PendingCall call = new PendingCall(payment, new CompletableFuture<>());
+        boolean start;
+        synchronized (waiting) {
+            start = waiting.isEmpty() && limiter.tryAcquire();
+            if (!start) {
+                if (waiting.size() >= maxQueued) {
+                    return reject("bulkhead", "Gateway bulkhead full (" + maxQueued + " calls waiting)", 0);
+                }
+                waiting.add(call);
+            }
+        }
+        if (start && !start(call)) {
+            startWaiting();
+        }
+        return call.result();
+    }
+
+    public int queued() {
+        synchronized (waiting) {
+            return waiting.size();
+        }
+    }
+
+    // Called holding a limiter permit; returns false if the circuit rejected the call and the permit was returned
+    private boolean start(PendingCall call) {
+        if (!circuitBreaker.tryAcquire()) {
+            limiter.release();
+            propagate(reject("circuit_open", "Gateway circuit open", circuitBreaker.remainingOpenMs()), call.result());
+            return false;
+        }
+        long startedAt = System.nanoTime();
+        CompletableFuture<GatewayResult> response;
+        try {
+            response = delegate.process(call.payment()).orTimeout(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+        response.whenComplete((result, error) -> {
+            limiter.onComplete(System.nanoTime() - startedAt, error != null);
+            circuitBreaker.record(error == null);
+            startWaiting();
+        });
+        propagate(response, call.result());
+        return true;
+    }
+
+    private void startWaiting() {
+        while (true) {
+            PendingCall next;
+            synchronized (waiting) {
+                if (waiting.isEmpty() || !limiter.tryAcquire()) {
+                    return;
+                }
+                next = waiting.poll();
+            }
+            start(next);
+        }
+    }
+
+    private CompletableFuture<GatewayResult> reject(String reason, String message, long retryAfterMs) {
+        Counter.builder("payment.gateway.rejected")
+                .description("Gateway calls rejected without reaching the gateway")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        log.debug("⏭️ {}", message);
+        return CompletableFuture.failedFuture(new GatewayRejectedException(reason, message, retryAfterMs));
+    }
+
+    private static void propagate(CompletableFuture<GatewayResult> from, CompletableFuture<GatewayResult> to) {
+        from.whenComplete((result, error) -> {
+            if (error != null) {
+                to.completeExceptionally(error);
+            } else {
+                to.complete(result);
+            }
+        });
+    }
+
+    private record PendingCall(Payment payment, CompletableFuture<GatewayResult> result) {
+    }
+}
@@ -0,0 +1,59 @@
+package com.banking.payment.gateway;
+
+import com.banking.payment.model.Payment;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stand-in for a real gateway: answers after a random latency with a configurable
+ * approval rate. Responses are scheduled on a timer, so any number of payments can
+ * be waiting without holding a thread each.
+ */
+@Component
+@Slf4j
+public class SimulatedPaymentGateway implements PaymentGateway {
+
+    private final long minLatencyMs;
+    private final long maxLatencyMs;
+    private final int successRatePercent;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gateway-sim-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SimulatedPaymentGateway(@Value("${payment.gateway.simulated.min-latency-ms:2000}") long minLatencyMs,
+                                   @Value("${payment.gateway.simulated.max-latency-ms:5000}") long maxLatencyMs,
+                                   @Value("${payment.gateway.simulated.success-rate-percent:90}") int successRatePercent) {
+        this.minLatencyMs = minLatencyMs;
+        this.maxLatencyMs = Math.max(minLatencyMs, maxLatencyMs);
+        this.successRatePercent = successRatePercent;
+    }
+
+    @Override
+    public CompletableFuture<GatewayResult> process(Payment payment) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long latency = minLatencyMs + random.nextLong(maxLatencyMs - minLatencyMs + 1);
+        boolean approved = random.nextInt(100) < successRatePercent;
+
+        CompletableFuture<GatewayResult> result = new CompletableFuture<>();
+        timer.schedule(() -> result.complete(approved
+                        ? GatewayResult.approve()
+                        : GatewayResult.decline("Declined by simulated gateway")),
+                latency, TimeUnit.MILLISECONDS);
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,132 @@
+package com.banking.payment.ledger;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Balances in minor units, one {@code long} per (account, currency). Each pair is mapped once
+ * to an int slot and balances live in paged primitive arrays, so updates neither box nor
+ * allocate. Slots are guarded by striped locks; a transfer locks its two stripes in index
+ * order, so transfers between different accounts rarely contend and never deadlock.
+ */
+final class AccountBalances {
+
+    private static final int PAGE_BITS = 12;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int STRIPES = 64;
+
+    private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final Object allocationLock = new Object();
+    private volatile long[][] pages = new long[16][];
+    private int nextSlot;
+
+    AccountBalances() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    int slot(String account, String currency) {
+        return slots.computeIfAbsent(key(account, currency), key -> allocate());
+    }
+
+    /** Locks the stripes of both slots; pair with {@link #unlock(int, int)}. */
+    void lock(int first, int second) {
+        int a = stripe(first);
+        int b = stripe(second);
+        stripes[Math.min(a, b)].lock();
+        if (a != b) {
+            stripes[Math.max(a, b)].lock();
+        }
+    }
+
+    void unlock(int first, int second) {
+        int a = stripe(first);
+        int b = stripe(second);
+        if (a != b) {
+            stripes[Math.max(a, b)].unlock();
+        }
+        stripes[Math.min(a, b)].unlock();
+    }
+
+    // Callers hold the slot's stripe
+    long get(int slot) {
+        return pages[slot >>> PAGE_BITS][slot & (PAGE_SIZE - 1)];
+    }
+
+    // Callers hold the slot's stripe
+    void add(int slot, long delta) {
+        pages[slot >>> PAGE_BITS][slot & (PAGE_SIZE - 1)] += delta;
+    }
+
+    long read(String account, String currency) {
+        Integer slot = slots.get(key(account, currency));
+        if (slot == null) {
+            return 0;
+        }
+        lock(slot, slot);
+        try {
+            return get(slot);
+        } finally {
+            unlock(slot, slot);
+        }
+    }
+
+    /** Blocks every posting until {@link #unlockAll()}; used to take a consistent copy. */
+    void lockAll() {
+        for (ReentrantLock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+    }
+
+    // Callers hold all stripes
+    Map<String, Long> copy() {
+        Map<String, Long> copy = new HashMap<>(slots.size() * 2);
+        slots.forEach((key, slot) -> copy.put(key, get(slot)));
+        return copy;
+    }
+
+    static String key(String account, String currency) {
+        return account + ':' + currency;
+    }
+
+    static String account(String key) {
+        return key.substring(0, key.lastIndexOf(':'));
+    }
+
+    static String currency(String key) {
+        return key.substring(key.lastIndexOf(':') + 1);
+    }
+
+    private static int stripe(int slot) {
+        return slot & (STRIPES - 1);
+    }
+
+    // Runs inside computeIfAbsent; the slot is visible to other threads only once the map entry is
+    private int allocate() {
+        synchronized (allocationLock) {
+            int slot = nextSlot++;
+            int page = slot >>> PAGE_BITS;
+            long[][] current = pages;
+            if (page >= current.length) {
+                long[][] grown = new long[current.length * 2][];
+                System.arraycopy(current, 0, grown, 0, current.length);
+                current = grown;
+            }
+            if (current[page] == null) {
+                current[page] = new long[PAGE_SIZE];
+            }
+            pages = current;
+            return slot;
+        }
+    }
+}
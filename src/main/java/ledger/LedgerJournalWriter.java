@@ -0,0 +1,171 @@
+package com.banking.payment.ledger;
+
+import com.banking.payment.model.JournalEntry;
+import com.banking.payment.repository.JournalEntryRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind persistence for the journal. Postings are queued in sequence order and a
+ * single writer thread inserts whatever has accumulated in one transaction (group commit),
+ * so the database sees a few large batches instead of a commit per payment. Because batches
+ * commit in order, the persisted journal is always a prefix of the posted one.
+ * <p>
+ * Entries still queued when the process dies are lost; balances rebuilt on restart then
+ * reflect only what was persisted.
+ * <p>
+ * {@link #append} can block on the full queue while holding the sequence lock, so the lock is
+ * a {@link ReentrantLock}: a virtual thread waiting there releases its carrier, where inside
+ * {@code synchronized} it would pin it.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.ledger.enabled", havingValue = "true")
+@Slf4j
+public class LedgerJournalWriter {
+
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(1);
+
+    private final JournalEntryRepository journalEntryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final BlockingQueue<JournalEntry> queue;
+    private final Thread writerThread;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private long lastSequence;
+    private volatile long flushedThrough;
+    private volatile boolean running;
+
+    public LedgerJournalWriter(JournalEntryRepository journalEntryRepository,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${payment.ledger.journal.batch-size:500}") int batchSize,
+                               @Value("${payment.ledger.journal.queue-capacity:100000}") int queueCapacity) {
+        this.journalEntryRepository = journalEntryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.writerThread = new Thread(this::run, "ledger-journal-writer");
+        this.writerThread.setDaemon(true);
+    }
+
+    /** Starts writing after recovery; {@code recoveredThrough} is the last persisted sequence. */
+    void start(long recoveredThrough) {
+        lock.lock();
+        try {
+            lastSequence = recoveredThrough;
+            flushedThrough = recoveredThrough;
+            running = true;
+            writerThread.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Assigns the next sequences to {@code entries} and queues them. Blocks while the queue
+     * is full, which slows postings down to the rate the database can absorb.
+     */
+    long append(JournalEntry... entries) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            for (JournalEntry entry : entries) {
+                entry.setSequence(++lastSequence);
+                queue.put(entry);
+            }
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long lastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long flushedThrough() {
+        return flushedThrough;
+    }
+
+    /** Waits until every entry up to {@code sequence} is committed; false on timeout. */
+    boolean awaitFlushed(long sequence, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (flushedThrough < sequence) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private void run() {
+        List<JournalEntry> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                JournalEntry first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                persist(batch);
+                flushedThrough = batch.get(batch.size() - 1).getSequence();
+                batch.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Retries until the batch commits; later batches must not overtake it
+    private void persist(List<JournalEntry> batch) throws InterruptedException {
+        while (true) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> journalEntryRepository.saveAll(batch));
+                log.debug("Journaled {} ledger entries through sequence {}", batch.size(),
+                        batch.get(batch.size() - 1).getSequence());
+                return;
+            } catch (RuntimeException e) {
+                log.error("❌ Could not write {} journal entries, retrying: {}", batch.size(), e.getMessage());
+                Thread.sleep(RETRY_DELAY.toMillis());
+            }
+        }
+    }
+
+    /** Stops accepting work once the queue is drained; called on shutdown. */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        lock.lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            lock.unlock();
+        }
+        writerThread.join(Duration.ofSeconds(30).toMillis());
+        if (!queue.isEmpty()) {
+            log.warn("⚠️ {} journal entries were not written before shutdown", queue.size());
+        }
+    }
+}
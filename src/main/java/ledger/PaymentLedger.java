@@ -0,0 +1,303 @@
+package com.banking.payment.ledger;
+
+import com.banking.payment.model.JournalEntry;
+import com.banking.payment.model.LedgerSnapshot;
+import com.banking.payment.model.LedgerSnapshotBalance;
+import com.banking.payment.model.Payment;
+import com.banking.payment.repository.JournalEntryRepository;
+import com.banking.payment.repository.LedgerSnapshotBalanceRepository;
+import com.banking.payment.repository.LedgerSnapshotRepository;
+import com.banking.payment.repository.PaymentRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Account balances kept in memory and journaled write-behind. A payment first moves the
+ * amount from the sender to {@link #SUSPENSE_ACCOUNT} (rejected if the sender cannot cover
+ * it), then on to the receiver once the gateway approves, or back to the sender otherwise.
+ * Each step is a double-entry posting applied under the two accounts' stripe locks, so the
+ * check and both updates take microseconds and never wait on the database.
+ * <p>
+ * The ledger tracks which payments are held, so each step is taken at most once per payment:
+ * holding a held payment, or settling or releasing one that is not held, does nothing. Callers
+ * store the payment's final status first and only then settle or release it.
+ * <p>
+ * On startup balances are rebuilt from the latest snapshot plus the journal after it, and then
+ * reconciled with the payment statuses, since entries queued at a crash are lost: holds of
+ * payments that reached a final status are settled or released, and payments still PROCESSING
+ * without a hold are held again. The in-memory balances are authoritative, so the ledger must
+ * run on a single node.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.ledger.enabled", havingValue = "true")
+@Slf4j
+public class PaymentLedger {
+
+    public static final String SUSPENSE_ACCOUNT = "SUSPENSE";
+    public static final String EXTERNAL_ACCOUNT = "EXTERNAL";
+
+    private static final int SNAPSHOT_CHUNK_SIZE = 1000;
+    private static final Duration SNAPSHOT_FLUSH_TIMEOUT = Duration.ofMinutes(1);
+
+    private final AccountBalances balances = new AccountBalances();
+    private final Set<Long> heldPayments = ConcurrentHashMap.newKeySet();
+    private final LedgerJournalWriter journalWriter;
+    private final JournalEntryRepository journalEntryRepository;
+    private final LedgerSnapshotRepository snapshotRepository;
+    private final LedgerSnapshotBalanceRepository snapshotBalanceRepository;
+    private final PaymentRepository paymentRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public PaymentLedger(LedgerJournalWriter journalWriter,
+                         JournalEntryRepository journalEntryRepository,
+                         LedgerSnapshotRepository snapshotRepository,
+                         LedgerSnapshotBalanceRepository snapshotBalanceRepository,
+                         PaymentRepository paymentRepository,
+                         PlatformTransactionManager transactionManager) {
+        this.journalWriter = journalWriter;
+        this.journalEntryRepository = journalEntryRepository;
+        this.snapshotRepository = snapshotRepository;
+        this.snapshotBalanceRepository = snapshotBalanceRepository;
+        this.paymentRepository = paymentRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Moves the payment amount from the sender to suspense; false if the sender cannot cover it.
+     * True without a new posting if the payment is already held.
+     */
+    public boolean hold(Payment payment) {
+        return post(JournalEntry.EntryType.HOLD, payment.getSenderAccount(), SUSPENSE_ACCOUNT, payment, true);
+    }
+
+    /** Moves a held payment on to the receiver; false if it was not held. */
+    public boolean settle(Payment payment) {
+        return post(JournalEntry.EntryType.SETTLE, SUSPENSE_ACCOUNT, payment.getReceiverAccount(), payment, false);
+    }
+
+    /** Returns a held payment to the sender; false if it was not held. */
+    public boolean release(Payment payment) {
+        return post(JournalEntry.EntryType.RELEASE, SUSPENSE_ACCOUNT, payment.getSenderAccount(), payment, false);
+    }
+
+    public boolean isHeld(Long paymentId) {
+        return heldPayments.contains(paymentId);
+    }
+
+    public void deposit(String account, String currency, BigDecimal amount) {
+        post(JournalEntry.EntryType.DEPOSIT, EXTERNAL_ACCOUNT, account, currency, toMinor(amount, currency), null, null, false);
+        log.info("✅ Deposited {} {} to {}", amount, currency, account);
+    }
+
+    public BigDecimal balance(String account, String currency) {
+        return fromMinor(balances.read(account, currency), currency);
+    }
+
+    private boolean post(JournalEntry.EntryType type, String debitAccount, String creditAccount,
+                         Payment payment, boolean requireFunds) {
+        return post(type, debitAccount, creditAccount, payment.getCurrency(),
+                toMinor(payment.getAmount(), payment.getCurrency()),
+                payment.getId(), payment.getTransactionId(), requireFunds);
+    }
+
+    private boolean post(JournalEntry.EntryType type, String debitAccount, String creditAccount, String currency,
+                         long amountMinor, Long paymentId, String transactionId, boolean requireFunds) {
+        int debit = balances.slot(debitAccount, currency);
+        int credit = balances.slot(creditAccount, currency);
+        balances.lock(debit, credit);
+        try {
+            // Already held, or nothing to settle or release. Every payment posting locks the
+            // currency's suspense stripe, so this check cannot race with another step of the payment
+            if (paymentId != null && heldPayments.contains(paymentId) == (type == JournalEntry.EntryType.HOLD)) {
+                return type == JournalEntry.EntryType.HOLD;
+            }
+            if (requireFunds && balances.get(debit) < amountMinor) {
+                return false;
+            }
+            // Journal first: if queueing is interrupted the balances stay untouched
+            journalWriter.append(
+                    entry(type, debitAccount, currency, -amountMinor, paymentId, transactionId),
+                    entry(type, creditAccount, currency, amountMinor, paymentId, transactionId));
+            balances.add(debit, -amountMinor);
+            balances.add(credit, amountMinor);
+            if (type == JournalEntry.EntryType.HOLD) {
+                heldPayments.add(paymentId);
+            } else if (paymentId != null) {
+                heldPayments.remove(paymentId);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while journaling " + type + " for " + transactionId, e);
+        } finally {
+            balances.unlock(debit, credit);
+        }
+    }
+
+    @PostConstruct
+    void recover() {
+        Optional<LedgerSnapshot> snapshot = snapshotRepository.findFirstByOrderByIdDesc();
+        long through = snapshot.map(LedgerSnapshot::getThroughSequence).orElse(0L);
+        long[] replayed = new long[1];
+
+        transactionTemplate.executeWithoutResult(status -> {
+            snapshot.ifPresent(header -> {
+                try (Stream<LedgerSnapshotBalance> rows = snapshotBalanceRepository.streamBySnapshotId(header.getId())) {
+                    rows.forEach(row -> apply(row.getAccount(), row.getCurrency(), row.getBalanceMinor()));
+                }
+            });
+            try (Stream<JournalEntry> tail = journalEntryRepository.streamAfter(through)) {
+                tail.forEach(entry -> {
+                    apply(entry.getAccount(), entry.getCurrency(), entry.getAmountMinor());
+                    replayed[0]++;
+                });
+            }
+        });
+
+        heldPayments.addAll(journalEntryRepository.findOpenPaymentIds(SUSPENSE_ACCOUNT));
+
+        long lastSequence = Math.max(through, journalEntryRepository.findMaxSequence().orElse(0L));
+        journalWriter.start(lastSequence);
+        log.info("✅ Ledger recovered from snapshot through {} plus {} journal entries (last sequence {})",
+                through, replayed[0], lastSequence);
+        reconcile();
+    }
+
+    /**
+     * Brings the holds in line with the stored statuses. The status is written before the ledger
+     * step, so a crash in between (or a write-behind loss) leaves a final payment still held, and a
+     * hold lost from the journal leaves a PROCESSING payment unheld.
+     */
+    private void reconcile() {
+        int settled = 0;
+        int released = 0;
+        int held = 0;
+        for (Payment payment : paymentRepository.findAllById(List.copyOf(heldPayments))) {
+            switch (payment.getStatus()) {
+                case COMPLETED -> settled += settle(payment) ? 1 : 0;
+                // PENDING means the attempt was reverted and will take a new hold when it is retried
+                case PENDING, FAILED, CANCELLED -> released += release(payment) ? 1 : 0;
+                case PROCESSING -> { }
+            }
+        }
+        for (Payment payment : paymentRepository.findByStatus(Payment.PaymentStatus.PROCESSING)) {
+            // Already past the funds check before the crash, so this one is not checked again
+            if (!heldPayments.contains(payment.getId())
+                    && post(JournalEntry.EntryType.HOLD, payment.getSenderAccount(), SUSPENSE_ACCOUNT, payment, false)) {
+                held++;
+            }
+        }
+        if (settled + released + held > 0) {
+            log.warn("⚠️ Ledger reconciled with payment statuses: {} settled, {} released, {} held again",
+                    settled, released, held);
+        }
+    }
+
+    /**
+     * Stores the current balances. They are copied with all stripes held, together with the
+     * last assigned sequence, and written only once the journal has caught up to it, so a
+     * snapshot never includes postings the journal could still lose.
+     */
+    @Scheduled(initialDelayString = "${payment.ledger.snapshot-interval-ms:900000}",
+            fixedDelayString = "${payment.ledger.snapshot-interval-ms:900000}")
+    public void snapshot() {
+        long through;
+        Map<String, Long> copy;
+        balances.lockAll();
+        try {
+            through = journalWriter.lastSequence();
+            copy = balances.copy();
+        } finally {
+            balances.unlockAll();
+        }
+
+        try {
+            if (!journalWriter.awaitFlushed(through, SNAPSHOT_FLUSH_TIMEOUT)) {
+                log.warn("⚠️ Skipping ledger snapshot: journal not flushed through {}", through);
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            LedgerSnapshot header = snapshotRepository.save(LedgerSnapshot.builder().throughSequence(through).build());
+            List<LedgerSnapshotBalance> chunk = new ArrayList<>(SNAPSHOT_CHUNK_SIZE);
+            for (Map.Entry<String, Long> balance : copy.entrySet()) {
+                chunk.add(LedgerSnapshotBalance.builder()
+                        .snapshotId(header.getId())
+                        .account(AccountBalances.account(balance.getKey()))
+                        .currency(AccountBalances.currency(balance.getKey()))
+                        .balanceMinor(balance.getValue())
+                        .build());
+                if (chunk.size() == SNAPSHOT_CHUNK_SIZE) {
+                    flushChunk(chunk);
+                }
+            }
+            flushChunk(chunk);
+            snapshotBalanceRepository.deleteOlderThan(header.getId());
+            snapshotRepository.deleteOlderThan(header.getId());
+        });
+        log.info("✅ Ledger snapshot of {} balances through sequence {}", copy.size(), through);
+    }
+
+    private void flushChunk(List<LedgerSnapshotBalance> chunk) {
+        snapshotBalanceRepository.saveAll(chunk);
+        entityManager.flush();
+        entityManager.clear();
+        chunk.clear();
+    }
+
+    // Recovery runs before any posting, so no locking is needed
+    private void apply(String account, String currency, long amountMinor) {
+        balances.add(balances.slot(account, currency), amountMinor);
+    }
+
+    private static JournalEntry entry(JournalEntry.EntryType type, String account, String currency,
+                                      long amountMinor, Long paymentId, String transactionId) {
+        return JournalEntry.builder()
+                .entryType(type)
+                .account(account)
+                .currency(currency)
+                .amountMinor(amountMinor)
+                .paymentId(paymentId)
+                .transactionId(transactionId)
+                .build();
+    }
+
+    static long toMinor(BigDecimal amount, String currency) {
+        return amount.setScale(fractionDigits(currency), RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    static BigDecimal fromMinor(long amountMinor, String currency) {
+        return BigDecimal.valueOf(amountMinor, fractionDigits(currency));
+    }
+
+    private static int fractionDigits(String currency) {
+        return Math.max(0, Currency.getInstance(currency).getDefaultFractionDigits());
+    }
+}
@@ -0,0 +1,357 @@
+package com.banking.payment.messaging;
+
+import com.banking.payment.gateway.GatewayRejectedException;
+import com.banking.payment.gateway.GatewayResult;
+import com.banking.payment.gateway.PaymentGateway;
+import com.banking.payment.ledger.PaymentLedger;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.model.Payment;
+import com.banking.payment.notification.NotificationDispatcher;
+import com.banking.payment.service.PaymentStatusService;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs a payment through the gateway without parking the caller. The listener thread
+ * only marks the payment PROCESSING and hands it to the gateway; the final status and
+ * notification are written on a small completion pool when the gateway answers. A call the
+ * gateway rejected (open circuit, full bulkhead) or that timed out gets no final status: the
+ * payment goes back to PENDING and the returned future fails, so the message is retried.
+ * Concurrency is bounded by {@code payment.processing.max-in-flight}, not by the
+ * number of listener threads. With {@code spring.threads.virtual.enabled} (Java 21+) completions
+ * run on virtual threads instead of the {@code payment.processing.completion-threads} pool.
+ * <p>
+ * Payments that share an ordering key (the sender account) are chained: each one starts
+ * only after the previous one for that key has finished, while different keys run in
+ * parallel. A chain holds a single in-flight permit. Together with JMSXGroupID on the
+ * messages, which pins an account to a single consumer across nodes, an account's payments
+ * are processed in publish order.
+ */
+@Component
+@Slf4j
+public class AsyncPaymentProcessor {
+
+    static final String FAILED_MESSAGE = "Payment processing failed. Please contact support.";
+    static final String INSUFFICIENT_FUNDS_MESSAGE = "Payment failed: insufficient funds.";
+
+    private final PaymentGateway paymentGateway;
+    private final PaymentStatusService paymentStatusService;
+    private final NotificationDispatcher notificationDispatcher;
+    private final PaymentMetrics paymentMetrics;
+    private final PaymentLedger paymentLedger;
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Executor completionExecutor;
+    private final int maxQueuedPerKey;
+    // Guarded by itself; a lane exists while its key has payments queued or running
+    private final Map<String, Lane> lanes = new HashMap<>();
+
+    public AsyncPaymentProcessor(PaymentGateway paymentGateway,
+                                 PaymentStatusService paymentStatusService,
+                                 NotificationDispatcher notificationDispatcher,
+                                 PaymentMetrics paymentMetrics,
+                                 Optional<PaymentLedger> paymentLedger,
+                                 @Value("${payment.processing.max-in-flight:1000}") int maxInFlight,
+                                 @Value("${payment.processing.max-queued-per-key:100}") int maxQueuedPerKey,
+                                 @Value("${payment.processing.completion-threads:8}") int completionThreads,
+                                 @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.paymentGateway = paymentGateway;
+        this.paymentStatusService = paymentStatusService;
+        this.notificationDispatcher = notificationDispatcher;
+        this.paymentMetrics = paymentMetrics;
+        // Only present with payment.ledger.enabled=true
+        this.paymentLedger = paymentLedger.orElse(null);
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.maxQueuedPerKey = Math.max(1, maxQueuedPerKey);
+        if (virtualThreads) {
+            // A virtual thread per completion (Java 21+); the connection pool bounds the database work instead
+            this.completionExecutor = new VirtualThreadTaskExecutor("payment-completion-");
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.completionExecutor = Executors.newFixedThreadPool(completionThreads, runnable -> {
+                Thread thread = new Thread(runnable, "payment-completion-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public CompletableFuture<Payment.PaymentStatus> process(String transactionId) throws InterruptedException {
+        return process(transactionId, null, null);
+    }
+
+    public CompletableFuture<Payment.PaymentStatus> process(String transactionId, String orderingKey)
+            throws InterruptedException {
+        return process(transactionId, orderingKey, null);
+    }
+
+    /**
+     * Starts processing and returns a future that completes with the final status once it
+     * is stored, or with {@code null} if the payment was skipped. Blocks only while the
+     * in-flight limit or the key's queue limit is reached, which pushes back on the broker.
+     * <p>
+     * Payments with the same {@code orderingKey} share one in-flight permit, taken by the first
+     * of them and handed down the chain, so a busy sender occupies one slot however many of its
+     * payments are waiting. A key holds at most {@code payment.processing.max-queued-per-key}
+     * payments, running one included; beyond that the caller blocks, with its message still
+     * unacknowledged, until the key's oldest payment finishes. A full lane slows the listener
+     * down like a full in-flight limit does, rather than spending the message's retries.
+     * <p>
+     * {@code resumeWith} comes from a retried message whose earlier attempt left the payment in
+     * PROCESSING (see {@link PaymentAttemptException}): COMPLETED or FAILED is the gateway answer
+     * that still has to be stored, PENDING means the attempt was abandoned and must be undone
+     * before the payment starts again.
+     */
+    public CompletableFuture<Payment.PaymentStatus> process(String transactionId, String orderingKey,
+                                                            Payment.PaymentStatus resumeWith)
+            throws InterruptedException {
+        if (orderingKey == null) {
+            inFlight.acquire();
+            return start(transactionId, resumeWith).whenComplete((status, error) -> inFlight.release());
+        }
+
+        CompletableFuture<Void> turn = new CompletableFuture<>();
+        CompletableFuture<Void> previous = enqueue(orderingKey, turn);
+        CompletableFuture<Payment.PaymentStatus> result = previous.isDone()
+                ? start(transactionId, resumeWith)
+                : previous.thenComposeAsync(ignored -> start(transactionId, resumeWith), completionExecutor);
+        return result.whenComplete((status, error) -> leave(orderingKey, turn));
+    }
+
+    /**
+     * Queues {@code turn} behind the last payment for {@code key} and returns the future it
+     * has to wait for. The first payment of a lane takes the lane's permit, blocking while none
+     * is free; a payment for a full lane blocks until the lane has room.
+     */
+    private CompletableFuture<Void> enqueue(String key, CompletableFuture<Void> turn) throws InterruptedException {
+        boolean acquired = false;
+        while (true) {
+            synchronized (lanes) {
+                Lane lane = lanes.get(key);
+                if (lane == null && acquired) {
+                    lane = new Lane();
+                    lanes.put(key, lane);
+                    acquired = false;
+                }
+                if (lane != null) {
+                    if (acquired) {
+                        // Another payment opened the lane while this one waited for a permit
+                        inFlight.release();
+                        acquired = false;
+                    }
+                    if (lane.size >= maxQueuedPerKey) {
+                        // Woken by leave(); the lane may be gone by then, so look it up again
+                        lanes.wait();
+                        continue;
+                    }
+                    CompletableFuture<Void> previous = lane.tail;
+                    lane.tail = turn;
+                    lane.size++;
+                    return previous;
+                }
+            }
+            // Not under the lock, so other keys can still queue behind their running payments
+            inFlight.acquire();
+            acquired = true;
+        }
+    }
+
+    // The last payment out of a lane returns its permit; otherwise the next one inherits it
+    private void leave(String key, CompletableFuture<Void> turn) {
+        boolean empty;
+        synchronized (lanes) {
+            Lane lane = lanes.get(key);
+            if (lane.size-- == maxQueuedPerKey) {
+                lanes.notifyAll();
+            }
+            empty = lane.size == 0;
+            if (empty) {
+                lanes.remove(key);
+            }
+        }
+        if (empty) {
+            inFlight.release();
+        }
+        turn.complete(null);
+    }
+
+    /** Payments running, counting each ordering key once however many of its payments wait. */
+    public int inFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    private CompletableFuture<Payment.PaymentStatus> start(String transactionId, Payment.PaymentStatus resumeWith) {
+        Optional<Payment> started;
+        try {
+            if (resumeWith == Payment.PaymentStatus.COMPLETED || resumeWith == Payment.PaymentStatus.FAILED) {
+                return resume(transactionId, resumeWith);
+            }
+            if (resumeWith == Payment.PaymentStatus.PENDING) {
+                paymentStatusService.findProcessing(transactionId).ifPresent(this::revert);
+            }
+            started = paymentStatusService.startProcessing(transactionId);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (started.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        Payment payment = started.get();
+        try {
+            if (paymentLedger != null && !paymentLedger.hold(payment)) {
+                log.warn("⚠️ Insufficient funds for {}", payment.getTransactionId());
+                return CompletableFuture.supplyAsync(
+                        () -> finish(payment, false, INSUFFICIENT_FUNDS_MESSAGE), completionExecutor);
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.supplyAsync(() -> abandon(payment, e), completionExecutor);
+        }
+
+        Timer.Sample gatewaySample = paymentMetrics.startTimer();
+        return paymentGateway.process(payment)
+                .whenComplete((result, error) -> paymentMetrics.recordGateway(gatewaySample, outcome(result, error)))
+                .handleAsync((result, error) -> complete(payment, result, error), completionExecutor);
+    }
+
+    static String outcome(GatewayResult result, Throwable error) {
+        if (error != null) {
+            return error instanceof GatewayRejectedException ? "rejected" : "error";
+        }
+        return result.approved() ? "approved" : "declined";
+    }
+
+    private Payment.PaymentStatus complete(Payment payment, GatewayResult result, Throwable error) {
+        if (error != null) {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof GatewayRejectedException || cause instanceof TimeoutException) {
+                return abandon(payment, cause);
+            }
+            log.error("❌ Gateway error for {}: {}", payment.getTransactionId(), error.getMessage());
+        }
+        return finish(payment, error == null && result.approved(), FAILED_MESSAGE);
+    }
+
+    /**
+     * Stores the gateway answer an earlier attempt could not store. The payment keeps its hold
+     * until then, so nothing is charged or called again.
+     */
+    private CompletableFuture<Payment.PaymentStatus> resume(String transactionId, Payment.PaymentStatus status) {
+        Optional<Payment> payment = paymentStatusService.findProcessing(transactionId);
+        if (payment.isEmpty()) {
+            log.info("⏭️ Payment {} is no longer PROCESSING, nothing to resume", transactionId);
+            return CompletableFuture.completedFuture(null);
+        }
+        log.info("🔁 Resuming {} with the earlier gateway answer: {}", transactionId, status);
+        return CompletableFuture.supplyAsync(
+                () -> finish(payment.get(), status == Payment.PaymentStatus.COMPLETED, FAILED_MESSAGE), completionExecutor);
+    }
+
+    private void revert(Payment payment) {
+        if (paymentStatusService.revertProcessing(payment) && paymentLedger != null) {
+            paymentLedger.release(payment);
+        }
+    }
+
+    /**
+     * The gateway never saw the call, or did not answer in time: neither is a decline. Returns
+     * the payment to PENDING and releases its hold, then fails so the message is retried with the
+     * same transaction ID. Returns {@code null} if the payment had already left PROCESSING.
+     */
+    private Payment.PaymentStatus abandon(Payment payment, Throwable cause) {
+        boolean reverted;
+        try {
+            reverted = paymentStatusService.revertProcessing(payment);
+        } catch (RuntimeException e) {
+            // Still PROCESSING and still held; the retry undoes both before starting again
+            throw new PaymentAttemptException(payment.getTransactionId(), Payment.PaymentStatus.PENDING,
+                    "Could not return " + payment.getTransactionId() + " to PENDING: " + e.getMessage(), e);
+        }
+        if (paymentLedger != null) {
+            paymentLedger.release(payment);
+        }
+        if (!reverted) {
+            return null;
+        }
+        log.warn("⚠️ Attempt for {} not completed, back to PENDING for a retry: {}",
+                payment.getTransactionId(), cause.getMessage());
+        throw new PaymentAttemptException(payment.getTransactionId(), Payment.PaymentStatus.PENDING,
+                "Attempt for " + payment.getTransactionId() + " not completed: " + cause.getMessage(), cause);
+    }
+
+    /**
+     * Stores the final status, then moves the held amount: on to the receiver only if COMPLETED
+     * was stored, back to the sender otherwise. Returns {@code null} if the payment had already
+     * left PROCESSING.
+     */
+    private Payment.PaymentStatus finish(Payment payment, boolean approved, String failureMessage) {
+        Payment.PaymentStatus status = approved ? Payment.PaymentStatus.COMPLETED : Payment.PaymentStatus.FAILED;
+        boolean stored;
+        try {
+            stored = paymentStatusService.completeProcessing(payment, status);
+        } catch (RuntimeException e) {
+            // The answer is known: the retry stores it without calling the gateway again
+            throw new PaymentAttemptException(payment.getTransactionId(), status,
+                    "Could not store " + status + " for " + payment.getTransactionId() + ": " + e.getMessage(), e);
+        }
+        if (paymentLedger != null) {
+            if (stored && approved) {
+                paymentLedger.settle(payment);
+            } else {
+                paymentLedger.release(payment);
+            }
+        }
+        if (!stored) {
+            return null;
+        }
+
+        if (approved) {
+            log.info("✅ Payment COMPLETED: {} | Amount:  {} {}",
+                    payment.getTransactionId(),
+                    payment.getAmount(),
+                    payment.getCurrency());
+            notificationDispatcher.dispatch(payment.getTransactionId(), "COMPLETED", completedMessage(payment));
+        } else {
+            log.error("❌ Payment FAILED: {}", payment.getTransactionId());
+            notificationDispatcher.dispatch(payment.getTransactionId(), "FAILED", failureMessage);
+        }
+        return status;
+    }
+
+    static String completedMessage(Payment payment) {
+        return String.format("Payment of %s %s from %s to %s completed successfully",
+                payment.getAmount(),
+                payment.getCurrency(),
+                payment.getSenderAccount(),
+                payment.getReceiverAccount());
+    }
+
+    private static final class Lane {
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+        private int size;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (completionExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+}
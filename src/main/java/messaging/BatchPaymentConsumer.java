@@ -0,0 +1,482 @@
+package com.banking.payment.messaging;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.gateway.GatewayRejectedException;
+import com.banking.payment.gateway.PaymentGateway;
+import com.banking.payment.ledger.PaymentLedger;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.model.Payment;
+import com.banking.payment.notification.NotificationDispatcher;
+import com.banking.payment.service.PaymentStatusService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Batch-consuming alternative to {@link JmsConsumer#processPayment}, enabled with
+ * {@code payment.processing.batch.enabled=true}. Each consumer thread drains up to the current
+ * batch size from {@code payment.processing.queue} (or whatever arrives within
+ * {@code max-wait-ms}) on a transacted session and then:
+ * <ol>
+ *   <li>locks the batch's payments with one IN query and marks them PROCESSING with one UPDATE</li>
+ *   <li>calls the gateway for all of them concurrently (one at a time per sender account)</li>
+ *   <li>stores the results with one UPDATE per final status, then settles or releases the ledger holds</li>
+ *   <li>commits the JMS session, acknowledging the whole batch</li>
+ * </ol>
+ * A message that cannot be finished is handed to {@link PaymentRetryScheduler} before the commit,
+ * as in the single consumer: a rejected or timed-out gateway call goes back to PENDING and is
+ * retried, and if storing the results fails each message is retried with its gateway answer,
+ * which the retry stores without calling the gateway again (see {@link PaymentAttemptException}).
+ * Retried messages are processed by {@link AsyncPaymentProcessor}. Only if the retries cannot be
+ * sent is the session rolled back; payments left in PROCESSING by that are skipped on redelivery
+ * and requeued by {@link StaleProcessingRecovery}. The batch size doubles while
+ * batches fill up and halves when they come back less than half full, between
+ * {@code min-size} and {@code max-size}. The number of consumer threads starts at
+ * {@code consumers} and is then sized by {@link ListenerAutoscaler} as {@value #CONSUMER_ID}.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.processing.batch.enabled", havingValue = "true")
+@Slf4j
+public class BatchPaymentConsumer implements SmartLifecycle {
+
+    /** Name under which {@link ListenerAutoscaler} sizes the consumer threads. */
+    public static final String CONSUMER_ID = "batch-consumer";
+
+    private static final long POLL_TIMEOUT_MS = 1000;
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private final ConnectionFactory connectionFactory;
+    private final JmsConsumer jmsConsumer;
+    private final PaymentPipeline paymentPipeline;
+    private final PaymentStatusService paymentStatusService;
+    private final PaymentGateway paymentGateway;
+    private final NotificationDispatcher notificationDispatcher;
+    private final PaymentMetrics paymentMetrics;
+    private final PaymentLedger paymentLedger;
+    private final AsyncPaymentProcessor asyncPaymentProcessor;
+    private final PaymentRetryScheduler paymentRetryScheduler;
+    private final ExecutorService holdExecutor;
+    private final DistributionSummary batchSizes;
+    private final int consumers;
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long maxWaitMs;
+    private final Deque<Worker> workers = new ArrayDeque<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private int workersStarted;
+    private volatile boolean running;
+
+    public BatchPaymentConsumer(ConnectionFactory connectionFactory,
+                                JmsConsumer jmsConsumer,
+                                PaymentPipeline paymentPipeline,
+                                PaymentStatusService paymentStatusService,
+                                PaymentGateway paymentGateway,
+                                NotificationDispatcher notificationDispatcher,
+                                PaymentMetrics paymentMetrics,
+                                Optional<PaymentLedger> paymentLedger,
+                                AsyncPaymentProcessor asyncPaymentProcessor,
+                                PaymentRetryScheduler paymentRetryScheduler,
+                                MeterRegistry meterRegistry,
+                                @Value("${payment.processing.completion-threads:8}") int holdThreads,
+                                @Value("${payment.processing.batch.consumers:3}") int consumers,
+                                @Value("${payment.processing.batch.min-size:10}") int minBatchSize,
+                                @Value("${payment.processing.batch.max-size:500}") int maxBatchSize,
+                                @Value("${payment.processing.batch.max-wait-ms:50}") long maxWaitMs) {
+        this.connectionFactory = connectionFactory;
+        this.jmsConsumer = jmsConsumer;
+        this.paymentPipeline = paymentPipeline;
+        this.paymentStatusService = paymentStatusService;
+        this.paymentGateway = paymentGateway;
+        this.notificationDispatcher = notificationDispatcher;
+        this.paymentMetrics = paymentMetrics;
+        this.paymentLedger = paymentLedger.orElse(null);
+        this.asyncPaymentProcessor = asyncPaymentProcessor;
+        this.paymentRetryScheduler = paymentRetryScheduler;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.holdExecutor = Executors.newFixedThreadPool(holdThreads, runnable -> {
+            Thread thread = new Thread(runnable, "payment-batch-hold-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.batchSizes = DistributionSummary.builder("payment.processing.batch.size")
+                .description("Messages per processing batch")
+                .register(meterRegistry);
+        this.consumers = consumers;
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        setConsumers(consumers);
+        log.info("✅ Started {} batch payment consumers (batch size {}-{})", consumers, minBatchSize, maxBatchSize);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                // A consumer finishes its current batch; an idle one returns within the poll timeout
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        threads.clear();
+        workers.clear();
+    }
+
+    public synchronized int getConsumers() {
+        return workers.size();
+    }
+
+    /**
+     * Starts or retires consumer threads until {@code count} (at least one) are running. A
+     * retired thread finishes and commits its current batch before it exits.
+     */
+    public synchronized void setConsumers(int count) {
+        if (!running) {
+            return;
+        }
+        threads.removeIf(thread -> !thread.isAlive());
+        while (workers.size() < count) {
+            Worker worker = new Worker();
+            Thread thread = new Thread(() -> consume(worker), "payment-batch-" + ++workersStarted);
+            workers.addLast(worker);
+            threads.add(thread);
+            thread.start();
+        }
+        while (workers.size() > Math.max(1, count)) {
+            workers.removeLast().retired = true;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void consume(Worker worker) {
+        while (running && !worker.retired) {
+            try (Connection connection = connectionFactory.createConnection()) {
+                connection.start();
+                Session session = connection.createSession(true, Session.SESSION_TRANSACTED);
+                MessageConsumer consumer = session.createConsumer(session.createQueue(JmsConfig.PAYMENT_PROCESSING_QUEUE));
+                int batchSize = minBatchSize;
+                while (running && !worker.retired) {
+                    List<Message> batch = receiveBatch(consumer, batchSize);
+                    if (!batch.isEmpty()) {
+                        processAndCommit(session, batch);
+                        batchSize = nextBatchSize(batchSize, batch.size());
+                    }
+                }
+            } catch (JMSException e) {
+                log.error("❌ Batch consumer lost its connection, reconnecting: {}", e.getMessage());
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Blocks for the first message only; the rest of the batch gets at most maxWaitMs
+    private List<Message> receiveBatch(MessageConsumer consumer, int batchSize) throws JMSException {
+        List<Message> batch = new ArrayList<>(batchSize);
+        Message first = consumer.receive(POLL_TIMEOUT_MS);
+        if (first == null) {
+            return batch;
+        }
+        batch.add(first);
+        long deadline = System.currentTimeMillis() + maxWaitMs;
+        while (batch.size() < batchSize) {
+            long remaining = deadline - System.currentTimeMillis();
+            Message next = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    public int nextBatchSize(int current, int received) {
+        if (received >= current) {
+            return Math.min(maxBatchSize, current * 2);
+        }
+        if (received < current / 2) {
+            return Math.max(minBatchSize, current / 2);
+        }
+        return current;
+    }
+
+    public void processAndCommit(Session session, List<Message> batch) throws JMSException {
+        try {
+            process(batch);
+            session.commit();
+        } catch (RuntimeException | JMSException e) {
+            log.error("❌ Batch of {} payments failed, rolling back for redelivery: {}", batch.size(), e.getMessage(), e);
+            session.rollback();
+        }
+    }
+
+    private void process(List<Message> batch) throws JMSException {
+        batchSizes.record(batch.size());
+        Map<String, PaymentMessage> payments = new LinkedHashMap<>();
+        Map<String, Message> messages = new HashMap<>();
+        Map<Message, Throwable> failures = new ConcurrentHashMap<>();
+        List<CompletableFuture<?>> resumed = new ArrayList<>();
+        boolean interrupted = false;
+        for (Message message : batch) {
+            paymentMetrics.recordQueueWait(JmsConfig.PAYMENT_PROCESSING_QUEUE, message);
+            try {
+                PaymentMessage payment = paymentPipeline.applyStages(jmsConsumer.readPayment(message));
+                if (payment == null) {
+                    // Stopped by a stage; committed with the batch
+                    continue;
+                }
+                Payment.PaymentStatus resumeWith = PaymentRetryScheduler.resumeWith(message);
+                if (resumeWith == null) {
+                    payments.put(payment.transactionId(), payment);
+                    messages.put(payment.transactionId(), message);
+                } else {
+                    // A retry of an attempt that left the payment in PROCESSING: finished or undone like in the single consumer
+                    resumed.add(asyncPaymentProcessor.process(payment.transactionId(), payment.senderAccount(), resumeWith)
+                            .whenComplete((status, error) -> {
+                                if (error != null) {
+                                    failures.put(message, error);
+                                }
+                            }));
+                }
+            } catch (InterruptedException e) {
+                failures.put(message, e);
+                interrupted = true;
+            } catch (Exception e) {
+                log.error("❌ Unprocessable payment message in batch: {}", e.getMessage());
+                failures.put(message, e);
+            }
+        }
+        if (!payments.isEmpty()) {
+            processPayments(payments, messages, failures);
+        }
+        CompletableFuture.allOf(resumed.toArray(CompletableFuture[]::new)).exceptionally(error -> null).join();
+
+        // Acknowledged with the batch only once its retry or dead letter is on the broker
+        for (Map.Entry<Message, Throwable> failure : failures.entrySet()) {
+            paymentRetryScheduler.retryOrDeadLetter(failure.getKey(), JmsConfig.PAYMENT_PROCESSING_QUEUE, failure.getValue());
+        }
+        if (interrupted) {
+            // Sends fail on an interrupted thread, so the flag is restored only after the hand-off
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processPayments(Map<String, PaymentMessage> payments, Map<String, Message> messages,
+                                 Map<Message, Throwable> failures) {
+        Map<String, Integer> position = new HashMap<>();
+        payments.keySet().forEach(transactionId -> position.put(transactionId, position.size()));
+        List<Payment> started = new ArrayList<>(paymentStatusService.startProcessingBatch(payments.keySet()));
+        // The IN query returns rows in any order; restore message order for the per-sender chains
+        started.sort(Comparator.comparing(payment -> position.get(payment.getTransactionId())));
+
+        Map<String, CompletableFuture<Outcome>> tailsBySender = new HashMap<>();
+        List<CompletableFuture<Outcome>> outcomes = new ArrayList<>(started.size());
+        for (Payment payment : started) {
+            // Same-sender payments go to the gateway in message order, as in AsyncPaymentProcessor.
+            // A successor's hold runs on the hold pool, not on the thread that completed the gateway call.
+            CompletableFuture<Outcome> previous = tailsBySender.get(payment.getSenderAccount());
+            CompletableFuture<Outcome> outcome = previous == null
+                    ? charge(payment)
+                    : previous.thenComposeAsync(ignored -> charge(payment), holdExecutor);
+            tailsBySender.put(payment.getSenderAccount(), outcome);
+            outcomes.add(outcome);
+        }
+
+        Map<Payment.PaymentStatus, List<Payment>> byStatus = new EnumMap<>(Payment.PaymentStatus.class);
+        List<Outcome> finished = new ArrayList<>(outcomes.size());
+        List<Outcome> abandoned = new ArrayList<>();
+        for (CompletableFuture<Outcome> future : outcomes) {
+            Outcome outcome = future.join();
+            if (outcome.status() == Payment.PaymentStatus.PENDING) {
+                abandoned.add(outcome);
+            } else {
+                finished.add(outcome);
+                byStatus.computeIfAbsent(outcome.status(), status -> new ArrayList<>()).add(outcome.payment());
+            }
+        }
+
+        List<Payment> stored = store(byStatus, finished, messages, failures);
+        undo(abandoned, messages, failures);
+
+        Set<Long> storedIds = stored.stream().map(Payment::getId).collect(Collectors.toSet());
+        for (Outcome outcome : finished) {
+            if (storedIds.contains(outcome.payment().getId())) {
+                notificationDispatcher.dispatch(outcome.payment().getTransactionId(), outcome.status().name(), outcome.message());
+            }
+        }
+        log.info("✅ Processed batch of {} payments: {} started, {} stored, {} back to PENDING",
+                payments.size(), started.size(), stored.size(), abandoned.size());
+    }
+
+    /**
+     * Stores the gateway answers, then settles the payments stored as COMPLETED and releases the
+     * rest. If the write fails every payment stays PROCESSING with its hold, and its message is
+     * retried with the answer, which is then stored without calling the gateway again.
+     */
+    private List<Payment> store(Map<Payment.PaymentStatus, List<Payment>> byStatus, List<Outcome> finished,
+                                Map<String, Message> messages, Map<Message, Throwable> failures) {
+        if (finished.isEmpty()) {
+            return List.of();
+        }
+        List<Payment> stored;
+        try {
+            stored = paymentStatusService.completeProcessingBatch(byStatus);
+        } catch (RuntimeException e) {
+            log.error("❌ Could not store {} gateway answers, retrying them: {}", finished.size(), e.getMessage());
+            for (Outcome outcome : finished) {
+                failures.put(messages.get(outcome.payment().getTransactionId()), new PaymentAttemptException(
+                        outcome.payment().getTransactionId(), outcome.status(),
+                        "Could not store " + outcome.status() + " for " + outcome.payment().getTransactionId() + ": " + e.getMessage(), e));
+            }
+            return List.of();
+        }
+        if (paymentLedger != null) {
+            Set<Long> completed = stored.stream()
+                    .filter(payment -> payment.getStatus() == Payment.PaymentStatus.COMPLETED)
+                    .map(Payment::getId)
+                    .collect(Collectors.toSet());
+            for (Outcome outcome : finished) {
+                if (completed.contains(outcome.payment().getId())) {
+                    paymentLedger.settle(outcome.payment());
+                } else {
+                    paymentLedger.release(outcome.payment());
+                }
+            }
+        }
+        return stored;
+    }
+
+    /**
+     * Returns payments whose gateway call was rejected or timed out to PENDING, releases their
+     * holds and retries their messages, like AsyncPaymentProcessor does for a single payment.
+     * If the revert fails they stay PROCESSING and the retry undoes them before starting again.
+     */
+    private void undo(List<Outcome> abandoned, Map<String, Message> messages, Map<Message, Throwable> failures) {
+        if (abandoned.isEmpty()) {
+            return;
+        }
+        List<Payment> reverted;
+        try {
+            reverted = paymentStatusService.revertProcessingBatch(abandoned.stream().map(Outcome::payment).collect(Collectors.toList()));
+        } catch (RuntimeException e) {
+            log.error("❌ Could not return {} payments to PENDING: {}", abandoned.size(), e.getMessage());
+            for (Outcome outcome : abandoned) {
+                failures.put(messages.get(outcome.payment().getTransactionId()), new PaymentAttemptException(
+                        outcome.payment().getTransactionId(), Payment.PaymentStatus.PENDING,
+                        "Could not return " + outcome.payment().getTransactionId() + " to PENDING: " + e.getMessage(), e));
+            }
+            return;
+        }
+        if (paymentLedger != null) {
+            abandoned.forEach(outcome -> paymentLedger.release(outcome.payment()));
+        }
+        Set<Long> revertedIds = reverted.stream().map(Payment::getId).collect(Collectors.toSet());
+        for (Outcome outcome : abandoned) {
+            if (revertedIds.contains(outcome.payment().getId())) {
+                failures.put(messages.get(outcome.payment().getTransactionId()), new PaymentAttemptException(
+                        outcome.payment().getTransactionId(), Payment.PaymentStatus.PENDING,
+                        "Attempt for " + outcome.payment().getTransactionId() + " not completed: " + outcome.message(),
+                        outcome.cause()));
+            }
+        }
+    }
+
+    // Never fails: a rejected or timed-out call and a failed hold come back as PENDING, to be undone and retried
+    private CompletableFuture<Outcome> charge(Payment payment) {
+        try {
+            if (paymentLedger != null && !paymentLedger.hold(payment)) {
+                log.warn("⚠️ Insufficient funds for {}", payment.getTransactionId());
+                return CompletableFuture.completedFuture(new Outcome(payment, Payment.PaymentStatus.FAILED,
+                        AsyncPaymentProcessor.INSUFFICIENT_FUNDS_MESSAGE));
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(new Outcome(payment, Payment.PaymentStatus.PENDING, e.getMessage()));
+        }
+
+        Timer.Sample gatewaySample = paymentMetrics.startTimer();
+        return paymentGateway.process(payment)
+                .whenComplete((result, error) -> paymentMetrics.recordGateway(gatewaySample,
+                        AsyncPaymentProcessor.outcome(result, error)))
+                .handle((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        if (cause instanceof GatewayRejectedException || cause instanceof TimeoutException) {
+                            return new Outcome(payment, Payment.PaymentStatus.PENDING, String.valueOf(cause.getMessage()), cause);
+                        }
+                        log.error("❌ Gateway error for {}: {}", payment.getTransactionId(), error.getMessage());
+                    }
+                    if (error == null && result.approved()) {
+                        return new Outcome(payment, Payment.PaymentStatus.COMPLETED,
+                                AsyncPaymentProcessor.completedMessage(payment));
+                    }
+                    return new Outcome(payment, Payment.PaymentStatus.FAILED, AsyncPaymentProcessor.FAILED_MESSAGE);
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        holdExecutor.shutdown();
+    }
+
+    private static final class Worker {
+
+        private volatile boolean retired;
+    }
+
+    // PENDING: the attempt was abandoned, message says why and cause is the rejection or timeout, if any
+    private record Outcome(Payment payment, Payment.PaymentStatus status, String message, Throwable cause) {
+
+        Outcome(Payment payment, Payment.PaymentStatus status, String message) {
+            this(payment, status, message, null);
+        }
+    }
+}
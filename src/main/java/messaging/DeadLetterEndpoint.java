@@ -0,0 +1,35 @@
+package com.banking.payment.messaging;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code GET /actuator/deadletters}: the oldest dead-lettered payment messages.
+ * {@code POST /actuator/deadletters} replays one ({@code {"messageId": "..."}}) or, with no body, all of them.
+ */
+@Component
+@Endpoint(id = "deadletters")
+@RequiredArgsConstructor
+public class DeadLetterEndpoint {
+
+    private static final int LIST_LIMIT = 100;
+
+    private final PaymentRetryScheduler paymentRetryScheduler;
+
+    @ReadOperation
+    public List<Map<String, Object>> deadLetters() {
+        return paymentRetryScheduler.deadLetters(LIST_LIMIT);
+    }
+
+    @WriteOperation
+    public Map<String, Object> replay(@Nullable String messageId) {
+        return Map.of("replayed", paymentRetryScheduler.replay(messageId));
+    }
+}
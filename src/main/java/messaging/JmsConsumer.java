@@ -1,105 +1,164 @@
 package com.banking.payment.messaging;
 
 import com.banking.payment.config.JmsConfig;
+import com.banking.payment.metrics.PaymentMetrics;
 import com.banking.payment.model.Payment;
-import com.banking.payment.repository.PaymentRepository;
+import com.banking.payment.notification.NotificationSink;
+import com.banking.payment.notification.PaymentNotification;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.jms.BytesMessage;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jms. annotation.JmsListener;
+import org.springframework.jms.support.converter.MessageConverter;
 import org.springframework.stereotype.Component;
 
-import java.util.Random;
+import java.io.IOException;
+import java.util.List;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class JmsConsumer {
 
-    private final PaymentRepository paymentRepository;
+    // Listener container IDs, used by ListenerAutoscaler to resize them
+    public static final String PAYMENT_LISTENER_ID = "payment-listener";
+    public static final String PROCESSING_LISTENER_ID = "processing-listener";
+    public static final String NOTIFICATION_LISTENER_ID = "notification-listener";
+    public static final String RETRY_LISTENER_ID = "retry-listener";
+
     private final JmsProducer jmsProducer;
+    private final PaymentPipeline paymentPipeline;
+    private final AsyncPaymentProcessor asyncPaymentProcessor;
     private final ObjectMapper objectMapper;
-    private final Random random = new Random();
-
-    @JmsListener(destination = JmsConfig.PAYMENT_QUEUE)
-    public void receivePaymentMessage(String message) {
+    private final MessageConverter messageConverter;
+    private final PaymentMetrics paymentMetrics;
+    private final List<NotificationSink> notificationSinks;
+    private final PaymentRetryScheduler paymentRetryScheduler;
+
+    // Only carries traffic in the STAGED topology (or messages left over from it); stages run in processPayment
+    // If the retry cannot be sent either, the exception makes the container redeliver the message
+    @JmsListener(id = PAYMENT_LISTENER_ID, destination = JmsConfig.PAYMENT_QUEUE)
+    public void receivePaymentMessage(Message jmsMessage) throws JMSException {
+        paymentMetrics.recordQueueWait(JmsConfig.PAYMENT_QUEUE, jmsMessage);
         try {
             log.info("📨 Received payment message from queue");
-            Payment payment = objectMapper. readValue(message, Payment.class);
 
-            log.info("🔄 Processing payment: Transaction ID = {}", payment.getTransactionId());
-
-            // Send to processing queue
-            jmsProducer.sendProcessingMessage(payment);
+            // Send to processing queue without re-serializing
+            jmsProducer.forwardToProcessing(jmsMessage);
 
         } catch (Exception e) {
             log.error("❌ Error processing payment message: {}", e.getMessage(), e);
+            paymentRetryScheduler.retryOrDeadLetter(jmsMessage, JmsConfig.PAYMENT_QUEUE, e);
         }
     }
 
-    @JmsListener(destination = JmsConfig.PAYMENT_PROCESSING_QUEUE, concurrency = "3-5")
-    public void processPayment(String message) {
+    /**
+     * Hands the payment to {@link AsyncPaymentProcessor} and returns immediately. The message
+     * is acknowledged individually once the final status has been stored, so thousands of
+     * payments can be in flight on a handful of listener threads. A failed payment is handed
+     * to {@link PaymentRetryScheduler} first, so it is retried or dead-lettered, not dropped;
+     * a retry resumes a payment its earlier attempt left in PROCESSING.
+     */
+    @JmsListener(id = PROCESSING_LISTENER_ID, destination = JmsConfig.PAYMENT_PROCESSING_QUEUE,
+            containerFactory = "processingListenerContainerFactory")
+    public void processPayment(Message jmsMessage) {
+        paymentMetrics.recordQueueWait(JmsConfig.PAYMENT_PROCESSING_QUEUE, jmsMessage);
         try {
-            Payment payment = objectMapper.readValue(message, Payment.class);
-            log.info("⚙️ Processing payment in worker thread: {}", payment.getTransactionId());
-
-            // Fetch from database
-            Payment dbPayment = paymentRepository.findByTransactionId(payment.getTransactionId())
-                    .orElse(null);
+            PaymentMessage received = readPayment(jmsMessage);
+            log.info("⚙️ Processing payment in worker thread: {}", received.transactionId());
 
-            if (dbPayment == null) {
-                log.warn("⚠️ Payment not found in database:  {}", payment.getTransactionId());
+            // Routing/enrichment stages run in-process instead of as extra queue hops
+            PaymentMessage payment = paymentPipeline.applyStages(received);
+            if (payment == null) {
+                acknowledge(jmsMessage);
                 return;
             }
 
-            // Update status to PROCESSING
-            dbPayment.setStatus(Payment.PaymentStatus.PROCESSING);
-            paymentRepository.save(dbPayment);
-
-            // Simulate payment processing (2-5 seconds)
-            int processingTime = 2000 + random.nextInt(3000);
-            Thread.sleep(processingTime);
-
-            // Simulate success/failure (90% success rate)
-            boolean isSuccess = random.nextInt(100) < 90;
-
-            if (isSuccess) {
-                dbPayment.setStatus(Payment. PaymentStatus. COMPLETED);
-                paymentRepository. save(dbPayment);
-                log.info("✅ Payment COMPLETED: {} | Amount:  {} {}",
-                        dbPayment.getTransactionId(),
-                        dbPayment.getAmount(),
-                        dbPayment.getCurrency());
-
-                jmsProducer.sendNotificationMessage(
-                        dbPayment.getTransactionId(),
-                        "COMPLETED",
-                        String. format("Payment of %s %s from %s to %s completed successfully",
-                                dbPayment.getAmount(),
-                                dbPayment.getCurrency(),
-                                dbPayment.getSenderAccount(),
-                                dbPayment.getReceiverAccount())
-                );
-            } else {
-                dbPayment.setStatus(Payment.PaymentStatus. FAILED);
-                paymentRepository. save(dbPayment);
-                log.error("❌ Payment FAILED: {}", dbPayment.getTransactionId());
-
-                jmsProducer.sendNotificationMessage(
-                        dbPayment. getTransactionId(),
-                        "FAILED",
-                        "Payment processing failed. Please contact support."
-                );
+            // Keyed by sender so one account's payments complete in order
+            Payment.PaymentStatus resumeWith = PaymentRetryScheduler.resumeWith(jmsMessage);
+            asyncPaymentProcessor.process(payment.transactionId(), payment.senderAccount(), resumeWith)
+                    .whenComplete((status, error) -> {
+                        if (error != null) {
+                            log.error("❌ Error completing payment {}: {}", payment.transactionId(), error.getMessage(), error);
+                            retryOrDeadLetter(jmsMessage, error);
+                        } else {
+                            acknowledge(jmsMessage);
+                        }
+                    });
+
+        } catch (InterruptedException e) {
+            log.warn("⚠️ Interrupted while waiting for processing capacity, scheduling a retry");
+            // Sends fail on an interrupted thread, so the flag is restored only after the hand-off
+            retryOrDeadLetter(jmsMessage, e);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("❌ Error in payment processing: {}", e.getMessage(), e);
+            retryOrDeadLetter(jmsMessage, e);
+        }
+    }
+
+    // Delays run on PaymentRetryScheduler's timer; the listener thread only parks the message
+    @JmsListener(id = RETRY_LISTENER_ID, destination = JmsConfig.PAYMENT_RETRY_QUEUE,
+            containerFactory = "retryListenerContainerFactory")
+    public void receiveRetry(Message jmsMessage) {
+        paymentRetryScheduler.schedule(jmsMessage);
+    }
+
+    @JmsListener(id = NOTIFICATION_LISTENER_ID, destination = JmsConfig.PAYMENT_NOTIFICATION_QUEUE)
+    public void receiveNotification(Message jmsMessage) {
+        PaymentNotification notification;
+        try {
+            notification = readNotification(jmsMessage);
+        } catch (Exception e) {
+            log.error("❌ Unreadable notification message: {}", e.getMessage());
+            return;
+        }
+        for (NotificationSink sink : notificationSinks) {
+            try {
+                sink.deliver(notification);
+            } catch (Exception e) {
+                log.warn("⚠️ {} sink failed for {}: {}", sink.name(), notification.transactionId(), e.getMessage());
             }
+        }
+    }
 
+    PaymentMessage readPayment(Message message) throws JMSException, IOException {
+        if (message instanceof BytesMessage bytesMessage) {
+            return PaymentMessageCodec.decode(JmsProducer.readBody(bytesMessage));
+        }
+        // JSON TextMessage published before the binary format; still accepted during rollout
+        String json = (String) messageConverter.fromMessage(message);
+        return PaymentMessage.from(objectMapper.readValue(json, Payment.class));
+    }
+
+    private PaymentNotification readNotification(Message message) throws JMSException, IOException {
+        Object body = messageConverter.fromMessage(message);
+        if (body instanceof PaymentNotification notification) {
+            return notification;
+        }
+        // Hand-built JSON string sent before notifications were batched
+        return objectMapper.readValue((String) body, PaymentNotification.class);
+    }
+
+    // Acknowledges only once the retry or dead letter is on the broker; otherwise the message waits for redelivery
+    private void retryOrDeadLetter(Message message, Throwable error) {
+        try {
+            paymentRetryScheduler.retryOrDeadLetter(message, JmsConfig.PAYMENT_PROCESSING_QUEUE, error);
         } catch (Exception e) {
-            log.error("❌ Error in payment processing: {}", e.getMessage(), e);
+            log.error("❌ Could not schedule a retry, leaving the message unacknowledged: {}", e.getMessage());
+            return;
         }
+        acknowledge(message);
     }
 
-    @JmsListener(destination = JmsConfig.PAYMENT_NOTIFICATION_QUEUE)
-    public void receiveNotification(String notification) {
-        log.info("🔔 NOTIFICATION: {}", notification);
-        // Here you can send emails, SMS, push notifications, etc.
+    private void acknowledge(Message message) {
+        try {
+            message.acknowledge();
+        } catch (JMSException e) {
+            log.warn("⚠️ Could not acknowledge message: {}", e.getMessage());
+        }
     }
 }
\ No newline at end of file
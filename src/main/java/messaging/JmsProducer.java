@@ -1,48 +1,234 @@
 package com.banking.payment.messaging;
 
 import com.banking.payment.config.JmsConfig;
-import com.banking.payment.model.Payment;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson. databind.ObjectMapper;
-import lombok.RequiredArgsConstructor;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.model.OutboxMessage;
+import com.banking.payment.notification.PaymentNotification;
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.BytesMessage;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageFormatException;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.activemq.ActiveMQMessageProducer;
+import org.apache.activemq.AsyncCallback;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.connection.SessionProxy;
 import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConverter;
 import org.springframework.stereotype.Component;
 
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends over {@link JmsConfig#producerConnectionFactory}: one shared connection with cached
+ * sessions and producers, so a batch costs its sends and a commit rather than a new
+ * connection, session and producer.
+ */
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class JmsProducer {
 
+    // Standard JMS property; ActiveMQ routes every message of a group to the same consumer
+    static final String MESSAGE_GROUP_PROPERTY = "JMSXGroupID";
+
     private final JmsTemplate jmsTemplate;
-    private final ObjectMapper objectMapper;
+    private final ConnectionFactory connectionFactory;
+    private final PaymentMetrics paymentMetrics;
+    private final boolean asyncNotifications;
+
+    public JmsProducer(JmsTemplate jmsTemplate,
+                       CachingConnectionFactory producerConnectionFactory,
+                       PaymentMetrics paymentMetrics,
+                       @Value("${payment.notifications.async-send:false}") boolean asyncNotifications) {
+        this.jmsTemplate = jmsTemplate;
+        this.connectionFactory = producerConnectionFactory;
+        this.paymentMetrics = paymentMetrics;
+        this.asyncNotifications = asyncNotifications;
+    }
+
+    /**
+     * Publishes a batch of outbox messages over a single transacted session, so the broker
+     * sees one commit instead of one connection/session/send per message. Failures are
+     * rethrown so the caller can keep the rows for the next attempt.
+     */
+    public void publish(List<OutboxMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        Timer.Sample sample = paymentMetrics.startTimer();
+        MessageConverter converter = jmsTemplate.getMessageConverter();
+        try (Connection connection = connectionFactory.createConnection();
+             Session session = connection.createSession(true, Session.SESSION_TRANSACTED)) {
+            Map<String, MessageProducer> producers = new HashMap<>();
+            for (OutboxMessage message : messages) {
+                MessageProducer producer = producers.computeIfAbsent(message.getDestination(), destination -> {
+                    try {
+                        return session.createProducer(session.createQueue(destination));
+                    } catch (JMSException e) {
+                        throw JmsUtils.convertJmsAccessException(e);
+                    }
+                });
+                producer.send(toJmsMessage(message, converter, session));
+            }
+            session.commit();
+            paymentMetrics.recordPublish(sample);
+            messages.forEach(message -> paymentMetrics.recordOutboxWait(message.getCreatedAt()));
+            log.info("✅ Published batch of {} outbox messages", messages.size());
+        } catch (JMSException e) {
+            throw JmsUtils.convertJmsAccessException(e);
+        }
+    }
+
+    // Forwards the original payload untouched; only used by the STAGED topology
+    public void forwardToProcessing(Message message) throws JMSException {
+        if (message instanceof BytesMessage bytesMessage) {
+            byte[] body = readBody(bytesMessage);
+            String group = bytesMessage.getStringProperty(MESSAGE_GROUP_PROPERTY);
+            jmsTemplate.send(JmsConfig.PAYMENT_PROCESSING_QUEUE, session -> grouped(bytesMessage(session, body), group));
+        } else {
+            jmsTemplate.convertAndSend(JmsConfig.PAYMENT_PROCESSING_QUEUE,
+                    jmsTemplate.getMessageConverter().fromMessage(message));
+        }
+        log.info("✅ Forwarded payment message to processing queue");
+    }
+
+    /**
+     * Sends a copy of a received payment message (body, message group and application
+     * properties) to {@code queue}, overriding the given properties. A {@code null} value
+     * removes that property from the copy.
+     */
+    public void sendCopy(Message original, String queue, Map<String, Object> properties) {
+        jmsTemplate.send(queue, session -> {
+            Message copy;
+            if (original instanceof BytesMessage bytesMessage) {
+                bytesMessage.reset();
+                copy = bytesMessage(session, readBody(bytesMessage));
+            } else if (original instanceof TextMessage textMessage) {
+                copy = session.createTextMessage(textMessage.getText());
+            } else {
+                throw new MessageFormatException("Cannot copy a " + original.getClass().getSimpleName());
+            }
+            Enumeration<?> names = original.getPropertyNames();
+            while (names.hasMoreElements()) {
+                String name = (String) names.nextElement();
+                // JMS-defined properties belong to the broker, except the message group
+                if (!name.startsWith("JMS") && !properties.containsKey(name)) {
+                    copy.setObjectProperty(name, original.getObjectProperty(name));
+                }
+            }
+            for (Map.Entry<String, Object> property : properties.entrySet()) {
+                if (property.getValue() != null) {
+                    copy.setObjectProperty(property.getKey(), property.getValue());
+                }
+            }
+            return grouped(copy, original.getStringProperty(MESSAGE_GROUP_PROPERTY));
+        });
+    }
+
+    public static byte[] readBody(BytesMessage message) throws JMSException {
+        byte[] body = new byte[(int) message.getBodyLength()];
+        message.readBytes(body);
+        return body;
+    }
+
+    // Binary rows go out as BytesMessages; legacy JSON rows keep the converter's TextMessage format
+    private static Message toJmsMessage(OutboxMessage message, MessageConverter converter, Session session)
+            throws JMSException {
+        if (message.getBody() != null) {
+            return grouped(bytesMessage(session, message.getBody()), message.getMessageGroup());
+        }
+        return converter.toMessage(message.getPayload(), session);
+    }
 
-    public void sendPaymentMessage(Payment payment) {
-        try {
-            String message = objectMapper.writeValueAsString(payment);
-            jmsTemplate.convertAndSend(JmsConfig.PAYMENT_QUEUE, message);
-            log.info("✅ Sent payment message to queue: Transaction ID = {}", payment.getTransactionId());
-        } catch (JsonProcessingException e) {
-            log.error("❌ Error converting payment to JSON:  {}", e.getMessage());
+    private static Message grouped(Message message, String group) throws JMSException {
+        if (group != null) {
+            message.setStringProperty(MESSAGE_GROUP_PROPERTY, group);
         }
+        return message;
     }
 
-    public void sendProcessingMessage(Payment payment) {
-        try {
-            String message = objectMapper.writeValueAsString(payment);
-            jmsTemplate.convertAndSend(JmsConfig.PAYMENT_PROCESSING_QUEUE, message);
-            log.info("✅ Sent payment to processing queue: Transaction ID = {}", payment.getTransactionId());
-        } catch (JsonProcessingException e) {
-            log.error("❌ Error sending to processing queue: {}", e.getMessage());
+    private static BytesMessage bytesMessage(Session session, byte[] body) throws JMSException {
+        BytesMessage bytesMessage = session.createBytesMessage();
+        bytesMessage.writeBytes(body);
+        return bytesMessage;
+    }
+
+    /**
+     * Publishes a batch of notifications; the converter writes each one as JSON. With
+     * {@code payment.notifications.async-send} the sends do not wait for the broker: the
+     * returned future completes when the broker has confirmed every message, or fails with
+     * the first error. Otherwise the batch is one transaction and the future is already done.
+     */
+    public CompletableFuture<Void> publishNotifications(List<PaymentNotification> notifications) {
+        if (notifications.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        MessageConverter converter = jmsTemplate.getMessageConverter();
+        try (Connection connection = connectionFactory.createConnection();
+             Session session = asyncNotifications
+                     ? connection.createSession(false, Session.AUTO_ACKNOWLEDGE)
+                     : connection.createSession(true, Session.SESSION_TRANSACTED)) {
+            if (!asyncNotifications) {
+                MessageProducer producer = session.createProducer(session.createQueue(JmsConfig.PAYMENT_NOTIFICATION_QUEUE));
+                for (PaymentNotification notification : notifications) {
+                    producer.send(converter.toMessage(notification, session));
+                }
+                session.commit();
+                log.info("✅ Sent {} notifications", notifications.size());
+                return CompletableFuture.completedFuture(null);
+            }
+            // ActiveMQ refuses JMS 2.0 CompletionListener sends; its own AsyncCallback needs the
+            // real session, and a producer from it is not cached
+            Session target = session instanceof SessionProxy proxy ? proxy.getTargetSession() : session;
+            ActiveMQMessageProducer asyncProducer = (ActiveMQMessageProducer) target.createProducer(
+                    target.createQueue(JmsConfig.PAYMENT_NOTIFICATION_QUEUE));
+            try {
+                BatchCompletion completion = new BatchCompletion(notifications.size());
+                for (PaymentNotification notification : notifications) {
+                    asyncProducer.send(converter.toMessage(notification, target), completion);
+                }
+                return completion.result;
+            } finally {
+                asyncProducer.close();
+            }
+        } catch (JMSException e) {
+            return CompletableFuture.failedFuture(JmsUtils.convertJmsAccessException(e));
         }
     }
 
-    public void sendNotificationMessage(String transactionId, String status, String message) {
-        String notification = String.format(
-                "{\"transactionId\":\"%s\", \"status\":\"%s\", \"message\":\"%s\", \"timestamp\":\"%s\"}",
-                transactionId, status, message, java.time.LocalDateTime.now()
-        );
-        jmsTemplate.convertAndSend(JmsConfig.PAYMENT_NOTIFICATION_QUEUE, notification);
-        log.info("✅ Sent notification:  {} - {}", transactionId, status);
+    // Completes once the broker has answered for every message of a batch
+    private static final class BatchCompletion implements AsyncCallback {
+
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private BatchCompletion(int size) {
+            this.remaining = new AtomicInteger(size);
+        }
+
+        @Override
+        public void onSuccess() {
+            if (remaining.decrementAndGet() == 0) {
+                result.complete(null);
+            }
+        }
+
+        @Override
+        public void onException(JMSException exception) {
+            result.completeExceptionally(exception);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,279 @@
+package com.banking.payment.messaging;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.metrics.QueueDepthMonitor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.env.Environment;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.jms.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resizes the payment, processing and notification listener containers, and the
+ * {@link BatchPaymentConsumer} threads when batch processing is on, at runtime. Every
+ * {@code interval-ms} it reads each listener's queue depth (the broker's QueueSize, see {@link QueueDepthMonitor}) and
+ * the mean {@code payment.queue.wait} since the last check, asks
+ * {@link ListenerScalingPolicy} for a consumer count within the listener's own
+ * {@code payment.listener.autoscaling.<listener>.min/max}, and applies it to the container. Scaling
+ * up is held back while heap or process CPU use is above its limit. The last decisions are kept
+ * for the {@code listenerscaling} actuator endpoint.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.listener.autoscaling.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class ListenerAutoscaler {
+
+    // Only one of the processing listener and the batch consumer runs; the stopped one is skipped
+    private static final Map<String, String> QUEUES_BY_LISTENER = Map.of(
+            JmsConsumer.PAYMENT_LISTENER_ID, JmsConfig.PAYMENT_QUEUE,
+            JmsConsumer.PROCESSING_LISTENER_ID, JmsConfig.PAYMENT_PROCESSING_QUEUE,
+            JmsConsumer.NOTIFICATION_LISTENER_ID, JmsConfig.PAYMENT_NOTIFICATION_QUEUE);
+    private static final int MAX_DECISIONS = 100;
+
+    private final JmsListenerEndpointRegistry listenerRegistry;
+    private final QueueDepthMonitor queueDepthMonitor;
+    private final MeterRegistry meterRegistry;
+    private final BatchPaymentConsumer batchPaymentConsumer;
+    private final ListenerScalingPolicy policy;
+    private final double maxHeapPercent;
+    private final double maxCpuPercent;
+    private final Map<String, ListenerState> states = new ConcurrentHashMap<>();
+    private final Deque<ScalingDecision> decisions = new ArrayDeque<>();
+
+    public ListenerAutoscaler(JmsListenerEndpointRegistry listenerRegistry,
+                              QueueDepthMonitor queueDepthMonitor,
+                              MeterRegistry meterRegistry,
+                              Environment environment,
+                              Optional<BatchPaymentConsumer> batchPaymentConsumer,
+                              @Value("${payment.listener.autoscaling.messages-per-consumer:100}") int messagesPerConsumer,
+                              @Value("${payment.listener.autoscaling.target-wait-ms:1000}") long targetWaitMs,
+                              @Value("${payment.listener.autoscaling.scale-down-after-checks:6}") int scaleDownAfterChecks,
+                              @Value("${payment.listener.autoscaling.max-heap-percent:85}") double maxHeapPercent,
+                              @Value("${payment.listener.autoscaling.max-cpu-percent:90}") double maxCpuPercent) {
+        this.listenerRegistry = listenerRegistry;
+        this.queueDepthMonitor = queueDepthMonitor;
+        this.meterRegistry = meterRegistry;
+        this.batchPaymentConsumer = batchPaymentConsumer.orElse(null);
+        this.policy = new ListenerScalingPolicy(messagesPerConsumer, targetWaitMs, scaleDownAfterChecks);
+        this.maxHeapPercent = maxHeapPercent;
+        this.maxCpuPercent = maxCpuPercent;
+        QUEUES_BY_LISTENER.forEach((listenerId, queue) -> register(listenerId, queue, environment));
+        if (this.batchPaymentConsumer != null) {
+            register(BatchPaymentConsumer.CONSUMER_ID, JmsConfig.PAYMENT_PROCESSING_QUEUE, environment);
+        }
+    }
+
+    private void register(String listenerId, String queue, Environment environment) {
+        ListenerState state = new ListenerState(queue,
+                environment.getProperty(property(listenerId, "min"), Integer.class, 1),
+                environment.getProperty(property(listenerId, "max"), Integer.class, 10));
+        states.put(listenerId, state);
+        Gauge.builder("payment.listener.consumers", state, s -> s.consumers)
+                .description("Consumers the autoscaler has set for the listener")
+                .tag("listener", listenerId)
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.listener.autoscaling.interval-ms:5000}",
+            initialDelayString = "${payment.listener.autoscaling.interval-ms:5000}")
+    public void rescale() {
+        double heapPercent = heapPercent();
+        double cpuPercent = cpuPercent();
+        boolean headroom = heapPercent < maxHeapPercent && cpuPercent < maxCpuPercent;
+        states.forEach((listenerId, state) -> {
+            Consumers consumers = runningConsumers(listenerId);
+            // Stopped containers are left alone
+            if (consumers == null) {
+                return;
+            }
+            try {
+                rescale(listenerId, state, consumers, headroom, heapPercent, cpuPercent);
+            } catch (Exception e) {
+                log.warn("⚠️ Could not rescale {}: {}", listenerId, e.getMessage());
+            }
+        });
+    }
+
+    private void rescale(String listenerId, ListenerState state, Consumers consumers,
+                         boolean headroom, double heapPercent, double cpuPercent) {
+        long depth = queueDepthMonitor.refreshDepth(state.queue);
+        double waitMs = state.recentWaitMs(meterRegistry.find("payment.queue.wait").tag("queue", state.queue).timer());
+        int current = consumers.current();
+        state.quietChecks = policy.isQuiet(current, depth, waitMs) ? state.quietChecks + 1 : 0;
+        state.depth = depth;
+        state.waitMs = waitMs;
+
+        ListenerScalingPolicy.Decision decision = policy.decide(current, state.min, state.max, depth, waitMs,
+                headroom, state.quietChecks);
+        state.consumers = decision.consumers();
+        if (decision.consumers() == current) {
+            return;
+        }
+        consumers.resize(current, decision.consumers());
+        state.quietChecks = 0;
+        record(new ScalingDecision(LocalDateTime.now(), listenerId, state.queue, current, decision.consumers(),
+                decision.reason(), depth, Math.round(waitMs), Math.round(heapPercent), Math.round(cpuPercent)));
+        log.info("📈 Listener {} on {}: {} -> {} consumers ({})",
+                listenerId, state.queue, current, decision.consumers(), decision.reason());
+    }
+
+    /** Current state per listener and the most recent decisions, newest first. */
+    public Map<String, Object> report() {
+        Map<String, Object> listeners = new LinkedHashMap<>();
+        states.forEach((listenerId, state) -> {
+            Map<String, Object> listener = new LinkedHashMap<>();
+            listener.put("queue", state.queue);
+            if (BatchPaymentConsumer.CONSUMER_ID.equals(listenerId)) {
+                listener.put("running", batchPaymentConsumer.isRunning());
+                listener.put("consumers", batchPaymentConsumer.getConsumers());
+            } else {
+                MessageListenerContainer container = listenerRegistry.getListenerContainer(listenerId);
+                listener.put("running", container != null && container.isRunning());
+                if (container instanceof DefaultMessageListenerContainer dmlc) {
+                    listener.put("consumers", dmlc.getConcurrentConsumers());
+                    listener.put("activeConsumers", dmlc.getActiveConsumerCount());
+                }
+            }
+            listener.put("min", state.min);
+            listener.put("max", state.max);
+            listener.put("lastDepth", state.depth);
+            listener.put("lastWaitMs", Math.round(state.waitMs));
+            listeners.put(listenerId, listener);
+        });
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("listeners", listeners);
+        synchronized (decisions) {
+            report.put("decisions", List.copyOf(decisions));
+        }
+        return report;
+    }
+
+    private void record(ScalingDecision decision) {
+        synchronized (decisions) {
+            if (decisions.size() == MAX_DECISIONS) {
+                decisions.removeLast();
+            }
+            decisions.addFirst(decision);
+        }
+    }
+
+    // The listener's container or the batch consumer, or null while it is stopped
+    private Consumers runningConsumers(String listenerId) {
+        if (BatchPaymentConsumer.CONSUMER_ID.equals(listenerId)) {
+            if (!batchPaymentConsumer.isRunning()) {
+                return null;
+            }
+            return new Consumers() {
+                @Override
+                public int current() {
+                    return batchPaymentConsumer.getConsumers();
+                }
+
+                @Override
+                public void resize(int from, int to) {
+                    batchPaymentConsumer.setConsumers(to);
+                }
+            };
+        }
+        if (!(listenerRegistry.getListenerContainer(listenerId) instanceof DefaultMessageListenerContainer container)
+                || !container.isRunning()) {
+            return null;
+        }
+        return new Consumers() {
+            @Override
+            public int current() {
+                return container.getConcurrentConsumers();
+            }
+
+            // The container rejects a concurrent count above its maximum, so the order depends on the direction
+            @Override
+            public void resize(int from, int to) {
+                if (to > from) {
+                    container.setMaxConcurrentConsumers(to);
+                    container.setConcurrentConsumers(to);
+                } else {
+                    container.setConcurrentConsumers(to);
+                    container.setMaxConcurrentConsumers(to);
+                }
+            }
+        };
+    }
+
+    private static String property(String listenerId, String limit) {
+        return "payment.listener.autoscaling." + listenerId + "." + limit;
+    }
+
+    private static double heapPercent() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        return heap.getMax() > 0 ? heap.getUsed() * 100.0 / heap.getMax() : 0;
+    }
+
+    private static double cpuPercent() {
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            return Math.max(0, os.getProcessCpuLoad() * 100);
+        }
+        return 0;
+    }
+
+    private interface Consumers {
+
+        int current();
+
+        void resize(int from, int to);
+    }
+
+    public record ScalingDecision(LocalDateTime at, String listener, String queue, int from, int to, String reason,
+                                  long depth, long waitMs, long heapPercent, long cpuPercent) {
+    }
+
+    private static final class ListenerState {
+
+        private final String queue;
+        private final int min;
+        private final int max;
+        private volatile int consumers;
+        private volatile long depth;
+        private volatile double waitMs;
+        private int quietChecks;
+        private long lastCount;
+        private double lastTotalMs;
+
+        private ListenerState(String queue, int min, int max) {
+            this.queue = queue;
+            this.min = min;
+            this.max = max;
+        }
+
+        // Mean queue wait of the messages delivered since the previous check
+        private double recentWaitMs(Timer timer) {
+            if (timer == null) {
+                return 0;
+            }
+            long count = timer.count();
+            double totalMs = timer.totalTime(TimeUnit.MILLISECONDS);
+            double recent = count > lastCount ? (totalMs - lastTotalMs) / (count - lastCount) : 0;
+            lastCount = count;
+            lastTotalMs = totalMs;
+            return recent;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.banking.payment.messaging;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/** {@code GET /actuator/listenerscaling}: consumer counts, limits and recent scaling decisions. */
+@Component
+@ConditionalOnProperty(name = "payment.listener.autoscaling.enabled", havingValue = "true", matchIfMissing = true)
+@Endpoint(id = "listenerscaling")
+@RequiredArgsConstructor
+public class ListenerScalingEndpoint {
+
+    private final ListenerAutoscaler listenerAutoscaler;
+
+    @ReadOperation
+    public Map<String, Object> listenerScaling() {
+        return listenerAutoscaler.report();
+    }
+}
@@ -0,0 +1,48 @@
+package com.banking.payment.messaging;
+
+/**
+ * Decides how many consumers a listener container should run from its queue's depth and the
+ * recent queue wait. Scales up fast (to the size the backlog needs, at least doubling) so a burst
+ * drains quickly, and down one consumer at a time after {@code scaleDownAfterChecks} quiet checks
+ * in a row so a short lull does not tear consumers down only to add them back.
+ */
+public record ListenerScalingPolicy(int messagesPerConsumer, long targetWaitMs, int scaleDownAfterChecks) {
+
+    public record Decision(int consumers, String reason) {
+    }
+
+    /** Backlog and wait both well below what the current consumers can absorb. */
+    public boolean isQuiet(int current, long depth, double waitMs) {
+        return depth * 4 <= (long) current * messagesPerConsumer && waitMs * 4 <= targetWaitMs;
+    }
+
+    public Decision decide(int current, int min, int max, long depth, double waitMs, boolean headroom, int quietChecks) {
+        if (current < min) {
+            return new Decision(min, "below minimum " + min);
+        }
+        if (current > max) {
+            return new Decision(max, "above maximum " + max);
+        }
+        boolean backlog = depth > (long) current * messagesPerConsumer || waitMs > targetWaitMs;
+        if (backlog) {
+            if (!headroom) {
+                return current > min
+                        ? new Decision(current - 1, "backlog but no heap/CPU headroom")
+                        : new Decision(current, null);
+            }
+            if (current < max) {
+                int needed = (int) Math.min(max, (depth + messagesPerConsumer - 1) / messagesPerConsumer);
+                int next = Math.min(max, Math.max(current * 2, needed));
+                return new Decision(next, String.format("depth %d, wait %.0f ms", depth, waitMs));
+            }
+            return new Decision(current, null);
+        }
+        if (!headroom && current > min) {
+            return new Decision(current - 1, "no heap/CPU headroom");
+        }
+        if (quietChecks >= scaleDownAfterChecks && current > min) {
+            return new Decision(current - 1, String.format("quiet for %d checks", quietChecks));
+        }
+        return new Decision(current, null);
+    }
+}
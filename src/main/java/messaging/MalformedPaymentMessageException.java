@@ -0,0 +1,12 @@
+package com.banking.payment.messaging;
+
+/**
+ * A payment message body that cannot be decoded. It fails the same way on every delivery, so
+ * {@link PaymentRetryScheduler} dead-letters it at once.
+ */
+public class MalformedPaymentMessageException extends IllegalArgumentException {
+
+    public MalformedPaymentMessageException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,58 @@
+package com.banking.payment.messaging;
+
+import com.banking.payment.model.OutboxMessage;
+import com.banking.payment.repository.OutboxMessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Drains the outbox in the background. Each batch is locked, published over one
+ * transacted JMS session and deleted in a single DB transaction; if publishing fails
+ * the rows stay put and are retried on the next poll (at-least-once delivery).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final JmsProducer jmsProducer;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${payment.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${payment.outbox.poll-interval-ms:200}")
+    public void relay() {
+        try {
+            int relayed;
+            // Keep draining while batches come back full instead of waiting for the next tick
+            do {
+                relayed = relayBatch();
+            } while (relayed > 0 && relayed >= batchSize);
+        } catch (Exception e) {
+            log.error("❌ Outbox relay failed, will retry: {}", e.getMessage(), e);
+        }
+    }
+
+    int relayBatch() {
+        Integer relayed = new TransactionTemplate(transactionManager).execute(status -> {
+            List<OutboxMessage> batch = outboxMessageRepository.findAllByOrderByIdAsc(Limit.of(batchSize));
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            jmsProducer.publish(batch);
+            outboxMessageRepository.deleteAllInBatch(batch);
+            return batch.size();
+        });
+        return relayed == null ? 0 : relayed;
+    }
+}
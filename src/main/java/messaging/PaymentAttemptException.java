@@ -0,0 +1,33 @@
+package com.banking.payment.messaging;
+
+import com.banking.payment.model.Payment;
+
+/**
+ * A processing attempt that ended without storing a final status. The message is retried, and
+ * {@link #getResumeWith()} is the status the attempt left the payment in, or meant to.
+ */
+public class PaymentAttemptException extends RuntimeException {
+
+    private final String transactionId;
+    private final Payment.PaymentStatus resumeWith;
+
+    public PaymentAttemptException(String transactionId, Payment.PaymentStatus resumeWith, String message,
+                                   Throwable cause) {
+        super(message, cause);
+        this.transactionId = transactionId;
+        this.resumeWith = resumeWith;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public Payment.PaymentStatus getResumeWith() {
+        return resumeWith;
+    }
+
+    /** The gateway answered (COMPLETED or FAILED) and only storing the answer failed. */
+    public boolean hasGatewayAnswer() {
+        return resumeWith == Payment.PaymentStatus.COMPLETED || resumeWith == Payment.PaymentStatus.FAILED;
+    }
+}
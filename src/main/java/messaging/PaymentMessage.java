@@ -0,0 +1,27 @@
+package com.banking.payment.messaging;
+
+import com.banking.payment.model.Payment;
+
+import java.math.BigDecimal;
+
+/**
+ * What travels between pipeline stages: enough to route, screen and process a payment,
+ * without the description and timestamps the processing worker never reads.
+ */
+public record PaymentMessage(Long paymentId,
+                             String transactionId,
+                             String senderAccount,
+                             String receiverAccount,
+                             BigDecimal amount,
+                             String currency) {
+
+    public static PaymentMessage from(Payment payment) {
+        return new PaymentMessage(
+                payment.getId(),
+                payment.getTransactionId(),
+                payment.getSenderAccount(),
+                payment.getReceiverAccount(),
+                payment.getAmount(),
+                payment.getCurrency());
+    }
+}
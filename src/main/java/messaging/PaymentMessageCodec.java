@@ -0,0 +1,151 @@
+package com.banking.payment.messaging;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary encoding of {@link PaymentMessage}, sent as a JMS BytesMessage.
+ * <p>
+ * Layout: a magic byte, a format version, then fields as {@code tag, length, value}.
+ * Lengths are varints, so decoders skip tags they do not know and treat missing tags as
+ * {@code null}. Adding a field therefore only needs a new tag; {@link #VERSION} is bumped
+ * only for changes old readers must refuse.
+ */
+public final class PaymentMessageCodec {
+
+    static final byte MAGIC = (byte) 0xB7;
+    static final byte VERSION = 1;
+
+    private static final int TAG_PAYMENT_ID = 1;
+    private static final int TAG_TRANSACTION_ID = 2;
+    private static final int TAG_SENDER_ACCOUNT = 3;
+    private static final int TAG_RECEIVER_ACCOUNT = 4;
+    private static final int TAG_AMOUNT = 5;
+    private static final int TAG_CURRENCY = 6;
+
+    private PaymentMessageCodec() {
+    }
+
+    public static byte[] encode(PaymentMessage message) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(96);
+        out.write(MAGIC);
+        out.write(VERSION);
+        if (message.paymentId() != null) {
+            writeField(out, TAG_PAYMENT_ID, varint(message.paymentId()));
+        }
+        writeString(out, TAG_TRANSACTION_ID, message.transactionId());
+        writeString(out, TAG_SENDER_ACCOUNT, message.senderAccount());
+        writeString(out, TAG_RECEIVER_ACCOUNT, message.receiverAccount());
+        if (message.amount() != null) {
+            writeField(out, TAG_AMOUNT, decimal(message.amount()));
+        }
+        writeString(out, TAG_CURRENCY, message.currency());
+        return out.toByteArray();
+    }
+
+    public static PaymentMessage decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (buffer.remaining() < 2 || buffer.get() != MAGIC) {
+            throw new MalformedPaymentMessageException("Not a binary payment message");
+        }
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new MalformedPaymentMessageException("Unsupported payment message version " + version);
+        }
+
+        Long paymentId = null;
+        String transactionId = null;
+        String senderAccount = null;
+        String receiverAccount = null;
+        BigDecimal amount = null;
+        String currency = null;
+        while (buffer.hasRemaining()) {
+            int tag = (int) readVarint(buffer);
+            int length = (int) readVarint(buffer);
+            if (length < 0 || length > buffer.remaining()) {
+                throw new MalformedPaymentMessageException("Truncated payment message");
+            }
+            ByteBuffer value = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            switch (tag) {
+                case TAG_PAYMENT_ID -> paymentId = readVarint(value);
+                case TAG_TRANSACTION_ID -> transactionId = readString(value);
+                case TAG_SENDER_ACCOUNT -> senderAccount = readString(value);
+                case TAG_RECEIVER_ACCOUNT -> receiverAccount = readString(value);
+                case TAG_AMOUNT -> amount = readDecimal(value);
+                case TAG_CURRENCY -> currency = readString(value);
+                default -> {
+                    // Written by a newer producer; skipped
+                }
+            }
+        }
+        return new PaymentMessage(paymentId, transactionId, senderAccount, receiverAccount, amount, currency);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, int tag, String value) {
+        if (value != null) {
+            writeField(out, tag, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeField(ByteArrayOutputStream out, int tag, byte[] value) {
+        out.writeBytes(varint(tag));
+        out.writeBytes(varint(value.length));
+        out.writeBytes(value);
+    }
+
+    // Scale as a varint followed by the two's-complement unscaled value
+    private static byte[] decimal(BigDecimal value) {
+        byte[] scale = varint(value.scale());
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        byte[] bytes = new byte[scale.length + unscaled.length];
+        System.arraycopy(scale, 0, bytes, 0, scale.length);
+        System.arraycopy(unscaled, 0, bytes, scale.length, unscaled.length);
+        return bytes;
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer value) {
+        int scale = (int) readVarint(value);
+        byte[] unscaled = new byte[value.remaining()];
+        value.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static String readString(ByteBuffer value) {
+        byte[] bytes = new byte[value.remaining()];
+        value.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Unsigned LEB128; every value written here is non-negative
+    private static byte[] varint(long value) {
+        byte[] buffer = new byte[10];
+        int length = 0;
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, 0, bytes, 0, length);
+        return bytes;
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                throw new MalformedPaymentMessageException("Truncated payment message");
+            }
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new MalformedPaymentMessageException("Malformed varint in payment message");
+    }
+}
@@ -0,0 +1,45 @@
+package com.banking.payment.messaging;
+
+import com.banking.payment.model.OutboxMessage;
+import com.banking.payment.model.Payment;
+import com.banking.payment.repository.OutboxMessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Records payment messages in the outbox table. Must be called inside the transaction
+ * that writes the payment, so the message exists if and only if the payment commits.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentOutbox {
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final PaymentPipeline paymentPipeline;
+
+    public void enqueue(Payment payment) {
+        outboxMessageRepository.save(toOutboxMessage(payment));
+        log.debug("Queued outbox message for Transaction ID = {}", payment.getTransactionId());
+    }
+
+    public void enqueueAll(List<Payment> payments) {
+        outboxMessageRepository.saveAll(payments.stream()
+                .map(this::toOutboxMessage)
+                .collect(Collectors.toList()));
+        log.debug("Queued {} outbox messages", payments.size());
+    }
+
+    private OutboxMessage toOutboxMessage(Payment payment) {
+        return OutboxMessage.builder()
+                .destination(paymentPipeline.ingressDestination())
+                .aggregateId(payment.getTransactionId())
+                .body(PaymentMessageCodec.encode(PaymentMessage.from(payment)))
+                .messageGroup(payment.getSenderAccount())
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package com.banking.payment.messaging;
+
+import com.banking.payment.config.JmsConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Decides where new payments enter the messaging pipeline and runs the in-process stages.
+ * DIRECT publishes straight to {@link JmsConfig#PAYMENT_PROCESSING_QUEUE}; STAGED keeps the
+ * old payment.queue hop for rollouts where consumers of that queue still exist.
+ */
+@Component
+@Slf4j
+public class PaymentPipeline {
+
+    private final Topology topology;
+    private final List<PaymentStageHandler> stages;
+
+    public PaymentPipeline(@Value("${payment.pipeline.topology:DIRECT}") Topology topology,
+                           ObjectProvider<PaymentStageHandler> stages) {
+        this.topology = topology;
+        this.stages = stages.orderedStream().collect(Collectors.toList());
+        log.info("Payment pipeline topology: {} with {} in-process stage(s)", topology, this.stages.size());
+    }
+
+    public String ingressDestination() {
+        return topology == Topology.DIRECT ? JmsConfig.PAYMENT_PROCESSING_QUEUE : JmsConfig.PAYMENT_QUEUE;
+    }
+
+    /**
+     * Passes the payment through every stage, each getting what the previous one returned.
+     * Returns what reaches the processor, or {@code null} if a stage stopped it.
+     */
+    public PaymentMessage applyStages(PaymentMessage payment) {
+        for (PaymentStageHandler stage : stages) {
+            PaymentMessage next = stage.handle(payment);
+            if (next == null) {
+                log.info("⏭️ Payment {} stopped by stage {}", payment.transactionId(), stage.getClass().getSimpleName());
+                return null;
+            }
+            payment = next;
+        }
+        return payment;
+    }
+
+    public enum Topology {
+        DIRECT,
+        STAGED
+    }
+}
@@ -0,0 +1,370 @@
+package com.banking.payment.messaging;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.exception.InvalidStatusTransitionException;
+import com.banking.payment.gateway.GatewayRejectedException;
+import com.banking.payment.model.Payment;
+import com.banking.payment.service.PaymentStatusService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.jms.Connection;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.MessageFormatException;
+import jakarta.jms.Session;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retries payment messages whose processing failed without holding a listener thread. The
+ * failed message is copied to {@code payment.retry.queue} with its attempt number and due
+ * time, and the original is acknowledged. The retry listener parks each retry message on a
+ * timer, unacknowledged, and when it is due sends it back to the queue it came from and only
+ * then acknowledges it, so a crash in between makes the broker redeliver the retry rather than
+ * lose the payment.
+ * <p>
+ * If the failed attempt had already marked the payment PROCESSING, the copy also carries
+ * {@code PaymentResumeWith} (see {@link PaymentAttemptException}), so the next attempt can finish
+ * or undo it instead of skipping a payment that is no longer PENDING.
+ * <p>
+ * Copies keep their JMSXGroupID, so a retry still goes to the consumer that owns the sender's
+ * group, but it is queued behind whatever that sender published in the meantime: a retried
+ * payment gives up its place in the sender's order.
+ * <p>
+ * A call the gateway rejected without seeing it (circuit open, bulkhead full) is retried without
+ * counting an attempt, and not before the circuit is due to let trial calls through, so an
+ * outage longer than the retry budget leaves payments PENDING rather than dead-lettered.
+ * <p>
+ * Poison messages, which can never succeed, and messages that used up
+ * {@code payment.retry.max-attempts} go to {@code payment.dead.letter.queue} instead, with the
+ * reason and error attached. {@link DeadLetterEndpoint} lists and replays them. A dead letter
+ * whose attempt already had the gateway's answer also records that answer on the payment, so
+ * {@link StaleProcessingRecovery} stores it rather than calling the gateway a second time.
+ */
+@Component
+@Slf4j
+public class PaymentRetryScheduler {
+
+    static final String ATTEMPT_PROPERTY = "PaymentRetryAttempt";
+    static final String DUE_AT_PROPERTY = "PaymentRetryDueAt";
+    static final String ORIGIN_QUEUE_PROPERTY = "PaymentOriginQueue";
+    static final String FAILURE_REASON_PROPERTY = "PaymentFailureReason";
+    static final String FAILURE_PROPERTY = "PaymentFailure";
+    static final String RESUME_WITH_PROPERTY = "PaymentResumeWith";
+
+    static final String POISON = "poison";
+    static final String EXHAUSTED = "exhausted";
+
+    private static final long REPLAY_RECEIVE_TIMEOUT_MS = 500;
+    private static final int MAX_FAILURE_LENGTH = 500;
+
+    private final JmsProducer jmsProducer;
+    private final JmsTemplate jmsTemplate;
+    private final ConnectionFactory connectionFactory;
+    private final PaymentStatusService paymentStatusService;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long initialDelayMs;
+    private final double multiplier;
+    private final long maxDelayMs;
+    private final ScheduledThreadPoolExecutor timer;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Counter scheduled;
+    private final Counter replayed;
+
+    public PaymentRetryScheduler(JmsProducer jmsProducer,
+                                 JmsTemplate jmsTemplate,
+                                 ConnectionFactory connectionFactory,
+                                 PaymentStatusService paymentStatusService,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${payment.retry.max-attempts:5}") int maxAttempts,
+                                 @Value("${payment.retry.initial-delay-ms:1000}") long initialDelayMs,
+                                 @Value("${payment.retry.multiplier:2.0}") double multiplier,
+                                 @Value("${payment.retry.max-delay-ms:60000}") long maxDelayMs) {
+        this.jmsProducer = jmsProducer;
+        this.jmsTemplate = jmsTemplate;
+        this.connectionFactory = connectionFactory;
+        this.paymentStatusService = paymentStatusService;
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.initialDelayMs = initialDelayMs;
+        this.multiplier = multiplier;
+        this.maxDelayMs = maxDelayMs;
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "payment-retry-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scheduled = Counter.builder("payment.retry.scheduled")
+                .description("Failed payment messages sent to the retry queue")
+                .register(meterRegistry);
+        this.replayed = Counter.builder("payment.retry.replayed")
+                .description("Dead-lettered payment messages replayed to their original queue")
+                .register(meterRegistry);
+        Gauge.builder("payment.retry.pending", pending, AtomicInteger::get)
+                .description("Retry messages waiting on the timer for their delay")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Called by a listener when {@code message} from {@code originQueue} failed. Sends a delayed
+     * retry or a dead letter; the caller acknowledges the original once this returns. Throws if
+     * neither could be sent, in which case the original must not be acknowledged. A gateway
+     * rejection keeps the attempt number and waits out the rest of the circuit's open time.
+     */
+    public void retryOrDeadLetter(Message message, String originQueue, Throwable error) throws JMSException {
+        Throwable cause = unwrap(error);
+        GatewayRejectedException rejected = rejectionOf(cause);
+        // The gateway never saw a rejected call, so it does not use up an attempt
+        int attempt = attemptOf(message) + (rejected == null ? 1 : 0);
+        if (isPoison(cause)) {
+            deadLetter(message, originQueue, POISON, cause);
+        } else if (rejected == null && attempt >= maxAttempts) {
+            deadLetter(message, originQueue, EXHAUSTED, cause);
+        } else {
+            long delayMs = rejected == null ? backoffMs(attempt) : rejected.getRetryAfterMs() + backoffMs(1);
+            Map<String, Object> properties = new HashMap<>();
+            properties.put(ATTEMPT_PROPERTY, attempt);
+            properties.put(DUE_AT_PROPERTY, System.currentTimeMillis() + delayMs);
+            properties.put(ORIGIN_QUEUE_PROPERTY, originQueue);
+            putResumeWith(properties, cause);
+            jmsProducer.sendCopy(message, JmsConfig.PAYMENT_RETRY_QUEUE, properties);
+            scheduled.increment();
+            if (rejected != null) {
+                log.warn("⏭️ Gateway rejected message from {} ({}), retrying in {} ms without counting an attempt",
+                        originQueue, rejected.getReason(), delayMs);
+            } else {
+                log.warn("🔁 Retry {} of message from {} in {} ms: {}", attempt, originQueue, delayMs, cause.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Parks a message from the retry queue until it is due. Returns at once; the message stays
+     * unacknowledged until it has been sent back to its original queue.
+     */
+    public void schedule(Message retryMessage) {
+        String originQueue;
+        long delayMs;
+        try {
+            originQueue = retryMessage.getStringProperty(ORIGIN_QUEUE_PROPERTY);
+            delayMs = retryMessage.propertyExists(DUE_AT_PROPERTY)
+                    ? retryMessage.getLongProperty(DUE_AT_PROPERTY) - System.currentTimeMillis()
+                    : 0;
+        } catch (JMSException e) {
+            throw JmsUtils.convertJmsAccessException(e);
+        }
+        if (originQueue == null) {
+            log.error("❌ Retry message without an origin queue, dead-lettering it");
+            deadLetter(retryMessage, JmsConfig.PAYMENT_RETRY_QUEUE, POISON,
+                    new MessageFormatException("Missing " + ORIGIN_QUEUE_PROPERTY));
+            acknowledge(retryMessage);
+            return;
+        }
+        pending.incrementAndGet();
+        timer.schedule(() -> resend(retryMessage, originQueue), Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+    }
+
+    private void resend(Message retryMessage, String originQueue) {
+        try {
+            jmsProducer.sendCopy(retryMessage, originQueue, Map.of());
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Could not send retry back to {}, trying again in {} ms: {}",
+                    originQueue, initialDelayMs, e.getMessage());
+            timer.schedule(() -> resend(retryMessage, originQueue), initialDelayMs, TimeUnit.MILLISECONDS);
+            return;
+        }
+        pending.decrementAndGet();
+        acknowledge(retryMessage);
+    }
+
+    /** Up to {@code limit} dead letters, oldest first, without removing them. */
+    public List<Map<String, Object>> deadLetters(int limit) {
+        return jmsTemplate.browse(JmsConfig.PAYMENT_DEAD_LETTER_QUEUE, (session, browser) -> {
+            List<Map<String, Object>> entries = new ArrayList<>();
+            Enumeration<?> messages = browser.getEnumeration();
+            while (messages.hasMoreElements() && entries.size() < limit) {
+                Message message = (Message) messages.nextElement();
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("messageId", message.getJMSMessageID());
+                entry.put("originQueue", message.getStringProperty(ORIGIN_QUEUE_PROPERTY));
+                entry.put("attempts", attemptOf(message) + 1);
+                entry.put("reason", message.getStringProperty(FAILURE_REASON_PROPERTY));
+                entry.put("error", message.getStringProperty(FAILURE_PROPERTY));
+                entry.put("deadLetteredAt", Instant.ofEpochMilli(message.getJMSTimestamp()));
+                entries.add(entry);
+            }
+            return entries;
+        });
+    }
+
+    /**
+     * Moves dead letters back to their original queue with a fresh attempt count: the one with
+     * {@code messageId}, or all of them when it is {@code null}. Each message is removed from the
+     * dead-letter queue only after its copy was sent, so a failure can repeat but not lose one.
+     * Messages dead-lettered after the replay started are left in place.
+     */
+    public int replay(String messageId) {
+        String selector = messageId == null ? null : "JMSMessageID = '" + messageId.replace("'", "''") + "'";
+        Map<String, Object> reset = new HashMap<>();
+        reset.put(ATTEMPT_PROPERTY, null);
+        reset.put(DUE_AT_PROPERTY, null);
+        reset.put(FAILURE_REASON_PROPERTY, null);
+        reset.put(FAILURE_PROPERTY, null);
+        long startedAt = System.currentTimeMillis();
+        int count = 0;
+        try (Connection connection = connectionFactory.createConnection();
+             Session session = connection.createSession(true, Session.SESSION_TRANSACTED)) {
+            MessageConsumer consumer = session.createConsumer(
+                    session.createQueue(JmsConfig.PAYMENT_DEAD_LETTER_QUEUE), selector);
+            connection.start();
+            Message message;
+            while ((message = consumer.receive(REPLAY_RECEIVE_TIMEOUT_MS)) != null) {
+                if (message.getJMSTimestamp() > startedAt) {
+                    // Dead-lettered again since the replay began; leave it for the next one
+                    session.rollback();
+                    break;
+                }
+                String originQueue = message.getStringProperty(ORIGIN_QUEUE_PROPERTY);
+                jmsProducer.sendCopy(message, originQueue != null ? originQueue : JmsConfig.PAYMENT_PROCESSING_QUEUE, reset);
+                session.commit();
+                count++;
+                if (messageId != null) {
+                    break;
+                }
+            }
+        } catch (JMSException e) {
+            throw JmsUtils.convertJmsAccessException(e);
+        }
+        replayed.increment(count);
+        log.info("🔁 Replayed {} dead-lettered payment messages", count);
+        return count;
+    }
+
+    /** The resume instruction a retried payment message carries, or {@code null}. */
+    public static Payment.PaymentStatus resumeWith(Message message) throws JMSException {
+        String resumeWith = message.getStringProperty(RESUME_WITH_PROPERTY);
+        if (resumeWith == null) {
+            return null;
+        }
+        try {
+            return Payment.PaymentStatus.valueOf(resumeWith);
+        } catch (IllegalArgumentException e) {
+            throw new MessageFormatException("Unknown " + RESUME_WITH_PROPERTY + " " + resumeWith);
+        }
+    }
+
+    // A later failure overrides an earlier instruction; otherwise the copy keeps the one it had
+    private static void putResumeWith(Map<String, Object> properties, Throwable cause) {
+        if (cause instanceof PaymentAttemptException attempt && attempt.getResumeWith() != null) {
+            properties.put(RESUME_WITH_PROPERTY, attempt.getResumeWith().name());
+        }
+    }
+
+    /**
+     * Poison failures come from the message itself (undecodable body, a status change that can
+     * no longer happen) and fail the same way every time. Only the exceptions this code throws
+     * for those count; everything else, including an IllegalArgumentException from a driver or
+     * the broker, database errors and gateway rejections, is treated as transient.
+     */
+    static boolean isPoison(Throwable error) {
+        Throwable cause = unwrap(error);
+        return cause instanceof MalformedPaymentMessageException
+                || cause instanceof JsonProcessingException
+                || cause instanceof MessageConversionException
+                || cause instanceof MessageFormatException
+                || cause instanceof InvalidStatusTransitionException;
+    }
+
+    // Rejected by the circuit breaker or the bulkhead, directly or as the reason an attempt was abandoned
+    private static GatewayRejectedException rejectionOf(Throwable cause) {
+        if (cause instanceof PaymentAttemptException && cause.getCause() != null) {
+            cause = unwrap(cause.getCause());
+        }
+        return cause instanceof GatewayRejectedException rejected ? rejected : null;
+    }
+
+    // initial * multiplier^(attempt - 1), capped, with +/-20% jitter so retries of a burst spread out
+    long backoffMs(int attempt) {
+        double delay = Math.min(maxDelayMs, initialDelayMs * Math.pow(multiplier, attempt - 1));
+        return (long) (delay * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+    }
+
+    private void deadLetter(Message message, String originQueue, String reason, Throwable cause) {
+        String failure = String.valueOf(cause.getMessage());
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(ORIGIN_QUEUE_PROPERTY, originQueue);
+        properties.put(FAILURE_REASON_PROPERTY, reason);
+        properties.put(FAILURE_PROPERTY, failure.length() > MAX_FAILURE_LENGTH ? failure.substring(0, MAX_FAILURE_LENGTH) : failure);
+        properties.put(DUE_AT_PROPERTY, null);
+        // Kept through a replay, so a replayed payment still finishes what its last attempt started
+        putResumeWith(properties, cause);
+        jmsProducer.sendCopy(message, JmsConfig.PAYMENT_DEAD_LETTER_QUEUE, properties);
+        if (cause instanceof PaymentAttemptException attempt && attempt.hasGatewayAnswer()) {
+            recordGatewayAnswer(attempt);
+        }
+        Counter.builder("payment.retry.dead.lettered")
+                .description("Payment messages moved to the dead-letter queue")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        log.error("❌ Dead-lettered message from {} ({}): {}", originQueue, reason, failure);
+    }
+
+    // Without it the payment stays PROCESSING and stale recovery would call the gateway again
+    private void recordGatewayAnswer(PaymentAttemptException attempt) {
+        try {
+            if (paymentStatusService.recordGatewayAnswer(attempt.getTransactionId(), attempt.getResumeWith())) {
+                log.warn("⚠️ Recorded gateway answer {} for dead-lettered payment {}",
+                        attempt.getResumeWith(), attempt.getTransactionId());
+            }
+        } catch (RuntimeException e) {
+            log.error("❌ Could not record gateway answer {} for {}; replay its dead letter before stale recovery "
+                    + "requeues it: {}", attempt.getResumeWith(), attempt.getTransactionId(), e.getMessage());
+        }
+    }
+
+    private static int attemptOf(Message message) throws JMSException {
+        return message.propertyExists(ATTEMPT_PROPERTY) ? message.getIntProperty(ATTEMPT_PROPERTY) : 0;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private void acknowledge(Message message) {
+        try {
+            message.acknowledge();
+        } catch (JMSException e) {
+            log.warn("⚠️ Could not acknowledge retry message: {}", e.getMessage());
+        }
+    }
+
+    // Parked retries stay unacknowledged, so the broker redelivers them after a restart
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+}
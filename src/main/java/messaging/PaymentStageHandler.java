@@ -0,0 +1,19 @@
+package com.banking.payment.messaging;
+
+/**
+ * An in-process step (routing, enrichment, screening, ...) applied to every payment
+ * before the processing worker picks it up. Register implementations as Spring beans;
+ * they run in {@link org.springframework.core.annotation.Order} order on the listener
+ * thread, so adding a stage never adds a queue hop.
+ */
+public interface PaymentStageHandler {
+
+    /**
+     * Returns the payment the next stage gets: {@code payment} itself, or an enriched or
+     * rerouted copy. Returns {@code null} to stop the pipeline; the message is then
+     * acknowledged without processing, so a stage that stops a payment (sent it elsewhere,
+     * rejected it on screening) is responsible for what happens to it. Throwing sends the
+     * message to the retry path like any other processing failure.
+     */
+    PaymentMessage handle(PaymentMessage payment);
+}
@@ -0,0 +1,106 @@
+package com.banking.payment.messaging;
+
+import com.banking.payment.ledger.PaymentLedger;
+import com.banking.payment.model.Payment;
+import com.banking.payment.service.PaymentStatusService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Requeues payments whose processing attempt died with its node. An attempt that fails in a
+ * running process is resumed by its retry message, but after a crash the payment stays
+ * PROCESSING and its redelivered message is skipped. Payments PROCESSING for longer than
+ * {@code payment.processing.stale-after-ms} go back to PENDING with a new outbox message, and
+ * the gateway is called again with the same transaction ID. The threshold must stay well above
+ * {@code payment.gateway.timeout-ms} so a live attempt is never requeued.
+ * <p>
+ * A payment whose attempt was dead-lettered after the gateway had answered carries that answer
+ * (see {@link PaymentStatusService#recordGatewayAnswer}); it is finished with it instead, so the
+ * customer is never charged twice.
+ */
+@Component
+@Slf4j
+public class StaleProcessingRecovery {
+
+    private static final int BATCH_SIZE = 100;
+
+    private final PaymentStatusService paymentStatusService;
+    private final AsyncPaymentProcessor asyncPaymentProcessor;
+    private final PaymentLedger paymentLedger;
+    private final Duration staleAfter;
+    private final Counter requeued;
+
+    public StaleProcessingRecovery(PaymentStatusService paymentStatusService,
+                                   AsyncPaymentProcessor asyncPaymentProcessor,
+                                   Optional<PaymentLedger> paymentLedger,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${payment.processing.stale-after-ms:120000}") long staleAfterMs) {
+        this.paymentStatusService = paymentStatusService;
+        this.asyncPaymentProcessor = asyncPaymentProcessor;
+        this.paymentLedger = paymentLedger.orElse(null);
+        this.staleAfter = Duration.ofMillis(staleAfterMs);
+        this.requeued = Counter.builder("payment.processing.requeued")
+                .description("Payments stuck in PROCESSING that were returned to PENDING and published again")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${payment.processing.recovery-interval-ms:60000}",
+            fixedDelayString = "${payment.processing.recovery-interval-ms:60000}")
+    public void requeueStale() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(staleAfter);
+        finishAnswered(cutoff);
+        try {
+            List<Payment> payments;
+            do {
+                payments = paymentStatusService.requeueStale(cutoff, BATCH_SIZE);
+                if (paymentLedger != null) {
+                    // After the commit; a crash in between is caught by the ledger's startup reconciliation
+                    payments.forEach(paymentLedger::release);
+                }
+                requeued.increment(payments.size());
+                if (!payments.isEmpty()) {
+                    log.warn("⚠️ Requeued {} payments stuck in PROCESSING for over {} s",
+                            payments.size(), staleAfter.toSeconds());
+                }
+            } while (payments.size() == BATCH_SIZE);
+        } catch (RuntimeException e) {
+            log.error("❌ Could not requeue stale PROCESSING payments, will retry: {}", e.getMessage(), e);
+        }
+    }
+
+    // Stores the recorded answer like a resumed retry would; one that fails again is picked up on the next run
+    private void finishAnswered(LocalDateTime cutoff) {
+        List<Payment> answered;
+        try {
+            answered = paymentStatusService.findStaleAnswered(cutoff, BATCH_SIZE);
+        } catch (RuntimeException e) {
+            log.error("❌ Could not read stale payments with a gateway answer, will retry: {}", e.getMessage(), e);
+            return;
+        }
+        for (Payment payment : answered) {
+            log.warn("⚠️ Finishing {} with its recorded gateway answer {}", payment.getTransactionId(),
+                    payment.getGatewayAnswer());
+            try {
+                asyncPaymentProcessor.process(payment.getTransactionId(), null, payment.getGatewayAnswer())
+                        .whenComplete((status, error) -> {
+                            if (error != null) {
+                                log.error("❌ Could not finish {}, will retry: {}",
+                                        payment.getTransactionId(), error.getMessage());
+                            }
+                        });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.banking.payment.metrics;
+
+import com.banking.payment.event.PaymentStatusChangedEvent;
+import com.banking.payment.model.Payment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of each stage a payment passes through, plus status counters. Every timer
+ * publishes a percentile histogram so p99 can be computed per stage from Prometheus:
+ * <ul>
+ *   <li>{@code payment.create.commit} - service entry until the insert is committed</li>
+ *   <li>{@code payment.outbox.wait} - commit until the relay publishes the message</li>
+ *   <li>{@code payment.publish} - one outbox batch sent to the broker</li>
+ *   <li>{@code payment.queue.wait} - time on a queue, from the JMS timestamp to delivery</li>
+ *   <li>{@code payment.gateway} - gateway round trip</li>
+ *   <li>{@code payment.lifecycle} - creation until COMPLETED/FAILED is committed</li>
+ * </ul>
+ */
+@Component
+public class PaymentMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Timer publishTimer;
+    private final Timer outboxWaitTimer;
+
+    public PaymentMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.publishTimer = timer("payment.publish", "Publishing one outbox batch to the broker")
+                .register(meterRegistry);
+        this.outboxWaitTimer = timer("payment.outbox.wait", "Time a message waits in the outbox before it is published")
+                .register(meterRegistry);
+    }
+
+    public Timer.Sample startTimer() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * Stops the sample and counts the new payments once the surrounding transaction commits,
+     * or right away when there is none. Rolled-back creates are not recorded.
+     */
+    public void recordCreated(Timer.Sample sample, String mode, List<Payment> payments) {
+        Timer timer = timer("payment.create.commit", "Service entry until the new payment is committed")
+                .tag("mode", mode)
+                .register(meterRegistry);
+        Runnable record = () -> {
+            sample.stop(timer);
+            payments.forEach(payment -> statusCounter(Payment.PaymentStatus.PENDING, payment.getCurrency()).increment());
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record.run();
+            }
+        });
+    }
+
+    public void recordPublish(Timer.Sample sample) {
+        sample.stop(publishTimer);
+    }
+
+    public void recordOutboxWait(LocalDateTime createdAt) {
+        if (createdAt != null) {
+            outboxWaitTimer.record(Duration.between(createdAt, LocalDateTime.now()));
+        }
+    }
+
+    /** Records how long the message sat on {@code queue}, based on the producer's JMS timestamp. */
+    public void recordQueueWait(String queue, Message message) {
+        try {
+            long sentAt = message.getJMSTimestamp();
+            if (sentAt <= 0) {
+                return;
+            }
+            timer("payment.queue.wait", "Time a message spends on the queue before delivery")
+                    .tag("queue", queue)
+                    .register(meterRegistry)
+                    .record(Math.max(0, System.currentTimeMillis() - sentAt), TimeUnit.MILLISECONDS);
+        } catch (JMSException e) {
+            // Timestamps are optional; nothing to record
+        }
+    }
+
+    public void recordGateway(Timer.Sample sample, String outcome) {
+        sample.stop(timer("payment.gateway", "Payment gateway round trip")
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        Payment.PaymentStatus status = event.newStatus();
+        statusCounter(status, event.payment().getCurrency()).increment();
+
+        LocalDateTime createdAt = event.payment().getCreatedAt();
+        if (createdAt != null && (status == Payment.PaymentStatus.COMPLETED || status == Payment.PaymentStatus.FAILED)) {
+            timer("payment.lifecycle", "Creation until the payment reaches a final status")
+                    .tag("status", status.name())
+                    .register(meterRegistry)
+                    .record(Duration.between(createdAt, LocalDateTime.now()));
+        }
+    }
+
+    private Counter statusCounter(Payment.PaymentStatus status, String currency) {
+        return Counter.builder("payment.status")
+                .description("Payments entering each status")
+                .tag("status", status.name())
+                .tag("currency", currency == null ? "unknown" : currency)
+                .register(meterRegistry);
+    }
+
+    private static Timer.Builder timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram();
+    }
+}
@@ -0,0 +1,270 @@
+package com.banking.payment.metrics;
+
+import com.banking.payment.dto.PaymentStatsEntry;
+import com.banking.payment.dto.PaymentStatsResponse;
+import com.banking.payment.event.PaymentStatusChangedEvent;
+import com.banking.payment.model.Payment;
+import com.banking.payment.model.PaymentStatsCheckpoint;
+import com.banking.payment.model.StatsGranularity;
+import com.banking.payment.repository.ArchivedPaymentRepository;
+import com.banking.payment.repository.PaymentRepository;
+import com.banking.payment.repository.PaymentStatsCheckpointRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Payment counts and amount sums by status and currency, kept in memory and updated on every
+ * committed creation and status change, so {@code GET /api/payments/stats} never touches the
+ * payments table. Two views are maintained:
+ * <ul>
+ *   <li>totals - payments currently in each status (a transition moves one payment between cells)</li>
+ *   <li>buckets - payments entering each status per minute, hour and day, for a bounded window</li>
+ * </ul>
+ * Cells are {@link LongAdder}s, so concurrent updates from listener and HTTP threads do not
+ * contend. The totals are rebuilt at startup with a GROUP BY over both payment tiers, because
+ * anything committed while this node was down, or after its last checkpoint, is missing from a
+ * checkpoint. Only the buckets are checkpointed to {@code payment_stats_checkpoint}, periodically
+ * and on shutdown, and restored at startup.
+ * <p>
+ * The figures are per node: each node counts only the creations and transitions it commits.
+ * With one node the totals match the tables. With several, each node's totals drift from them
+ * until its next restart, and cluster throughput is the sum of the nodes' buckets. Checkpoints are
+ * keyed by {@code payment.stats.instance-id}, which must be unique per node. Without one the
+ * node uses its host name, or failing that a random id, whose checkpoints do not survive a restart.
+ */
+@Component
+@Slf4j
+public class PaymentStatistics {
+
+    private static final int AMOUNT_SCALE = 2;
+    private static final String DEFAULT_INSTANCE_ID = "default";
+
+    private final Map<Key, Cell> cells = new ConcurrentHashMap<>();
+    private final PaymentRepository paymentRepository;
+    private final ArchivedPaymentRepository archivedPaymentRepository;
+    private final PaymentStatsCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String instanceId;
+    private final ReentrantLock checkpointLock = new ReentrantLock();
+
+    public PaymentStatistics(PaymentRepository paymentRepository,
+                             ArchivedPaymentRepository archivedPaymentRepository,
+                             PaymentStatsCheckpointRepository checkpointRepository,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${payment.stats.instance-id:}") String instanceId) {
+        this.paymentRepository = paymentRepository;
+        this.archivedPaymentRepository = archivedPaymentRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.instanceId = instanceId == null || instanceId.isBlank() || DEFAULT_INSTANCE_ID.equals(instanceId)
+                ? localInstanceId()
+                : instanceId;
+    }
+
+    // Two nodes with the same id would overwrite each other's checkpoint, so never fall back to a shared one
+    private static String localInstanceId() {
+        try {
+            String hostName = InetAddress.getLocalHost().getHostName();
+            if (!hostName.isBlank() && !"localhost".equalsIgnoreCase(hostName)) {
+                log.info("payment.stats.instance-id not set, using host name {}", hostName);
+                return hostName;
+            }
+        } catch (UnknownHostException e) {
+            log.warn("⚠️ Could not resolve the local host name: {}", e.getMessage());
+        }
+        String randomId = UUID.randomUUID().toString();
+        log.warn("⚠️ payment.stats.instance-id not set and no usable host name, using {}; set it to keep "
+                + "statistics checkpoints across restarts", randomId);
+        return randomId;
+    }
+
+    /** Counts new payments once the surrounding transaction commits, or right away without one. */
+    public void recordCreated(List<Payment> payments) {
+        afterCommit(() -> {
+            LocalDateTime now = LocalDateTime.now();
+            payments.forEach(payment -> enter(payment.getStatus(), payment.getCurrency(), payment.getAmount(), now));
+        });
+    }
+
+    public void recordDeleted(Payment.PaymentStatus status, String currency, BigDecimal amount) {
+        afterCommit(() -> cell(new Key(null, null, status, currency)).add(-1, -toMinor(amount)));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        String currency = event.payment().getCurrency();
+        BigDecimal amount = event.payment().getAmount();
+        if (event.previousStatus() != null) {
+            cell(new Key(null, null, event.previousStatus(), currency)).add(-1, -toMinor(amount));
+        }
+        enter(event.newStatus(), currency, amount, LocalDateTime.now());
+    }
+
+    /** Reads the retained aggregates; cost depends on the number of cells, never on table size. */
+    public PaymentStatsResponse snapshot(StatsGranularity granularity) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime oldest = granularity.oldestRetained(now);
+        List<PaymentStatsEntry> totals = new ArrayList<>();
+        List<PaymentStatsEntry> buckets = new ArrayList<>();
+        cells.forEach((key, cell) -> {
+            if (key.granularity() == null) {
+                totals.add(cell.toEntry(key));
+            } else if (key.granularity() == granularity && !key.bucketStart().isBefore(oldest)) {
+                buckets.add(cell.toEntry(key));
+            }
+        });
+        Comparator<PaymentStatsEntry> byStatusAndCurrency = Comparator
+                .comparing(PaymentStatsEntry::getStatus)
+                .thenComparing(PaymentStatsEntry::getCurrency);
+        totals.sort(byStatusAndCurrency);
+        buckets.sort(Comparator.comparing(PaymentStatsEntry::getBucketStart).thenComparing(byStatusAndCurrency));
+        return new PaymentStatsResponse(now, instanceId, totals, granularity, buckets);
+    }
+
+    @PostConstruct
+    public void restore() {
+        List<PaymentStatsEntry> seed = new ArrayList<>(paymentRepository.aggregateByStatusAndCurrency());
+        seed.addAll(archivedPaymentRepository.aggregateByStatusAndCurrency());
+        seed.forEach(entry -> cell(new Key(null, null, entry.getStatus(), entry.getCurrency()))
+                .add(entry.getCount(), toMinor(entry.getAmount())));
+
+        // Totals rows written by earlier releases are ignored; the tables above are authoritative
+        List<PaymentStatsCheckpoint> buckets = checkpointRepository.findByInstanceId(instanceId).stream()
+                .filter(row -> row.getGranularity() != null)
+                .toList();
+        buckets.forEach(row -> cell(new Key(row.getGranularity(), row.getBucketStart(), row.getStatus(), row.getCurrency()))
+                .add(row.getPaymentCount(), row.getAmountMinor()));
+        log.info("✅ Payment statistics for {}: totals rebuilt from {} status/currency groups, {} bucket cells restored",
+                instanceId, seed.size(), buckets.size());
+    }
+
+    @Scheduled(initialDelayString = "${payment.stats.checkpoint-interval-ms:60000}",
+            fixedDelayString = "${payment.stats.checkpoint-interval-ms:60000}")
+    public void checkpointScheduled() {
+        try {
+            checkpoint();
+        } catch (DataAccessException e) {
+            log.error("❌ Payment statistics checkpoint failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void checkpointOnShutdown() {
+        checkpointScheduled();
+    }
+
+    /**
+     * Drops buckets that left the retention window and replaces this instance's checkpoint of the
+     * buckets.
+     * Holds a {@link ReentrantLock} rather than a monitor across the database write, so a virtual
+     * thread running it does not pin its carrier.
+     */
+    public void checkpoint() {
+        checkpointLock.lock();
+        try {
+            writeCheckpoint();
+        } finally {
+            checkpointLock.unlock();
+        }
+    }
+
+    private void writeCheckpoint() {
+        LocalDateTime now = LocalDateTime.now();
+        cells.keySet().removeIf(key -> key.granularity() != null
+                && key.bucketStart().isBefore(key.granularity().oldestRetained(now)));
+        List<PaymentStatsCheckpoint> rows = new ArrayList<>(cells.size());
+        cells.forEach((key, cell) -> {
+            if (key.granularity() == null) {
+                return;
+            }
+            rows.add(PaymentStatsCheckpoint.builder()
+                    .instanceId(instanceId)
+                    .granularity(key.granularity())
+                    .bucketStart(key.bucketStart())
+                    .status(key.status())
+                    .currency(key.currency())
+                    .paymentCount(cell.count.sum())
+                    .amountMinor(cell.amountMinor.sum())
+                    .build());
+        });
+        transactionTemplate.executeWithoutResult(tx -> {
+            checkpointRepository.deleteByInstanceId(instanceId);
+            checkpointRepository.saveAll(rows);
+        });
+        log.debug("Payment statistics checkpointed ({} cells)", rows.size());
+    }
+
+    private static void afterCommit(Runnable record) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            record.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                record.run();
+            }
+        });
+    }
+
+    private void enter(Payment.PaymentStatus status, String currency, BigDecimal amount, LocalDateTime at) {
+        long amountMinor = toMinor(amount);
+        cell(new Key(null, null, status, currency)).add(1, amountMinor);
+        for (StatsGranularity granularity : StatsGranularity.values()) {
+            cell(new Key(granularity, granularity.bucketStart(at), status, currency)).add(1, amountMinor);
+        }
+    }
+
+    private Cell cell(Key key) {
+        return cells.computeIfAbsent(key, k -> new Cell());
+    }
+
+    private static long toMinor(BigDecimal amount) {
+        return amount == null ? 0 : amount.setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private record Key(StatsGranularity granularity, LocalDateTime bucketStart,
+                       Payment.PaymentStatus status, String currency) {
+    }
+
+    private static final class Cell {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder amountMinor = new LongAdder();
+
+        private void add(long payments, long minor) {
+            count.add(payments);
+            amountMinor.add(minor);
+        }
+
+        private PaymentStatsEntry toEntry(Key key) {
+            return new PaymentStatsEntry(key.bucketStart(), key.status(), key.currency(),
+                    count.sum(), BigDecimal.valueOf(amountMinor.sum(), AMOUNT_SCALE));
+        }
+    }
+}
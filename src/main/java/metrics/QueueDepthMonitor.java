@@ -0,0 +1,158 @@
+package com.banking.payment.metrics;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.repository.OutboxMessageRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes {@code payment.queue.depth} per queue and {@code payment.outbox.backlog}.
+ * Depths are the broker's own {@code QueueSize} statistic, read over JMX, so a refresh costs
+ * one attribute read per queue however deep the backlog is. An embedded {@code vm://} broker is
+ * read from this JVM's MBean server; an external one through {@code payment.metrics.queue-depth.jmx-url}
+ * and {@code broker-name}. Depths are refreshed on a schedule rather than on scrape.
+ */
+@Component
+@Slf4j
+public class QueueDepthMonitor {
+
+    private static final List<String> QUEUES = List.of(
+            JmsConfig.PAYMENT_QUEUE,
+            JmsConfig.PAYMENT_PROCESSING_QUEUE,
+            JmsConfig.PAYMENT_NOTIFICATION_QUEUE);
+    private static final String VM_SCHEME = "vm://";
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final String brokerName;
+    private final String jmxUrl;
+    private final Map<String, AtomicLong> depths = new ConcurrentHashMap<>();
+    private final AtomicLong outboxBacklog = new AtomicLong();
+    private JMXConnector connector;
+    private volatile boolean unreadable;
+
+    public QueueDepthMonitor(OutboxMessageRepository outboxMessageRepository,
+                             MeterRegistry meterRegistry,
+                             @Value("${spring.activemq.broker-url:}") String brokerUrl,
+                             @Value("${payment.metrics.queue-depth.broker-name:localhost}") String brokerName,
+                             @Value("${payment.metrics.queue-depth.jmx-url:}") String jmxUrl) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.brokerName = embeddedBrokerName(brokerUrl, brokerName);
+        this.jmxUrl = jmxUrl;
+        for (String queue : QUEUES) {
+            AtomicLong depth = new AtomicLong();
+            depths.put(queue, depth);
+            Gauge.builder("payment.queue.depth", depth, AtomicLong::get)
+                    .description("Messages waiting on the queue (broker QueueSize)")
+                    .tag("queue", queue)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("payment.outbox.backlog", outboxBacklog, AtomicLong::get)
+                .description("Outbox rows not yet published")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.metrics.queue-depth.interval-ms:15000}")
+    public void refresh() {
+        for (String queue : QUEUES) {
+            refreshDepth(queue);
+        }
+        try {
+            outboxBacklog.set(outboxMessageRepository.count());
+        } catch (Exception e) {
+            log.warn("⚠️ Could not read outbox backlog: {}", e.getMessage());
+        }
+    }
+
+    /** Reads the queue's size now, updates its gauge and returns it (the last known one if the read fails). */
+    public long refreshDepth(String queue) {
+        AtomicLong depth = depths.computeIfAbsent(queue, ignored -> new AtomicLong());
+        try {
+            depth.set(queueSize(queue));
+            if (unreadable) {
+                unreadable = false;
+                log.info("✅ Reading queue depths from broker {} again", brokerName);
+            }
+        } catch (Exception e) {
+            // Once per outage; the autoscaler asks every few seconds
+            if (!unreadable) {
+                unreadable = true;
+                log.warn("⚠️ Could not read depth of {} from broker {}: {}", queue, brokerName, e.getMessage());
+            }
+        }
+        return depth.get();
+    }
+
+    public long depth(String queue) {
+        AtomicLong depth = depths.get(queue);
+        return depth == null ? 0 : depth.get();
+    }
+
+    private synchronized long queueSize(String queue) throws Exception {
+        Hashtable<String, String> properties = new Hashtable<>();
+        properties.put("type", "Broker");
+        properties.put("brokerName", brokerName);
+        properties.put("destinationType", "Queue");
+        properties.put("destinationName", queue);
+        try {
+            return ((Number) connection().getAttribute(new ObjectName("org.apache.activemq", properties), "QueueSize"))
+                    .longValue();
+        } catch (InstanceNotFoundException e) {
+            // The broker creates the queue on first use
+            return 0;
+        } catch (IOException e) {
+            closeConnector();
+            throw e;
+        }
+    }
+
+    private MBeanServerConnection connection() throws IOException {
+        if (jmxUrl == null || jmxUrl.isBlank()) {
+            return ManagementFactory.getPlatformMBeanServer();
+        }
+        if (connector == null) {
+            connector = JMXConnectorFactory.connect(new JMXServiceURL(jmxUrl));
+        }
+        return connector.getMBeanServerConnection();
+    }
+
+    @PreDestroy
+    public synchronized void closeConnector() {
+        if (connector != null) {
+            try {
+                connector.close();
+            } catch (IOException e) {
+                log.debug("Closing JMX connector failed: {}", e.getMessage());
+            }
+            connector = null;
+        }
+    }
+
+    // vm://<name> is an embedded broker registered under that name in this JVM
+    private static String embeddedBrokerName(String brokerUrl, String configured) {
+        if (brokerUrl != null && brokerUrl.startsWith(VM_SCHEME)) {
+            String name = brokerUrl.substring(VM_SCHEME.length());
+            int options = name.indexOf('?');
+            return options < 0 ? name : name.substring(0, options);
+        }
+        return configured;
+    }
+}
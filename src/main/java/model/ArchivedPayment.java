@@ -0,0 +1,60 @@
+package com.banking.payment.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Cold-tier copy of a payment that reached a final status. Rows keep the ID and timestamps
+ * they had in {@code payments} and are written only by {@code PaymentArchiver}.
+ */
+@Entity
+@Table(name = "payments_archive", indexes = {
+        @Index(name = "idx_payments_archive_sender_id", columnList = "sender_account, id"),
+        @Index(name = "idx_payments_archive_receiver_id", columnList = "receiver_account, id"),
+        @Index(name = "idx_payments_archive_status_id", columnList = "status, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ArchivedPayment {
+
+    @Id
+    private Long id;
+
+    @Column(nullable = false, unique = true, length = 50)
+    private String transactionId;
+
+    @Column(nullable = false, length = 20)
+    private String senderAccount;
+
+    @Column(nullable = false, length = 20)
+    private String receiverAccount;
+
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal amount;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Payment.PaymentStatus status;
+
+    @Column(length = 50)
+    private String paymentMethod;
+
+    @Column(length = 500)
+    private String description;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime updatedAt;
+
+    @Column(nullable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,68 @@
+package com.banking.payment.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * One leg of a double-entry ledger posting. Every posting writes a debit and a credit of the
+ * same amount, so entries for a currency always sum to zero. Rows are append-only; the
+ * sequence is assigned by the ledger in posting order and doubles as the primary key.
+ */
+@Entity
+@Table(name = "ledger_journal", indexes = {
+        @Index(name = "idx_ledger_journal_account", columnList = "account, currency")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JournalEntry implements Persistable<Long> {
+
+    @Id
+    private Long sequence;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private EntryType entryType;
+
+    @Column(nullable = false, length = 20)
+    private String account;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    // Minor units (e.g. paise, cents); negative for debits
+    @Column(nullable = false)
+    private long amountMinor;
+
+    private Long paymentId;
+
+    @Column(length = 50)
+    private String transactionId;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Override
+    public Long getId() {
+        return sequence;
+    }
+
+    // Entries are never updated, so save() can always insert without a select
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+
+    public enum EntryType {
+        DEPOSIT,    // external funds credited to an account
+        HOLD,       // sender to suspense, before the gateway call
+        SETTLE,     // suspense to receiver, after the gateway approved
+        RELEASE     // suspense back to sender, after a decline or error
+    }
+}
@@ -0,0 +1,32 @@
+package com.banking.payment.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Header of a balance snapshot: its {@link LedgerSnapshotBalance} rows hold every account
+ * balance after all journal entries up to and including {@code throughSequence}.
+ */
+@Entity
+@Table(name = "ledger_snapshots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_snapshot_seq")
+    @SequenceGenerator(name = "ledger_snapshot_seq", sequenceName = "ledger_snapshot_seq", allocationSize = 1)
+    private Long id;
+
+    @Column(nullable = false)
+    private long throughSequence;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,32 @@
+package com.banking.payment.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Entity
+@Table(name = "ledger_snapshot_balances", indexes = {
+        @Index(name = "idx_ledger_snapshot_balances_snapshot", columnList = "snapshot_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LedgerSnapshotBalance {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "ledger_snapshot_balance_seq")
+    @SequenceGenerator(name = "ledger_snapshot_balance_seq", sequenceName = "ledger_snapshot_balance_seq", allocationSize = 500)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long snapshotId;
+
+    @Column(nullable = false, length = 20)
+    private String account;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(nullable = false)
+    private long balanceMinor;
+}
@@ -0,0 +1,48 @@
+package com.banking.payment.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A message waiting to be published, written in the same transaction as the
+ * payment change that produced it and deleted once the relay has sent it.
+ */
+@Entity
+@Table(name = "payment_outbox")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_outbox_seq")
+    @SequenceGenerator(name = "payment_outbox_seq", sequenceName = "payment_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, length = 100)
+    private String destination;
+
+    // Transaction ID of the payment the message belongs to
+    @Column(nullable = false, length = 50)
+    private String aggregateId;
+
+    // JSON text written before the binary format; only set on rows left over from a rollout
+    @Column(length = 4000)
+    private String payload;
+
+    // PaymentMessageCodec bytes, published as a BytesMessage
+    @Column(length = 512)
+    private byte[] body;
+
+    // Sent as JMSXGroupID (the sender account) so the broker delivers an account's messages to one consumer
+    @Column(length = 50)
+    private String messageGroup;
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -8,17 +8,31 @@ import org.hibernate. annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
 
 @Entity
-@Table(name = "payments")
+@Table(name = "payments", indexes = {
+        // (column, id) pairs serve the keyset queries: equality on the column, range and order on id
+        @Index(name = "idx_payments_sender_id", columnList = "sender_account, id"),
+        @Index(name = "idx_payments_receiver_id", columnList = "receiver_account, id"),
+        @Index(name = "idx_payments_status_id", columnList = "status, id"),
+        @Index(name = "idx_payments_created_at", columnList = "created_at")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
 public class Payment {
 
+    public static final String ID_SEQUENCE = "payment_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Pooled sequence so Hibernate can batch inserts (IDENTITY disables JDBC batching);
+    // PaymentIdSequenceSeeder raises it above ids from before the switch
     @Id
-    @GeneratedValue(strategy = GenerationType. IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @NotBlank(message = "Transaction ID is required")
@@ -46,6 +60,12 @@ public class Payment {
     @Column(nullable = false, length = 20)
     private PaymentStatus status;
 
+    // Set only when a dead-lettered attempt got this answer from the gateway but could not store it;
+    // stale recovery then stores it instead of calling the gateway again
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private PaymentStatus gatewayAnswer;
+
     @Column(length = 50)
     private String paymentMethod;
 
@@ -65,6 +85,35 @@ public class Payment {
         PROCESSING,
         COMPLETED,
         FAILED,
-        CANCELLED
+        CANCELLED;
+
+        /**
+         * Transition table: PENDING may be picked up, cancelled or failed before processing,
+         * PROCESSING ends in COMPLETED or FAILED, and final statuses never change. The pipeline
+         * may also hand PROCESSING back to PENDING when a gateway call is abandoned; that is not
+         * an operator transition, so it is not listed here.
+         */
+        public Set<PaymentStatus> nextStatuses() {
+            return switch (this) {
+                case PENDING -> EnumSet.of(PROCESSING, FAILED, CANCELLED);
+                case PROCESSING -> EnumSet.of(COMPLETED, FAILED);
+                case COMPLETED, FAILED, CANCELLED -> EnumSet.noneOf(PaymentStatus.class);
+            };
+        }
+
+        public boolean canTransitionTo(PaymentStatus next) {
+            return nextStatuses().contains(next);
+        }
+
+        /** Statuses a payment may be in to move to {@code target}, for conditional updates. */
+        public static Set<PaymentStatus> sourcesOf(PaymentStatus target) {
+            Set<PaymentStatus> sources = EnumSet.noneOf(PaymentStatus.class);
+            for (PaymentStatus status : values()) {
+                if (status.canTransitionTo(target)) {
+                    sources.add(status);
+                }
+            }
+            return sources;
+        }
     }
 }
\ No newline at end of file
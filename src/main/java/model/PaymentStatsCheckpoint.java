@@ -0,0 +1,50 @@
+package com.banking.payment.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One bucket of the in-memory payment statistics, as of the last checkpoint: the payments that
+ * entered {@code status} during the bucket starting at {@code bucketStart}. Rows with no granularity
+ * are running totals written by earlier releases; they are no longer written or read.
+ */
+@Entity
+@Table(name = "payment_stats_checkpoint", indexes = {
+        @Index(name = "idx_payment_stats_instance", columnList = "instance_id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentStatsCheckpoint {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_stats_seq")
+    @SequenceGenerator(name = "payment_stats_seq", sequenceName = "payment_stats_seq", allocationSize = 100)
+    private Long id;
+
+    @Column(nullable = false, length = 50)
+    private String instanceId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private StatsGranularity granularity;
+
+    private LocalDateTime bucketStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private Payment.PaymentStatus status;
+
+    @Column(nullable = false, length = 3)
+    private String currency;
+
+    @Column(nullable = false)
+    private long paymentCount;
+
+    // Minor units at the payments.amount scale (2)
+    @Column(nullable = false)
+    private long amountMinor;
+}
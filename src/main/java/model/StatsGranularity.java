@@ -0,0 +1,28 @@
+package com.banking.payment.model;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+/** Time bucket sizes kept by the payment statistics, with how many recent buckets are retained. */
+public enum StatsGranularity {
+    MINUTE(ChronoUnit.MINUTES, 180),
+    HOUR(ChronoUnit.HOURS, 72),
+    DAY(ChronoUnit.DAYS, 90);
+
+    private final ChronoUnit unit;
+    private final int retainedBuckets;
+
+    StatsGranularity(ChronoUnit unit, int retainedBuckets) {
+        this.unit = unit;
+        this.retainedBuckets = retainedBuckets;
+    }
+
+    public LocalDateTime bucketStart(LocalDateTime time) {
+        return time.truncatedTo(unit);
+    }
+
+    /** Start of the oldest bucket still retained at {@code now}. */
+    public LocalDateTime oldestRetained(LocalDateTime now) {
+        return bucketStart(now).minus(retainedBuckets - 1L, unit);
+    }
+}
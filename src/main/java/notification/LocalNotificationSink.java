@@ -0,0 +1,49 @@
+package com.banking.payment.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Logs notifications and keeps the most recent ones in memory. Stands in for real channels
+ * in development and tests; disable with {@code payment.notifications.local.enabled=false}.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.notifications.local.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class LocalNotificationSink implements NotificationSink {
+
+    private final Deque<PaymentNotification> recent = new ArrayDeque<>();
+    private final int capacity;
+
+    public LocalNotificationSink(@Value("${payment.notifications.local.capacity:1000}") int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public String name() {
+        return "local";
+    }
+
+    @Override
+    public void deliver(PaymentNotification notification) {
+        log.info("🔔 NOTIFICATION: {} {} - {}", notification.transactionId(), notification.status(), notification.message());
+        synchronized (recent) {
+            if (recent.size() == capacity) {
+                recent.removeFirst();
+            }
+            recent.addLast(notification);
+        }
+    }
+
+    public List<PaymentNotification> recent() {
+        synchronized (recent) {
+            return List.copyOf(recent);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.banking.payment.notification;
+
+import com.banking.payment.messaging.JmsProducer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Takes notifications off the payment processing path. {@link #dispatch} only touches memory:
+ * the notification is parked per transaction (a newer one replaces an unsent older one) and a
+ * background thread publishes them to the notification queue in batches.
+ * When the queue is full new notifications are dropped and counted rather than blocking the
+ * caller, since a notification is never worth slowing down a payment.
+ */
+@Component
+@Slf4j
+public class NotificationDispatcher {
+
+    private final JmsProducer jmsProducer;
+    private final Map<String, PaymentNotification> pending = new ConcurrentHashMap<>();
+    private final BlockingQueue<String> order;
+    private final int batchSize;
+    private final long lingerMs;
+    private final Counter coalesced;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Counter published;
+    private volatile boolean running;
+    private Thread publisherThread;
+
+    public NotificationDispatcher(JmsProducer jmsProducer,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${payment.notifications.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${payment.notifications.batch-size:100}") int batchSize,
+                                  @Value("${payment.notifications.linger-ms:20}") long lingerMs) {
+        this.jmsProducer = jmsProducer;
+        this.order = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.lingerMs = lingerMs;
+        this.coalesced = Counter.builder("payment.notifications.coalesced")
+                .description("Notifications replaced by a newer one for the same transaction before sending")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("payment.notifications.dropped")
+                .description("Notifications dropped because the dispatch queue was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("payment.notifications.failed")
+                .description("Notifications lost because publishing the batch failed")
+                .register(meterRegistry);
+        this.published = Counter.builder("payment.notifications.published")
+                .description("Notifications published to the notification queue")
+                .register(meterRegistry);
+        Gauge.builder("payment.notifications.pending", order, BlockingQueue::size)
+                .description("Notifications waiting to be published")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        publisherThread = new Thread(this::run, "notification-dispatcher");
+        publisherThread.setDaemon(true);
+        publisherThread.start();
+    }
+
+    public void dispatch(String transactionId, String status, String message) {
+        PaymentNotification notification = new PaymentNotification(transactionId, status, message, LocalDateTime.now());
+        if (pending.put(transactionId, notification) != null) {
+            // Already queued; the publisher will pick up the newer content
+            coalesced.increment();
+            return;
+        }
+        if (!order.offer(transactionId)) {
+            pending.remove(transactionId, notification);
+            dropped.increment();
+            log.warn("⚠️ Notification queue full, dropping notification for {}", transactionId);
+        }
+    }
+
+    /** Publishes everything queued so far on the calling thread. */
+    public void flush() {
+        List<String> keys = new ArrayList<>();
+        while (order.drainTo(keys, batchSize) > 0) {
+            publish(keys);
+            keys.clear();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (publisherThread != null) {
+            publisherThread.interrupt();
+            publisherThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        flush();
+    }
+
+    private void run() {
+        List<String> keys = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                String first = order.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                keys.add(first);
+                if (lingerMs > 0 && order.size() < batchSize - 1) {
+                    // Give a burst a moment to fill the batch
+                    Thread.sleep(lingerMs);
+                }
+                order.drainTo(keys, batchSize - 1);
+                publish(keys);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("❌ Notification dispatcher error: {}", e.getMessage(), e);
+            } finally {
+                keys.clear();
+            }
+        }
+    }
+
+    private void publish(List<String> keys) {
+        List<PaymentNotification> batch = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            PaymentNotification notification = pending.remove(key);
+            if (notification != null) {
+                batch.add(notification);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        CompletableFuture<Void> sent;
+        try {
+            sent = jmsProducer.publishNotifications(batch);
+        } catch (RuntimeException e) {
+            sent = CompletableFuture.failedFuture(e);
+        }
+        sent.whenComplete((ignored, error) -> {
+            if (error == null) {
+                published.increment(batch.size());
+            } else {
+                // Async sends do not say which messages of the batch were lost; count the whole batch
+                failed.increment(batch.size());
+                log.error("❌ Failed to publish {} notifications: {}", batch.size(), error.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,12 @@
+package com.banking.payment.notification;
+
+/**
+ * Delivery channel for notifications read from the notification queue. Every sink bean
+ * receives every notification; a sink that throws does not stop the others.
+ */
+public interface NotificationSink {
+
+    String name();
+
+    void deliver(PaymentNotification notification);
+}
@@ -0,0 +1,10 @@
+package com.banking.payment.notification;
+
+import java.time.LocalDateTime;
+
+/** A payment outcome to tell the customer about; serialized as JSON on the notification queue. */
+public record PaymentNotification(String transactionId,
+                                  String status,
+                                  String message,
+                                  LocalDateTime timestamp) {
+}
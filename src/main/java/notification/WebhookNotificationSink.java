@@ -0,0 +1,47 @@
+package com.banking.payment.notification;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+
+import java.time.Duration;
+
+/** POSTs each notification as JSON to {@code payment.notifications.webhook.url}. */
+@Component
+@ConditionalOnProperty(name = "payment.notifications.webhook.url")
+@Slf4j
+public class WebhookNotificationSink implements NotificationSink {
+
+    private final RestClient restClient;
+    private final String url;
+
+    public WebhookNotificationSink(RestClient.Builder restClientBuilder,
+                                   @Value("${payment.notifications.webhook.url}") String url,
+                                   @Value("${payment.notifications.webhook.timeout-ms:2000}") long timeoutMs) {
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(Duration.ofMillis(timeoutMs));
+        requestFactory.setReadTimeout(Duration.ofMillis(timeoutMs));
+        this.restClient = restClientBuilder.requestFactory(requestFactory).build();
+        this.url = url;
+    }
+
+    @Override
+    public String name() {
+        return "webhook";
+    }
+
+    @Override
+    public void deliver(PaymentNotification notification) {
+        restClient.post()
+                .uri(url)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(notification)
+                .retrieve()
+                .toBodilessEntity();
+        log.debug("Delivered notification for {} to webhook", notification.transactionId());
+    }
+}
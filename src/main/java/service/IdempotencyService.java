@@ -0,0 +1,180 @@
+package com.banking.payment.service;
+
+import com.banking.payment.dto.PaymentRequest;
+import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.exception.IdempotencyKeyReuseException;
+import com.banking.payment.exception.InvalidIdempotencyKeyException;
+import com.banking.payment.exception.PaymentNotFoundException;
+import com.banking.payment.model.IdempotencyRecord;
+import com.banking.payment.repository.IdempotencyRecordRepository;
+import com.banking.payment.repository.PaymentRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Makes payment creation safe to retry. Recent keys are answered from a bounded in-memory
+ * cache; older ones from the {@code idempotency_keys} table, whose primary key also settles
+ * races between nodes. Concurrent requests with the same key on one node share a single
+ * future, so only the first one does the work.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final PaymentRepository paymentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+    private final AsyncCache<String, IdempotentResult> recentKeys;
+
+    public IdempotencyService(IdempotencyRecordRepository idempotencyRecordRepository,
+                              PaymentRepository paymentRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${payment.idempotency.cache-size:100000}") long cacheSize,
+                              @Value("${payment.idempotency.cache-ttl:10m}") Duration cacheTtl,
+                              @Value("${payment.idempotency.retention:24h}") Duration retention) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.paymentRepository = paymentRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retention = retention;
+        this.recentKeys = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .buildAsync();
+    }
+
+    /**
+     * Runs {@code action} at most once per key. A repeated key with the same request returns
+     * the original response; with a different request it is rejected.
+     */
+    public IdempotentResult execute(String key, PaymentRequest request, Supplier<PaymentResponse> action) {
+        validateKey(key);
+        String fingerprint = fingerprint(request);
+
+        CompletableFuture<IdempotentResult> mine = new CompletableFuture<>();
+        CompletableFuture<IdempotentResult> existing = recentKeys.asMap().putIfAbsent(key, mine);
+        if (existing != null) {
+            log.info("Replaying response for Idempotency-Key {}", key);
+            return verify(key, fingerprint, await(existing).asReplay());
+        }
+
+        try {
+            IdempotentResult result = findStored(key).orElseGet(() -> create(key, fingerprint, action));
+            mine.complete(result);
+            return verify(key, fingerprint, result);
+        } catch (RuntimeException e) {
+            // Failed futures are dropped by the cache, so the client can retry with the same key
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${payment.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpiredKeys() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        Integer deleted = transactionTemplate.execute(status -> idempotencyRecordRepository.deleteCreatedBefore(cutoff));
+        if (deleted != null && deleted > 0) {
+            log.info("Purged {} idempotency keys older than {}", deleted, retention);
+        }
+    }
+
+    private IdempotentResult create(String key, String fingerprint, Supplier<PaymentResponse> action) {
+        try {
+            return transactionTemplate.execute(status -> {
+                PaymentResponse response = action.get();
+                idempotencyRecordRepository.saveAndFlush(IdempotencyRecord.builder()
+                        .idempotencyKey(key)
+                        .fingerprint(fingerprint)
+                        .paymentId(response.getId())
+                        .build());
+                return new IdempotentResult(fingerprint, response, false);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Another node committed the same key first; its payment wins and ours was rolled back
+            log.info("Idempotency-Key {} was claimed concurrently, replaying stored response", key);
+            return findStored(key).orElseThrow(() -> e);
+        }
+    }
+
+    private Optional<IdempotentResult> findStored(String key) {
+        return Optional.ofNullable(transactionTemplate.execute(status ->
+                idempotencyRecordRepository.findById(key)
+                        .map(record -> new IdempotentResult(
+                                record.getFingerprint(),
+                                paymentRepository.findById(record.getPaymentId())
+                                        .map(PaymentResponse::fromEntity)
+                                        .orElseThrow(() -> new PaymentNotFoundException(
+                                                "Payment not found with ID: " + record.getPaymentId())),
+                                true))
+                        .orElse(null)));
+    }
+
+    private static IdempotentResult verify(String key, String fingerprint, IdempotentResult result) {
+        if (!result.fingerprint().equals(fingerprint)) {
+            throw new IdempotencyKeyReuseException(
+                    "Idempotency-Key " + key + " was already used with a different request");
+        }
+        return result;
+    }
+
+    private static IdempotentResult await(CompletableFuture<IdempotentResult> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static void validateKey(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException(
+                    "Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    static String fingerprint(PaymentRequest request) {
+        String canonical = String.join("\u0000",
+                String.valueOf(request.getSenderAccount()),
+                String.valueOf(request.getReceiverAccount()),
+                request.getAmount() == null ? "null" : request.getAmount().stripTrailingZeros().toPlainString(),
+                String.valueOf(request.getCurrency()),
+                String.valueOf(request.getPaymentMethod()),
+                String.valueOf(request.getDescription()));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    public record IdempotentResult(String fingerprint, PaymentResponse response, boolean replayed) {
+
+        IdempotentResult asReplay() {
+            return replayed ? this : new IdempotentResult(fingerprint, response, true);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.banking.payment.service;
+
+import com.banking.payment.model.Payment;
+import com.banking.payment.repository.ArchivedPaymentRepository;
+import com.banking.payment.repository.PaymentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Moves payments that reached a final status more than {@code payment.archive.min-age} ago
+ * from {@code payments} into {@code payments_archive}, keeping the hot table (and its
+ * indexes) limited to recent and in-flight payments.
+ * <p>
+ * Each batch is one short transaction: copy by primary key, then delete the same keys. Only
+ * the rows in the batch are locked, so inserts and status updates carry on while it runs.
+ */
+@Component
+@ConditionalOnProperty(name = "payment.archive.enabled", havingValue = "true")
+@Slf4j
+public class PaymentArchiver {
+
+    static final List<Payment.PaymentStatus> FINAL_STATUSES = List.of(
+            Payment.PaymentStatus.COMPLETED, Payment.PaymentStatus.FAILED, Payment.PaymentStatus.CANCELLED);
+
+    private final PaymentRepository paymentRepository;
+    private final ArchivedPaymentRepository archivedPaymentRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter archived;
+    private final Duration minAge;
+    private final int batchSize;
+    private final long batchPauseMs;
+
+    public PaymentArchiver(PaymentRepository paymentRepository,
+                           ArchivedPaymentRepository archivedPaymentRepository,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${payment.archive.min-age:7d}") Duration minAge,
+                           @Value("${payment.archive.batch-size:1000}") int batchSize,
+                           @Value("${payment.archive.batch-pause-ms:50}") long batchPauseMs) {
+        this.paymentRepository = paymentRepository;
+        this.archivedPaymentRepository = archivedPaymentRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.archived = Counter.builder("payment.archive.moved")
+                .description("Payments moved from the hot table to the archive")
+                .register(meterRegistry);
+        this.minAge = minAge;
+        this.batchSize = Math.max(1, batchSize);
+        this.batchPauseMs = batchPauseMs;
+    }
+
+    @Scheduled(initialDelayString = "${payment.archive.interval-ms:600000}",
+            fixedDelayString = "${payment.archive.interval-ms:600000}")
+    public void archiveScheduled() {
+        try {
+            archive();
+        } catch (DataAccessException e) {
+            log.error("❌ Archiving stopped, will retry next run: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Archives every eligible payment, batch by batch.
+     *
+     * @return number of payments moved
+     */
+    public int archive() throws InterruptedException {
+        LocalDateTime cutoff = LocalDateTime.now().minus(minAge);
+        int moved = 0;
+        for (Payment.PaymentStatus status : FINAL_STATUSES) {
+            long after = 0;
+            List<Long> ids;
+            do {
+                ids = paymentRepository.findArchivableIds(status, after, cutoff, Limit.of(batchSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                moved += moveBatch(ids, status);
+                after = ids.get(ids.size() - 1);
+                if (ids.size() == batchSize && batchPauseMs > 0) {
+                    // Leave room for the transactional workload between batches
+                    Thread.sleep(batchPauseMs);
+                }
+            } while (ids.size() == batchSize);
+        }
+        if (moved > 0) {
+            log.info("✅ Archived {} payments last updated before {}", moved, cutoff);
+        }
+        return moved;
+    }
+
+    private int moveBatch(List<Long> ids, Payment.PaymentStatus status) {
+        Integer moved = transactionTemplate.execute(tx -> {
+            int copied = archivedPaymentRepository.copyFromPayments(ids, status);
+            int deleted = paymentRepository.deleteArchived(ids, status);
+            if (copied != deleted) {
+                // A row changed status between the two statements; retry the batch next run
+                tx.setRollbackOnly();
+                log.warn("⚠️ Archive batch after ID {} changed while moving ({} copied, {} deleted), rolled back",
+                        ids.get(0), copied, deleted);
+                return 0;
+            }
+            return copied;
+        });
+        archived.increment(moved);
+        return moved;
+    }
+}
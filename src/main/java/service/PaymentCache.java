@@ -0,0 +1,63 @@
+package com.banking.payment.service;
+
+import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.event.PaymentStatusChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Read-through cache for single-payment lookups. Payments are cached by ID; transaction IDs
+ * only map to the ID (that mapping never changes), so evicting one ID entry is enough to
+ * invalidate both lookup paths. Loads go through {@link Cache#get}, which blocks a concurrent
+ * invalidation of the same key until the load finishes, so a load that raced a status change
+ * cannot overwrite the eviction with a stale row.
+ */
+@Component
+public class PaymentCache {
+
+    private final Cache<Long, PaymentResponse> paymentsById;
+    private final Cache<String, Long> idsByTransactionId;
+
+    public PaymentCache(MeterRegistry meterRegistry,
+                        @Value("${payment.cache.maximum-size:50000}") long maximumSize,
+                        @Value("${payment.cache.ttl:5m}") Duration ttl) {
+        this.paymentsById = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        this.idsByTransactionId = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, paymentsById, "payments.by-id");
+        CaffeineCacheMetrics.monitor(meterRegistry, idsByTransactionId, "payments.by-transaction-id");
+    }
+
+    /** Returns the cached payment or loads it; {@code null} results are not cached. */
+    public PaymentResponse getById(Long id, Function<Long, PaymentResponse> loader) {
+        return paymentsById.get(id, loader);
+    }
+
+    public Long getIdByTransactionId(String transactionId, Function<String, Long> loader) {
+        return idsByTransactionId.get(transactionId, loader);
+    }
+
+    public void evict(Long id) {
+        paymentsById.invalidate(id);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        evict(event.paymentId());
+    }
+}
@@ -0,0 +1,73 @@
+package com.banking.payment.service;
+
+import com.banking.payment.model.Payment;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.dialect.sequence.SequenceSupport;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps {@code payment_seq} ahead of every payment id already stored. Payments used to take
+ * AUTO_INCREMENT ids, and on an existing schema {@code ddl-auto=update} creates the sequence
+ * starting at 1, so the first inserts after the switch would collide with old rows.
+ * <p>
+ * MySQL has no sequences, so Hibernate keeps {@code payment_seq} as a one-row table whose
+ * {@code next_val} it reads and bumps by the allocation size; the pooled optimizer then hands
+ * out the {@code allocationSize} ids up to the value it read. At startup, once the schema is
+ * up to date and before any listener or HTTP request can insert, {@code next_val} is raised to
+ * at least the highest id in {@code payments} and {@code payments_archive} plus the allocation
+ * size. The update only ever raises it, so nodes starting together cannot move it backwards.
+ * <p>
+ * Databases with native sequences are left alone: here that is only the in-memory test
+ * database, which starts empty.
+ */
+@Component
+@Slf4j
+public class PaymentIdSequenceSeeder {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean tableBacked;
+
+    // Taking the EntityManagerFactory makes this run after Hibernate has updated the schema
+    @Autowired
+    public PaymentIdSequenceSeeder(EntityManagerFactory entityManagerFactory, JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, isTableBacked(entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect().getSequenceSupport()));
+    }
+
+    public PaymentIdSequenceSeeder(JdbcTemplate jdbcTemplate, boolean tableBacked) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableBacked = tableBacked;
+    }
+
+    @PostConstruct
+    public void seed() {
+        if (!tableBacked) {
+            return;
+        }
+        long maxId = Math.max(maxId("payments"), maxId("payments_archive"));
+        if (maxId == 0) {
+            return;
+        }
+        long floor = maxId + Payment.ID_ALLOCATION_SIZE;
+        int updated = jdbcTemplate.update(
+                "UPDATE " + Payment.ID_SEQUENCE + " SET next_val = ? WHERE next_val < ?", floor, floor);
+        if (updated > 0) {
+            log.warn("⚠️ Raised {} to {}, above the highest stored payment id {}", Payment.ID_SEQUENCE, floor, maxId);
+        }
+    }
+
+    private long maxId(String table) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return maxId == null ? 0 : maxId;
+    }
+
+    // Same choice SequenceStyleGenerator makes for a pooled sequence
+    private static boolean isTableBacked(SequenceSupport sequenceSupport) {
+        return !sequenceSupport.supportsSequences() || !sequenceSupport.supportsPooledSequences();
+    }
+}
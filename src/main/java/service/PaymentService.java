@@ -1,26 +1,39 @@
 package com.banking.payment.service;
 
+import com.banking.payment.dto.BatchPaymentResponse;
+import com.banking.payment.dto.PaymentPage;
 import com.banking.payment.dto.PaymentRequest;
 import com.banking.payment.dto.PaymentResponse;
 import com.banking.payment.model.Payment;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface PaymentService {
 
     PaymentResponse createPayment(PaymentRequest request);
 
+    BatchPaymentResponse createPayments(List<PaymentRequest> requests);
+
     PaymentResponse getPaymentById(Long id);
 
     PaymentResponse getPaymentByTransactionId(String transactionId);
 
-    List<PaymentResponse> getAllPayments();
+    PaymentPage getAllPayments(long after, Integer limit);
+
+    PaymentPage getPaymentsBySender(String senderAccount, long after, Integer limit);
+
+    PaymentPage getPaymentsByReceiver(String receiverAccount, long after, Integer limit);
+
+    PaymentPage getPaymentsByStatus(Payment.PaymentStatus status, long after, Integer limit);
+
+    void streamAllPayments(Consumer<PaymentResponse> consumer);
 
-    List<PaymentResponse> getPaymentsBySender(String senderAccount);
+    void streamPaymentsBySender(String senderAccount, Consumer<PaymentResponse> consumer);
 
-    List<PaymentResponse> getPaymentsByReceiver(String receiverAccount);
+    void streamPaymentsByReceiver(String receiverAccount, Consumer<PaymentResponse> consumer);
 
-    List<PaymentResponse> getPaymentsByStatus(Payment.PaymentStatus status);
+    void streamPaymentsByStatus(Payment.PaymentStatus status, Consumer<PaymentResponse> consumer);
 
     PaymentResponse updatePaymentStatus(Long id, Payment.PaymentStatus status);
 
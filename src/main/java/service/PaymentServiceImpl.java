@@ -1,19 +1,50 @@
 package com.banking.payment.service;
 
+import com.banking.payment.dto.BatchPaymentItemResult;
+import com.banking.payment.dto.BatchPaymentResponse;
+import com.banking.payment.dto.PaymentPage;
 import com.banking.payment.dto.PaymentRequest;
 import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.event.PaymentStatusChangedEvent;
+import com.banking.payment.exception.InvalidBatchRequestException;
+import com.banking.payment.exception.InvalidStatusTransitionException;
 import com.banking.payment.exception.PaymentNotFoundException;
-import com.banking.payment.messaging.JmsProducer;
+import com.banking.payment.messaging.PaymentOutbox;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.metrics.PaymentStatistics;
+import com.banking.payment.model.ArchivedPayment;
 import com.banking.payment.model.Payment;
+import com.banking.payment.repository.ArchivedPaymentRepository;
 import com.banking.payment.repository.PaymentRepository;
+import io.micrometer.core.instrument.Timer;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -22,111 +53,363 @@ import java.util.stream.Collectors;
 public class PaymentServiceImpl implements PaymentService {
 
     private final PaymentRepository paymentRepository;
-    private final JmsProducer jmsProducer;
+    private final PaymentOutbox paymentOutbox;
+    private final Validator validator;
+    private final PlatformTransactionManager transactionManager;
+    private final PaymentCache paymentCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final PaymentMetrics paymentMetrics;
+    private final ArchivedPaymentRepository archivedPaymentRepository;
+    private final PaymentStatistics paymentStatistics;
+
+    @Value("${payment.batch.max-items:200000}")
+    private int batchMaxItems;
+
+    @Value("${payment.batch.chunk-size:1000}")
+    private int batchChunkSize;
+
+    @Value("${payment.pagination.default-limit:100}")
+    private int defaultPageLimit;
+
+    @Value("${payment.pagination.max-limit:1000}")
+    private int maxPageLimit;
+
+    // Tiered storage: reads fall back to payments_archive, filled by PaymentArchiver
+    @Value("${payment.archive.enabled:false}")
+    private boolean archiveEnabled;
 
     @Override
     public PaymentResponse createPayment(PaymentRequest request) {
+        Timer.Sample sample = paymentMetrics.startTimer();
         log.info("Creating payment from {} to {}", request.getSenderAccount(), request.getReceiverAccount());
 
-        // Generate unique transaction ID
-        String transactionId = "TXN-" + UUID.randomUUID().toString();
-
-        // Build Payment entity
-        Payment payment = Payment.builder()
-                .transactionId(transactionId)
-                .senderAccount(request.getSenderAccount())
-                .receiverAccount(request.getReceiverAccount())
-                .amount(request.getAmount())
-                .currency(request.getCurrency())
-                .paymentMethod(request.getPaymentMethod())
-                .description(request.getDescription())
-                .status(Payment.PaymentStatus. PENDING)
-                .build();
+        // Build Payment entity with a unique transaction ID
+        Payment payment = buildPayment(request);
 
         // Save to database
         Payment savedPayment = paymentRepository.save(payment);
-        log.info("Payment created with ID: {} and Transaction ID: {}", savedPayment.getId(), transactionId);
+        log.info("Payment created with ID: {} and Transaction ID: {}", savedPayment.getId(), savedPayment.getTransactionId());
 
-        // Send message to JMS queue for processing
-        jmsProducer.sendPaymentMessage(savedPayment);
+        // Queue the message in the same transaction; OutboxRelay publishes it after commit
+        paymentOutbox.enqueue(savedPayment);
+        paymentMetrics.recordCreated(sample, "single", List.of(savedPayment));
+        paymentStatistics.recordCreated(List.of(savedPayment));
 
         return PaymentResponse.fromEntity(savedPayment);
     }
 
+    /**
+     * Validates every item up front, then inserts the valid ones in chunks. Each chunk is
+     * its own transaction (one JDBC batch per {@code hibernate.jdbc.batch_size} rows, payments
+     * and outbox rows alike), so a bad chunk never rolls back the whole run.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BatchPaymentResponse createPayments(List<PaymentRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            throw new InvalidBatchRequestException("Batch must contain at least one payment");
+        }
+        if (requests.size() > batchMaxItems) {
+            throw new InvalidBatchRequestException(String.format(
+                    "Batch contains %d payments, maximum allowed is %d", requests.size(), batchMaxItems));
+        }
+        log.info("Creating batch of {} payments", requests.size());
+
+        BatchPaymentItemResult[] results = new BatchPaymentItemResult[requests.size()];
+        List<Integer> validIndexes = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            List<String> errors = validate(requests.get(i));
+            if (errors.isEmpty()) {
+                validIndexes.add(i);
+            } else {
+                results[i] = BatchPaymentItemResult.rejected(i, errors);
+            }
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        int chunkSize = Math.max(1, batchChunkSize);
+        for (int from = 0; from < validIndexes.size(); from += chunkSize) {
+            List<Integer> chunkIndexes = validIndexes.subList(from, Math.min(from + chunkSize, validIndexes.size()));
+            List<Payment> chunk = chunkIndexes.stream()
+                    .map(i -> buildPayment(requests.get(i)))
+                    .collect(Collectors.toList());
+            Timer.Sample sample = paymentMetrics.startTimer();
+            try {
+                List<Payment> saved = transactionTemplate.execute(status -> {
+                    List<Payment> payments = paymentRepository.saveAll(chunk);
+                    paymentOutbox.enqueueAll(payments);
+                    paymentStatistics.recordCreated(payments);
+                    return payments;
+                });
+                paymentMetrics.recordCreated(sample, "batch", saved);
+                for (int j = 0; j < chunkIndexes.size(); j++) {
+                    int index = chunkIndexes.get(j);
+                    results[index] = BatchPaymentItemResult.accepted(index, saved.get(j));
+                }
+            } catch (DataAccessException | TransactionException e) {
+                log.error("Failed to persist batch chunk starting at item {}: {}", chunkIndexes.get(0), e.getMessage());
+                for (int index : chunkIndexes) {
+                    results[index] = BatchPaymentItemResult.failed(index, "Could not persist payment: " + e.getMessage());
+                }
+            }
+        }
+
+        List<BatchPaymentItemResult> resultList = Arrays.asList(results);
+        BatchPaymentResponse response = BatchPaymentResponse.builder()
+                .received(requests.size())
+                .accepted(count(resultList, BatchPaymentItemResult.ItemStatus.ACCEPTED))
+                .rejected(count(resultList, BatchPaymentItemResult.ItemStatus.REJECTED))
+                .failed(count(resultList, BatchPaymentItemResult.ItemStatus.FAILED))
+                .results(resultList)
+                .build();
+        log.info("Batch completed: {} accepted, {} rejected, {} failed",
+                response.getAccepted(), response.getRejected(), response.getFailed());
+        return response;
+    }
+
     @Override
     @Transactional(readOnly = true)
     public PaymentResponse getPaymentById(Long id) {
         log.info("Fetching payment with ID: {}", id);
-        Payment payment = paymentRepository.findById(id)
-                .orElseThrow(() -> new PaymentNotFoundException("Payment not found with ID:  " + id));
-        return PaymentResponse.fromEntity(payment);
+        PaymentResponse response = paymentCache.getById(id, this::loadPayment);
+        if (response == null) {
+            throw new PaymentNotFoundException("Payment not found with ID:  " + id);
+        }
+        return response;
     }
 
     @Override
     @Transactional(readOnly = true)
     public PaymentResponse getPaymentByTransactionId(String transactionId) {
         log.info("Fetching payment with Transaction ID: {}", transactionId);
-        Payment payment = paymentRepository.findByTransactionId(transactionId)
-                .orElseThrow(() -> new PaymentNotFoundException("Payment not found with Transaction ID: " + transactionId));
-        return PaymentResponse.fromEntity(payment);
+        Long id = paymentCache.getIdByTransactionId(transactionId, this::findIdByTransactionId);
+        PaymentResponse response = id == null ? null : paymentCache.getById(id, this::loadPayment);
+        if (response == null) {
+            throw new PaymentNotFoundException("Payment not found with Transaction ID: " + transactionId);
+        }
+        return response;
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<PaymentResponse> getAllPayments() {
-        log.info("Fetching all payments");
-        return paymentRepository.findAll().stream()
-                .map(PaymentResponse::fromEntity)
-                .collect(Collectors.toList());
+    public PaymentPage getAllPayments(long after, Integer limit) {
+        int pageLimit = pageLimit(limit);
+        log.info("Fetching payments after ID {} (limit {})", after, pageLimit);
+        return page(paymentRepository.findPage(after, Limit.of(pageLimit)),
+                () -> archivedPaymentRepository.findPage(after, Limit.of(pageLimit)), pageLimit);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<PaymentResponse> getPaymentsBySender(String senderAccount) {
-        log.info("Fetching payments for sender:  {}", senderAccount);
-        return paymentRepository.findBySenderAccount(senderAccount).stream()
-                .map(PaymentResponse::fromEntity)
-                .collect(Collectors.toList());
+    public PaymentPage getPaymentsBySender(String senderAccount, long after, Integer limit) {
+        int pageLimit = pageLimit(limit);
+        log.info("Fetching payments for sender: {} after ID {} (limit {})", senderAccount, after, pageLimit);
+        return page(paymentRepository.findPageBySenderAccount(senderAccount, after, Limit.of(pageLimit)),
+                () -> archivedPaymentRepository.findPageBySenderAccount(senderAccount, after, Limit.of(pageLimit)),
+                pageLimit);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<PaymentResponse> getPaymentsByReceiver(String receiverAccount) {
-        log.info("Fetching payments for receiver:  {}", receiverAccount);
-        return paymentRepository.findByReceiverAccount(receiverAccount).stream()
-                .map(PaymentResponse::fromEntity)
-                .collect(Collectors.toList());
+    public PaymentPage getPaymentsByReceiver(String receiverAccount, long after, Integer limit) {
+        int pageLimit = pageLimit(limit);
+        log.info("Fetching payments for receiver: {} after ID {} (limit {})", receiverAccount, after, pageLimit);
+        return page(paymentRepository.findPageByReceiverAccount(receiverAccount, after, Limit.of(pageLimit)),
+                () -> archivedPaymentRepository.findPageByReceiverAccount(receiverAccount, after, Limit.of(pageLimit)),
+                pageLimit);
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<PaymentResponse> getPaymentsByStatus(Payment.PaymentStatus status) {
-        log.info("Fetching payments with status: {}", status);
-        return paymentRepository.findByStatus(status).stream()
-                .map(PaymentResponse::fromEntity)
-                .collect(Collectors. toList());
+    public PaymentPage getPaymentsByStatus(Payment.PaymentStatus status, long after, Integer limit) {
+        int pageLimit = pageLimit(limit);
+        log.info("Fetching payments with status: {} after ID {} (limit {})", status, after, pageLimit);
+        return page(paymentRepository.findPageByStatus(status, after, Limit.of(pageLimit)),
+                () -> archivedPaymentRepository.findPageByStatus(status, after, Limit.of(pageLimit)), pageLimit);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllPayments(Consumer<PaymentResponse> consumer) {
+        log.info("Streaming all payments");
+        stream(() -> paymentRepository.streamAll(),
+                () -> archivedPaymentRepository.streamAll(), consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamPaymentsBySender(String senderAccount, Consumer<PaymentResponse> consumer) {
+        log.info("Streaming payments for sender: {}", senderAccount);
+        stream(() -> paymentRepository.streamBySenderAccount(senderAccount),
+                () -> archivedPaymentRepository.streamBySenderAccount(senderAccount), consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamPaymentsByReceiver(String receiverAccount, Consumer<PaymentResponse> consumer) {
+        log.info("Streaming payments for receiver: {}", receiverAccount);
+        stream(() -> paymentRepository.streamByReceiverAccount(receiverAccount),
+                () -> archivedPaymentRepository.streamByReceiverAccount(receiverAccount), consumer);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamPaymentsByStatus(Payment.PaymentStatus status, Consumer<PaymentResponse> consumer) {
+        log.info("Streaming payments with status: {}", status);
+        stream(() -> paymentRepository.streamByStatus(status),
+                () -> archivedPaymentRepository.streamByStatus(status), consumer);
+    }
+
+    /**
+     * Applies the change with one conditional UPDATE whose WHERE clause only matches the allowed
+     * source statuses, so there is no read-modify-write and no lost update. Only when nothing
+     * matched is the current status read, to tell a missing payment from an illegal move.
+     * FAILED is the one target with two sources; for it the current status is read first and the
+     * UPDATE is conditioned on that one, because the status-changed event must name the status
+     * the payment left.
+     */
     @Override
     public PaymentResponse updatePaymentStatus(Long id, Payment.PaymentStatus status) {
         log.info("Updating payment {} to status: {}", id, status);
-        Payment payment = paymentRepository.findById(id)
-                .orElseThrow(() -> new PaymentNotFoundException("Payment not found with ID: " + id));
+        Set<Payment.PaymentStatus> sources = Payment.PaymentStatus.sourcesOf(status);
+        if (sources.isEmpty()) {
+            throw invalidTransition(id, currentStatus(id), status);
+        }
+        Payment.PaymentStatus previousStatus = sources.size() == 1 ? sources.iterator().next() : currentStatus(id);
+        if (!sources.contains(previousStatus)) {
+            throw invalidTransition(id, previousStatus, status);
+        }
 
-        payment.setStatus(status);
-        Payment updatedPayment = paymentRepository. save(payment);
+        if (paymentRepository.transition(id, EnumSet.of(previousStatus), status, LocalDateTime.now()) == 0) {
+            throw invalidTransition(id, currentStatus(id), status);
+        }
+        PaymentResponse updated = paymentRepository.findResponseById(id).orElseThrow();
+        eventPublisher.publishEvent(new PaymentStatusChangedEvent(
+                id, updated.getTransactionId(), previousStatus, status, updated));
+        log.info("Payment {} status updated from {} to {}", id, previousStatus, status);
+        return updated;
+    }
+
+    private Payment.PaymentStatus currentStatus(Long id) {
+        return paymentRepository.findStatusById(id)
+                .orElseThrow(() -> new PaymentNotFoundException("Payment not found with ID: " + id));
+    }
 
-        log.info("Payment {} status updated to {}", id, status);
-        return PaymentResponse.fromEntity(updatedPayment);
+    private static InvalidStatusTransitionException invalidTransition(Long id, Payment.PaymentStatus current,
+                                                                      Payment.PaymentStatus status) {
+        return new InvalidStatusTransitionException(String.format(
+                "Payment %d cannot change from %s to %s", id, current, status));
     }
 
     @Override
     public void deletePayment(Long id) {
         log.info("Deleting payment with ID: {}", id);
-        if (! paymentRepository.existsById(id)) {
+        Optional<Payment> payment = paymentRepository.findById(id);
+        Optional<ArchivedPayment> archived = payment.isEmpty() && archiveEnabled
+                ? archivedPaymentRepository.findById(id) : Optional.empty();
+        if (payment.isPresent()) {
+            paymentRepository.delete(payment.get());
+            paymentStatistics.recordDeleted(payment.get().getStatus(), payment.get().getCurrency(), payment.get().getAmount());
+        } else if (archived.isPresent()) {
+            archivedPaymentRepository.delete(archived.get());
+            paymentStatistics.recordDeleted(archived.get().getStatus(), archived.get().getCurrency(), archived.get().getAmount());
+        } else {
             throw new PaymentNotFoundException("Payment not found with ID: " + id);
         }
-        paymentRepository.deleteById(id);
+        paymentCache.evict(id);
         log.info("Payment {} deleted successfully", id);
     }
+
+    private Payment buildPayment(PaymentRequest request) {
+        return Payment.builder()
+                .transactionId("TXN-" + UUID.randomUUID())
+                .senderAccount(request.getSenderAccount())
+                .receiverAccount(request.getReceiverAccount())
+                .amount(request.getAmount())
+                .currency(request.getCurrency())
+                .paymentMethod(request.getPaymentMethod())
+                .description(request.getDescription())
+                .status(Payment.PaymentStatus.PENDING)
+                .build();
+    }
+
+    // The hot table is always read first: a payment archived in between is then found in the archive
+    private PaymentResponse loadPayment(Long id) {
+        return paymentRepository.findResponseById(id)
+                .or(() -> archiveEnabled ? archivedPaymentRepository.findResponseById(id) : Optional.empty())
+                .orElse(null);
+    }
+
+    private Long findIdByTransactionId(String transactionId) {
+        return paymentRepository.findIdByTransactionId(transactionId)
+                .or(() -> archiveEnabled ? archivedPaymentRepository.findIdByTransactionId(transactionId) : Optional.empty())
+                .orElse(null);
+    }
+
+    /** Merges the first {@code limit} IDs of both tiers into one keyset page. */
+    private PaymentPage page(List<PaymentResponse> hot, Supplier<List<PaymentResponse>> archived, int limit) {
+        if (!archiveEnabled) {
+            return PaymentPage.of(hot, limit);
+        }
+        List<PaymentResponse> merged = new ArrayList<>(limit);
+        mergeById(hot.iterator(), archived.get().iterator(), payment -> {
+            if (merged.size() < limit) {
+                merged.add(payment);
+            }
+        });
+        return PaymentPage.of(merged, limit);
+    }
+
+    private void stream(Supplier<Stream<PaymentResponse>> hot, Supplier<Stream<PaymentResponse>> archived,
+                        Consumer<PaymentResponse> consumer) {
+        try (Stream<PaymentResponse> hotPayments = hot.get()) {
+            if (!archiveEnabled) {
+                hotPayments.forEach(consumer);
+                return;
+            }
+            try (Stream<PaymentResponse> archivedPayments = archived.get()) {
+                mergeById(hotPayments.iterator(), archivedPayments.iterator(), consumer);
+            }
+        }
+    }
+
+    // Both inputs are ordered by ID; a payment seen in both tiers (archived mid-read) is emitted once
+    private static void mergeById(Iterator<PaymentResponse> hot, Iterator<PaymentResponse> archived,
+                                  Consumer<PaymentResponse> consumer) {
+        PaymentResponse nextHot = hot.hasNext() ? hot.next() : null;
+        PaymentResponse nextArchived = archived.hasNext() ? archived.next() : null;
+        while (nextHot != null || nextArchived != null) {
+            int order = nextHot == null ? 1 : nextArchived == null ? -1 : nextHot.getId().compareTo(nextArchived.getId());
+            if (order <= 0) {
+                consumer.accept(nextHot);
+                nextHot = hot.hasNext() ? hot.next() : null;
+                if (order == 0) {
+                    nextArchived = archived.hasNext() ? archived.next() : null;
+                }
+            } else {
+                consumer.accept(nextArchived);
+                nextArchived = archived.hasNext() ? archived.next() : null;
+            }
+        }
+    }
+
+    private List<String> validate(PaymentRequest request) {
+        if (request == null) {
+            return List.of("Payment request is required");
+        }
+        Set<ConstraintViolation<PaymentRequest>> violations = validator.validate(request);
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
+    private int pageLimit(Integer requested) {
+        int limit = requested == null ? defaultPageLimit : requested;
+        return Math.max(1, Math.min(limit, maxPageLimit));
+    }
+
+    private static int count(List<BatchPaymentItemResult> results, BatchPaymentItemResult.ItemStatus status) {
+        return (int) results.stream().filter(r -> r.getStatus() == status).count();
+    }
 }
\ No newline at end of file
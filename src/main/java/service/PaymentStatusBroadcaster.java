@@ -0,0 +1,326 @@
+package com.banking.payment.service;
+
+import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.event.PaymentStatusChangedEvent;
+import com.banking.payment.model.Payment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pushes committed status changes to Server-Sent Events subscribers, so clients can wait
+ * for a payment to finish without polling. Subscribers are indexed by transaction ID and
+ * account, so publishing an event only touches the subscribers that want it.
+ * <p>
+ * The publishing thread never writes to a connection: it offers the event to each
+ * subscriber's bounded buffer and a small sender pool drains the buffers. A subscriber
+ * whose buffer fills up is disconnected, and its client reconnects and re-reads the
+ * current state, so one slow client cannot hold up payment processing.
+ * <p>
+ * A send that blocks on a stalled connection would keep one of the few sender threads. A
+ * watchdog disconnects any subscriber whose send has run past {@code payment.events.send-timeout-ms}
+ * and interrupts its sender thread, so the other subscribers keep being served.
+ */
+@Component
+@Slf4j
+public class PaymentStatusBroadcaster {
+
+    private static final String STATUS_EVENT = "status";
+
+    private final Set<Subscription> allPayments = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<Subscription>> byTransactionId = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscription>> byAccount = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter overflowDisconnects;
+    private final Counter stalledDisconnects;
+    private final ExecutorService sender;
+    private final int bufferSize;
+    private final long timeoutMs;
+    private final long sendTimeoutNanos;
+
+    public PaymentStatusBroadcaster(MeterRegistry meterRegistry,
+                                    @Value("${payment.events.buffer-size:256}") int bufferSize,
+                                    @Value("${payment.events.sender-threads:4}") int senderThreads,
+                                    @Value("${payment.events.timeout-ms:1800000}") long timeoutMs,
+                                    @Value("${payment.events.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.bufferSize = bufferSize;
+        this.timeoutMs = timeoutMs;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.sender = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "payment-events-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("payment.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open payment status event streams")
+                .register(meterRegistry);
+        this.overflowDisconnects = Counter.builder("payment.events.overflow.disconnects")
+                .description("Subscribers disconnected because they fell too far behind")
+                .register(meterRegistry);
+        this.stalledDisconnects = Counter.builder("payment.events.stalled.disconnects")
+                .description("Subscribers disconnected because a send to them did not finish in time")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter newEmitter() {
+        return new SseEmitter(timeoutMs);
+    }
+
+    /** Streams one payment; the stream ends after a final status has been sent. */
+    public Subscription subscribeToTransaction(String transactionId, SseEmitter emitter) {
+        return register(new Subscription(emitter, bufferSize, true), byTransactionId, transactionId);
+    }
+
+    /** Streams payments where the account is the sender or the receiver. */
+    public Subscription subscribeToAccount(String account, SseEmitter emitter) {
+        return register(new Subscription(emitter, bufferSize, false), byAccount, account);
+    }
+
+    public Subscription subscribeToAll(SseEmitter emitter) {
+        Subscription subscription = new Subscription(emitter, bufferSize, false);
+        subscription.onClose = () -> allPayments.remove(subscription);
+        allPayments.add(subscription);
+        return activate(subscription);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStatusChanged(PaymentStatusChangedEvent event) {
+        allPayments.forEach(subscription -> subscription.publish(event));
+        publish(byTransactionId.get(event.transactionId()), event);
+        PaymentResponse payment = event.payment();
+        publish(byAccount.get(payment.getSenderAccount()), event);
+        if (!payment.getReceiverAccount().equals(payment.getSenderAccount())) {
+            publish(byAccount.get(payment.getReceiverAccount()), event);
+        }
+    }
+
+    // Comment lines keep idle connections open through proxies and reveal dead clients
+    @Scheduled(fixedDelayString = "${payment.events.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        forEachSubscription(Subscription::heartbeat);
+    }
+
+    @Scheduled(fixedDelayString = "${payment.events.send-check-interval-ms:1000}")
+    public void disconnectStalledSubscribers() {
+        long now = System.nanoTime();
+        forEachSubscription(subscription -> subscription.checkSend(now));
+    }
+
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        forEachSubscription(Subscription::close);
+        sender.shutdown();
+    }
+
+    private Subscription register(Subscription subscription, Map<String, Set<Subscription>> index, String key) {
+        subscription.onClose = () -> index.computeIfPresent(key, (k, subscriptions) -> {
+            subscriptions.remove(subscription);
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+        index.compute(key, (k, subscriptions) -> {
+            Set<Subscription> updated = subscriptions == null ? ConcurrentHashMap.newKeySet() : subscriptions;
+            updated.add(subscription);
+            return updated;
+        });
+        return activate(subscription);
+    }
+
+    private Subscription activate(Subscription subscription) {
+        subscriberCount.incrementAndGet();
+        SseEmitter emitter = subscription.emitter;
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        return subscription;
+    }
+
+    private static void publish(Set<Subscription> subscriptions, PaymentStatusChangedEvent event) {
+        if (subscriptions != null) {
+            subscriptions.forEach(subscription -> subscription.publish(event));
+        }
+    }
+
+    private void forEachSubscription(Consumer<Subscription> action) {
+        allPayments.forEach(action);
+        byTransactionId.values().forEach(subscriptions -> subscriptions.forEach(action));
+        byAccount.values().forEach(subscriptions -> subscriptions.forEach(action));
+    }
+
+    private static boolean isFinal(Payment.PaymentStatus status) {
+        return status == Payment.PaymentStatus.COMPLETED
+                || status == Payment.PaymentStatus.FAILED
+                || status == Payment.PaymentStatus.CANCELLED;
+    }
+
+    private record Outgoing(SseEmitter.SseEventBuilder event, boolean last) {
+    }
+
+    /** One open stream: a bounded buffer drained by at most one sender thread at a time. */
+    public final class Subscription {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Outgoing> buffer;
+        private final boolean endOnFinalStatus;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        // Guards the in-progress send, so the watchdog only interrupts a thread still sending to this subscriber
+        private final Object sendLock = new Object();
+        private Thread sendingThread;
+        private long sendStartedNanos;
+        private volatile Runnable onClose = () -> { };
+        private boolean received;
+
+        private Subscription(SseEmitter emitter, int bufferSize, boolean endOnFinalStatus) {
+            this.emitter = emitter;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+            this.endOnFinalStatus = endOnFinalStatus;
+        }
+
+        /**
+         * Sends the state read after subscribing, unless a live event already arrived; that
+         * event is at least as new, and sending the snapshot after it would go back in time.
+         */
+        public void sendCurrent(PaymentResponse payment) {
+            synchronized (this) {
+                if (received) {
+                    return;
+                }
+                enqueue(new PaymentStatusChangedEvent(payment.getId(), payment.getTransactionId(),
+                        null, payment.getStatus(), payment));
+            }
+            drainLater();
+        }
+
+        public void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            onClose.run();
+            subscriberCount.decrementAndGet();
+            buffer.clear();
+            // Completing waits for a send in progress: the draining thread completes once its send returns
+            if (!draining.get()) {
+                sender.execute(this::complete);
+            }
+        }
+
+        private void complete() {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                emitter.complete();
+            } catch (RuntimeException e) {
+                log.debug("Event stream already closed: {}", e.getMessage());
+            }
+        }
+
+        private void publish(PaymentStatusChangedEvent event) {
+            synchronized (this) {
+                received = true;
+                if (closed.get()) {
+                    return;
+                }
+                if (!enqueue(event)) {
+                    overflowDisconnects.increment();
+                    log.warn("⚠️ Disconnecting slow event subscriber after {} buffered events", bufferSize);
+                    close();
+                    return;
+                }
+            }
+            drainLater();
+        }
+
+        private boolean enqueue(PaymentStatusChangedEvent event) {
+            SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                    .name(STATUS_EVENT)
+                    .data(event, MediaType.APPLICATION_JSON);
+            return buffer.offer(new Outgoing(builder, endOnFinalStatus && isFinal(event.newStatus())));
+        }
+
+        private void heartbeat() {
+            // A full buffer already means data is pending; skip rather than disconnect
+            if (buffer.offer(new Outgoing(SseEmitter.event().comment("heartbeat"), false))) {
+                drainLater();
+            }
+        }
+
+        private void checkSend(long now) {
+            synchronized (sendLock) {
+                if (sendingThread == null || now - sendStartedNanos <= sendTimeoutNanos) {
+                    return;
+                }
+                stalledDisconnects.increment();
+                log.warn("⚠️ Disconnecting event subscriber whose send has not finished after {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(now - sendStartedNanos));
+                close();
+                sendingThread.interrupt();
+            }
+        }
+
+        private void drainLater() {
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Outgoing outgoing;
+                while (!closed.get() && (outgoing = buffer.poll()) != null) {
+                    synchronized (sendLock) {
+                        sendingThread = Thread.currentThread();
+                        sendStartedNanos = System.nanoTime();
+                    }
+                    try {
+                        emitter.send(outgoing.event());
+                    } finally {
+                        synchronized (sendLock) {
+                            sendingThread = null;
+                        }
+                    }
+                    if (outgoing.last()) {
+                        close();
+                    }
+                }
+            } catch (Exception e) {
+                log.debug("Event subscriber went away: {}", e.getMessage());
+                close();
+            } finally {
+                draining.set(false);
+                if (closed.get()) {
+                    complete();
+                } else if (!buffer.isEmpty()) {
+                    drainLater();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.banking.payment.service;
+
+import com.banking.payment.event.PaymentStatusChangedEvent;
+import com.banking.payment.exception.InvalidStatusTransitionException;
+import com.banking.payment.messaging.PaymentOutbox;
+import com.banking.payment.model.Payment;
+import com.banking.payment.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Status transitions driven by the processing pipeline. Each call is a short transaction
+ * of its own, so no connection is held while the gateway is working.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class PaymentStatusService {
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentOutbox paymentOutbox;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Moves a PENDING payment to PROCESSING. Returns empty if the payment does not exist
+     * or was already picked up (e.g. a redelivered message).
+     */
+    public Optional<Payment> startProcessing(String transactionId) {
+        int updated = paymentRepository.transitionByTransactionId(transactionId,
+                EnumSet.of(Payment.PaymentStatus.PENDING), Payment.PaymentStatus.PROCESSING, LocalDateTime.now());
+        if (updated == 0) {
+            log.info("⏭️ Skipping payment that is missing or no longer PENDING: {}", transactionId);
+            return Optional.empty();
+        }
+        // Read back for the gateway call; the UPDATE holds the row lock until commit
+        Payment payment = paymentRepository.findByTransactionId(transactionId).orElseThrow();
+        eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment, Payment.PaymentStatus.PENDING));
+        return Optional.of(payment);
+    }
+
+    /**
+     * Stores the final status of a payment this node has in PROCESSING, with one conditional
+     * UPDATE and no read. Returns false if the payment is no longer PROCESSING, e.g. an operator
+     * failed it while the gateway was working.
+     */
+    public boolean completeProcessing(Payment payment, Payment.PaymentStatus status) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!transition(payment.getId(), Payment.PaymentStatus.PROCESSING, status, now)) {
+            log.warn("⚠️ Payment {} is no longer PROCESSING, not moving it to {}", payment.getTransactionId(), status);
+            return false;
+        }
+        payment.setStatus(status);
+        payment.setUpdatedAt(now);
+        eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment, Payment.PaymentStatus.PROCESSING));
+        return true;
+    }
+
+    /**
+     * Hands a PROCESSING payment back to PENDING when the gateway call was rejected or timed out,
+     * so a retry can start it again. This is deliberately not in the transition table: only the
+     * attempt that owns the payment may take it back, never an operator. Returns false if the
+     * payment is no longer PROCESSING.
+     */
+    public boolean revertProcessing(Payment payment) {
+        LocalDateTime now = LocalDateTime.now();
+        if (paymentRepository.transition(payment.getId(), EnumSet.of(Payment.PaymentStatus.PROCESSING),
+                Payment.PaymentStatus.PENDING, now) != 1) {
+            return false;
+        }
+        payment.setStatus(Payment.PaymentStatus.PENDING);
+        payment.setUpdatedAt(now);
+        eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment, Payment.PaymentStatus.PROCESSING));
+        return true;
+    }
+
+    /** The payment if it is PROCESSING, for resuming an attempt that ended without a final status. */
+    @Transactional(readOnly = true)
+    public Optional<Payment> findProcessing(String transactionId) {
+        return paymentRepository.findByTransactionId(transactionId)
+                .filter(payment -> payment.getStatus() == Payment.PaymentStatus.PROCESSING);
+    }
+
+    /**
+     * Returns up to {@code limit} payments that have been PROCESSING since before {@code cutoff}
+     * to PENDING and queues a new payment message for each in the same transaction. These are
+     * attempts that died with their node, so no retry message exists to resume them. Payments
+     * with a recorded gateway answer are left out. Returns the payments that were requeued.
+     */
+    public List<Payment> requeueStale(LocalDateTime cutoff, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Payment> requeued = new ArrayList<>();
+        for (Payment payment : paymentRepository.findStale(Payment.PaymentStatus.PROCESSING, cutoff, Limit.of(limit))) {
+            if (paymentRepository.transitionIfStale(payment.getId(), Payment.PaymentStatus.PROCESSING,
+                    Payment.PaymentStatus.PENDING, cutoff, now) == 1) {
+                payment.setStatus(Payment.PaymentStatus.PENDING);
+                payment.setUpdatedAt(now);
+                paymentOutbox.enqueue(payment);
+                eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment, Payment.PaymentStatus.PROCESSING));
+                requeued.add(payment);
+            }
+        }
+        return requeued;
+    }
+
+    /**
+     * Up to {@code limit} payments PROCESSING since before {@code cutoff} whose gateway answer was
+     * recorded by {@link #recordGatewayAnswer}. They are finished with that answer, not requeued.
+     */
+    @Transactional(readOnly = true)
+    public List<Payment> findStaleAnswered(LocalDateTime cutoff, int limit) {
+        return paymentRepository.findStaleAnswered(Payment.PaymentStatus.PROCESSING, cutoff, Limit.of(limit));
+    }
+
+    /**
+     * Records on a PROCESSING payment the answer its gateway call got, for an attempt that could
+     * not store it and is being dead-lettered, so {@link #requeueStale} never charges it again.
+     * Returns false if the payment is no longer PROCESSING.
+     */
+    public boolean recordGatewayAnswer(String transactionId, Payment.PaymentStatus answer) {
+        return paymentRepository.recordGatewayAnswer(transactionId, Payment.PaymentStatus.PROCESSING, answer) == 1;
+    }
+
+    /**
+     * Applies {@code from -> to} if the payment is currently in {@code from} and the transition
+     * table allows it. Returns whether a row was updated.
+     */
+    private boolean transition(Long id, Payment.PaymentStatus from, Payment.PaymentStatus to, LocalDateTime now) {
+        checkAllowed(from, to);
+        return paymentRepository.transition(id, EnumSet.of(from), to, now) == 1;
+    }
+
+    /**
+     * Batch form of {@link #startProcessing}: locks the batch's payments with one IN query and
+     * moves the PENDING ones to PROCESSING with a single UPDATE. Returns the payments that were
+     * started; missing and already picked up ones are left out.
+     */
+    public List<Payment> startProcessingBatch(Collection<String> transactionIds) {
+        List<Payment> pending = paymentRepository.findByTransactionIdIn(transactionIds).stream()
+                .filter(payment -> payment.getStatus() == Payment.PaymentStatus.PENDING)
+                .collect(Collectors.toList());
+        if (pending.size() < transactionIds.size()) {
+            log.info("⏭️ Skipping {} of {} payments that are missing or already picked up",
+                    transactionIds.size() - pending.size(), transactionIds.size());
+        }
+        checkAllowed(Payment.PaymentStatus.PENDING, Payment.PaymentStatus.PROCESSING);
+        return transition(pending, Payment.PaymentStatus.PENDING, Payment.PaymentStatus.PROCESSING);
+    }
+
+    /**
+     * Batch form of {@link #completeProcessing}: one UPDATE per final status. Returns the payments
+     * whose status was stored; one that is no longer PROCESSING (e.g. an operator failed it in the
+     * meantime) is left out instead of failing the batch.
+     */
+    public List<Payment> completeProcessingBatch(Map<Payment.PaymentStatus, List<Payment>> paymentsByStatus) {
+        List<Payment> stored = new ArrayList<>();
+        paymentsByStatus.forEach((status, payments) -> {
+            checkAllowed(Payment.PaymentStatus.PROCESSING, status);
+            stored.addAll(transition(stillIn(payments, Payment.PaymentStatus.PROCESSING),
+                    Payment.PaymentStatus.PROCESSING, status));
+        });
+        return stored;
+    }
+
+    /** Batch form of {@link #revertProcessing}. Returns the payments that went back to PENDING. */
+    public List<Payment> revertProcessingBatch(List<Payment> payments) {
+        return transition(stillIn(payments, Payment.PaymentStatus.PROCESSING),
+                Payment.PaymentStatus.PROCESSING, Payment.PaymentStatus.PENDING);
+    }
+
+    // Locks the rows and keeps the payments still in the given status, so the UPDATE that follows moves exactly those
+    private List<Payment> stillIn(List<Payment> payments, Payment.PaymentStatus status) {
+        if (payments.isEmpty()) {
+            return payments;
+        }
+        Set<Long> current = paymentRepository.findByIdInAndStatus(
+                        payments.stream().map(Payment::getId).collect(Collectors.toList()), status).stream()
+                .map(Payment::getId)
+                .collect(Collectors.toSet());
+        List<Payment> remaining = payments.stream()
+                .filter(payment -> current.contains(payment.getId()))
+                .collect(Collectors.toList());
+        if (remaining.size() < payments.size()) {
+            log.warn("⚠️ {} of {} payments are no longer {}, leaving them as they are",
+                    payments.size() - remaining.size(), payments.size(), status);
+        }
+        return remaining;
+    }
+
+    // The rows are locked by the caller, so every payment given here is moved
+    private List<Payment> transition(List<Payment> payments, Payment.PaymentStatus from, Payment.PaymentStatus to) {
+        if (payments.isEmpty()) {
+            return payments;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = payments.stream().map(Payment::getId).collect(Collectors.toList());
+        paymentRepository.updateStatus(ids, from, to, now);
+        for (Payment payment : payments) {
+            payment.setStatus(to);
+            payment.setUpdatedAt(now);
+            eventPublisher.publishEvent(PaymentStatusChangedEvent.of(payment, from));
+        }
+        return payments;
+    }
+
+    private static void checkAllowed(Payment.PaymentStatus from, Payment.PaymentStatus to) {
+        if (!from.canTransitionTo(to)) {
+            throw new InvalidStatusTransitionException("Payment status cannot change from " + from + " to " + to);
+        }
+    }
+}
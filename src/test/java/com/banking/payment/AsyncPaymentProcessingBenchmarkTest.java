@@ -0,0 +1,154 @@
+package com.banking.payment;
+
+import com.banking.payment.gateway.GatewayResult;
+import com.banking.payment.gateway.PaymentGateway;
+import com.banking.payment.gateway.SimulatedPaymentGateway;
+import com.banking.payment.messaging.AsyncPaymentProcessor;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.model.Payment;
+import com.banking.payment.notification.NotificationDispatcher;
+import com.banking.payment.service.PaymentStatusService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Drives {@link AsyncPaymentProcessor} from a single "listener" thread. The default suite only
+ * checks that one submitting thread fills the in-flight limit with concurrent gateway calls; the
+ * wall-clock throughput comparison against a gateway with fixed 20 ms latency is tagged
+ * {@code load} and runs with {@code mvn -Pload test -Dtest=AsyncPaymentProcessingBenchmarkTest}.
+ */
+@ExtendWith(MockitoExtension.class)
+class AsyncPaymentProcessingBenchmarkTest {
+
+    private static final long GATEWAY_LATENCY_MS = 20;
+
+    @Mock
+    private PaymentStatusService paymentStatusService;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    private SimulatedPaymentGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        gateway = new SimulatedPaymentGateway(GATEWAY_LATENCY_MS, GATEWAY_LATENCY_MS, 100);
+        Payment payment = Payment.builder()
+                .id(1L)
+                .transactionId("TXN-BENCH")
+                .senderAccount("1234567890")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal("10.00"))
+                .currency("INR")
+                .status(Payment.PaymentStatus.PROCESSING)
+                .build();
+        when(paymentStatusService.startProcessing(anyString())).thenReturn(Optional.of(payment));
+        when(paymentStatusService.completeProcessing(any(Payment.class), any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gateway.shutdown();
+    }
+
+    @Test
+    void oneSubmittingThreadFillsTheInFlightLimit() throws Exception {
+        List<CompletableFuture<GatewayResult>> calls = new CopyOnWriteArrayList<>();
+        PaymentGateway heldGateway = payment -> {
+            CompletableFuture<GatewayResult> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        };
+        AsyncPaymentProcessor processor = new AsyncPaymentProcessor(
+                heldGateway, paymentStatusService, notificationDispatcher, new PaymentMetrics(new SimpleMeterRegistry()),
+                Optional.empty(), 50, 100, 4, false);
+        try {
+            List<CompletableFuture<Payment.PaymentStatus>> results = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                results.add(processor.process("TXN-" + i));
+            }
+            // A blocking worker would have one call at the gateway; here all 50 are outstanding at once
+            assertEquals(50, calls.size());
+            assertEquals(50, processor.inFlightCount());
+
+            CountDownLatch submitted = new CountDownLatch(1);
+            Thread listener = new Thread(() -> {
+                try {
+                    results.add(processor.process("TXN-50"));
+                    submitted.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            listener.start();
+            assertFalse(submitted.await(200, TimeUnit.MILLISECONDS), "The 51st payment must wait for a permit");
+
+            calls.get(0).complete(GatewayResult.approve());
+            assertTrue(submitted.await(5, TimeUnit.SECONDS));
+            assertEquals(51, calls.size());
+
+            calls.forEach(call -> call.complete(GatewayResult.approve()));
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+            results.forEach(result -> assertEquals(Payment.PaymentStatus.COMPLETED, result.join()));
+            assertEquals(0, processor.inFlightCount());
+        } finally {
+            processor.shutdown();
+        }
+    }
+
+    @Test
+    @Tag("load")
+    void throughputScalesWithInFlightLimit() throws Exception {
+        double atTen = measure(10, 200);
+        double atHundred = measure(100, 2_000);
+        double atThousand = measure(1_000, 10_000);
+
+        System.out.printf("in-flight=10    -> %8.0f payments/sec%n", atTen);
+        System.out.printf("in-flight=100   -> %8.0f payments/sec%n", atHundred);
+        System.out.printf("in-flight=1000  -> %8.0f payments/sec%n", atThousand);
+
+        // A blocking worker would be capped near 1000 / 20 ms = 50 payments/sec per thread
+        assertTrue(atHundred > atTen * 4, "Expected throughput to scale with in-flight count");
+        assertTrue(atThousand > atHundred * 1.5, "Expected throughput to keep scaling with in-flight count");
+    }
+
+    private double measure(int maxInFlight, int payments) throws Exception {
+        AsyncPaymentProcessor processor = new AsyncPaymentProcessor(
+                gateway, paymentStatusService, notificationDispatcher, new PaymentMetrics(new SimpleMeterRegistry()),
+                Optional.empty(), maxInFlight, 100, 4, false);
+        try {
+            List<CompletableFuture<Payment.PaymentStatus>> results = new ArrayList<>(payments);
+            long start = System.nanoTime();
+            for (int i = 0; i < payments; i++) {
+                results.add(processor.process("TXN-" + i));
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+            long elapsedNanos = System.nanoTime() - start;
+
+            results.forEach(result -> assertEquals(Payment.PaymentStatus.COMPLETED, result.join()));
+            return payments / (elapsedNanos / 1_000_000_000.0);
+        } finally {
+            processor.shutdown();
+        }
+    }
+}
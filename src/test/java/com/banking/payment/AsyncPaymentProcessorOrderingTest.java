@@ -0,0 +1,219 @@
+package com.banking.payment;
+
+import com.banking.payment.gateway.GatewayResult;
+import com.banking.payment.gateway.PaymentGateway;
+import com.banking.payment.messaging.AsyncPaymentProcessor;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.model.Payment;
+import com.banking.payment.notification.NotificationDispatcher;
+import com.banking.payment.service.PaymentStatusService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Payments for the same sender must go through the gateway one at a time and in submission
+ * order, even with random gateway latency, while different senders still overlap.
+ */
+@ExtendWith(MockitoExtension.class)
+class AsyncPaymentProcessorOrderingTest {
+
+    private static final int ACCOUNTS = 10;
+    private static final int PAYMENTS_PER_ACCOUNT = 20;
+
+    @Mock
+    private PaymentStatusService paymentStatusService;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final Map<String, List<String>> gatewayOrderByAccount = new ConcurrentHashMap<>();
+    private final AtomicInteger concurrentCalls = new AtomicInteger();
+    private final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        when(paymentStatusService.startProcessing(anyString())).thenAnswer(invocation -> {
+            String transactionId = invocation.getArgument(0);
+            return Optional.of(Payment.builder()
+                    .id(1L)
+                    .transactionId(transactionId)
+                    .senderAccount(transactionId.substring(0, transactionId.indexOf(':')))
+                    .receiverAccount("0987654321")
+                    .amount(new BigDecimal("10.00"))
+                    .currency("INR")
+                    .status(Payment.PaymentStatus.PROCESSING)
+                    .build());
+        });
+        when(paymentStatusService.completeProcessing(any(Payment.class), any())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    void paymentsForOneSenderRunInOrderWhileSendersRunInParallel() throws Exception {
+        AsyncPaymentProcessor processor = new AsyncPaymentProcessor(
+                randomLatencyGateway(), paymentStatusService, notificationDispatcher,
+                new PaymentMetrics(new SimpleMeterRegistry()), Optional.empty(), 1000, 100, 4, false);
+        try {
+            List<CompletableFuture<Payment.PaymentStatus>> results = new ArrayList<>();
+            for (int i = 0; i < PAYMENTS_PER_ACCOUNT; i++) {
+                for (int account = 0; account < ACCOUNTS; account++) {
+                    String sender = "ACC" + account;
+                    results.add(processor.process(sender + ":" + i, sender));
+                }
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+            for (int account = 0; account < ACCOUNTS; account++) {
+                List<String> expected = new ArrayList<>();
+                for (int i = 0; i < PAYMENTS_PER_ACCOUNT; i++) {
+                    expected.add("ACC" + account + ":" + i);
+                }
+                assertEquals(expected, gatewayOrderByAccount.get("ACC" + account));
+            }
+            assertTrue(maxConcurrentCalls.get() > 1, "Expected different senders to be processed concurrently");
+            assertEquals(0, processor.inFlightCount());
+        } finally {
+            processor.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    void busySenderTakesOneInFlightSlotHoweverManyPaymentsItQueues() throws Exception {
+        List<CompletableFuture<GatewayResult>> calls = new CopyOnWriteArrayList<>();
+        AsyncPaymentProcessor processor = new AsyncPaymentProcessor(
+                heldGateway(calls), paymentStatusService, notificationDispatcher,
+                new PaymentMetrics(new SimpleMeterRegistry()), Optional.empty(), 2, 100, 4, false);
+        try {
+            List<CompletableFuture<Payment.PaymentStatus>> results = new ArrayList<>();
+            // With a permit per payment the third call would block the listener here
+            for (int i = 0; i < 50; i++) {
+                results.add(processor.process("BUSY:" + i, "BUSY"));
+            }
+            assertEquals(1, processor.inFlightCount());
+            results.add(processor.process("OTHER:0", "OTHER"));
+            assertEquals(2, processor.inFlightCount());
+            assertEquals(2, calls.size());
+
+            // Each answer lets the sender's next payment start on the same permit
+            for (int answered = 0; answered < results.size(); answered++) {
+                awaitCalls(calls, answered + 1);
+                calls.get(answered).complete(GatewayResult.approve());
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+            results.forEach(result -> assertEquals(Payment.PaymentStatus.COMPLETED, result.join()));
+            assertEquals(0, processor.inFlightCount());
+        } finally {
+            processor.shutdown();
+        }
+    }
+
+    @Test
+    @Timeout(30)
+    void senderOverItsQueueLimitWaitsForRoomInsteadOfBeingRetried() throws Exception {
+        List<CompletableFuture<GatewayResult>> calls = new CopyOnWriteArrayList<>();
+        AsyncPaymentProcessor processor = new AsyncPaymentProcessor(
+                heldGateway(calls), paymentStatusService, notificationDispatcher,
+                new PaymentMetrics(new SimpleMeterRegistry()), Optional.empty(), 10, 3, 4, false);
+        try {
+            List<CompletableFuture<Payment.PaymentStatus>> results = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                results.add(processor.process("BUSY:" + i, "BUSY"));
+            }
+            // The listener thread is held, its message unacknowledged, while the lane is full
+            CompletableFuture<CompletableFuture<Payment.PaymentStatus>> fourth = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return processor.process("BUSY:3", "BUSY");
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(200);
+            assertFalse(fourth.isDone());
+
+            awaitCalls(calls, 1);
+            calls.get(0).complete(GatewayResult.approve());
+            results.add(fourth.get(5, TimeUnit.SECONDS));
+
+            for (int answered = 1; answered < results.size(); answered++) {
+                awaitCalls(calls, answered + 1);
+                calls.get(answered).complete(GatewayResult.approve());
+            }
+            CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+            results.forEach(result -> assertEquals(Payment.PaymentStatus.COMPLETED, result.join()));
+            assertEquals(4, calls.size());
+            assertEquals(0, processor.inFlightCount());
+        } finally {
+            processor.shutdown();
+        }
+    }
+
+    private static PaymentGateway heldGateway(List<CompletableFuture<GatewayResult>> calls) {
+        return payment -> {
+            CompletableFuture<GatewayResult> call = new CompletableFuture<>();
+            calls.add(call);
+            return call;
+        };
+    }
+
+    // The next payment of a chain reaches the gateway on a completion thread
+    private static void awaitCalls(List<CompletableFuture<GatewayResult>> calls, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (calls.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(calls.size() >= count, "Expected " + count + " gateway calls, got " + calls.size());
+    }
+
+    // Fails the test (via the order check) if a second call for a sender arrives while one is still running
+    private PaymentGateway randomLatencyGateway() {
+        Map<String, AtomicInteger> activeByAccount = new ConcurrentHashMap<>();
+        return payment -> {
+            String sender = payment.getSenderAccount();
+            if (activeByAccount.computeIfAbsent(sender, key -> new AtomicInteger()).incrementAndGet() > 1) {
+                gatewayOrderByAccount.computeIfAbsent(sender, key -> new CopyOnWriteArrayList<>()).add("OVERLAP");
+            }
+            gatewayOrderByAccount.computeIfAbsent(sender, key -> new CopyOnWriteArrayList<>()).add(payment.getTransactionId());
+            maxConcurrentCalls.accumulateAndGet(concurrentCalls.incrementAndGet(), Math::max);
+
+            CompletableFuture<GatewayResult> result = new CompletableFuture<>();
+            timer.schedule(() -> {
+                concurrentCalls.decrementAndGet();
+                activeByAccount.get(sender).decrementAndGet();
+                result.complete(GatewayResult.approve());
+            }, ThreadLocalRandom.current().nextInt(1, 6), TimeUnit.MILLISECONDS);
+            return result;
+        };
+    }
+}
@@ -0,0 +1,162 @@
+package com.banking.payment;
+
+import com.banking.payment.gateway.GatewayRejectedException;
+import com.banking.payment.gateway.GatewayResult;
+import com.banking.payment.gateway.PaymentGateway;
+import com.banking.payment.messaging.AsyncPaymentProcessor;
+import com.banking.payment.messaging.PaymentAttemptException;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.model.Payment;
+import com.banking.payment.notification.NotificationDispatcher;
+import com.banking.payment.service.PaymentStatusService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncPaymentProcessorTest {
+
+    @Mock
+    private PaymentStatusService paymentStatusService;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    @Mock
+    private PaymentGateway paymentGateway;
+
+    private AsyncPaymentProcessor processor;
+
+    @AfterEach
+    void tearDown() {
+        if (processor != null) {
+            processor.shutdown();
+        }
+    }
+
+    @Test
+    void rejectedCallGoesBackToPendingAndFailsForRetry() throws Exception {
+        Payment payment = startedPayment("TXN-REJECTED");
+        when(paymentGateway.process(payment)).thenReturn(CompletableFuture.failedFuture(
+                new GatewayRejectedException("circuit_open", "Gateway circuit is open")));
+        when(paymentStatusService.revertProcessing(payment)).thenReturn(true);
+
+        PaymentAttemptException attempt = attemptFailure(processor().process("TXN-REJECTED", "1234567890"));
+
+        assertEquals(Payment.PaymentStatus.PENDING, attempt.getResumeWith());
+        assertInstanceOf(GatewayRejectedException.class, attempt.getCause());
+        verify(paymentStatusService, never()).completeProcessing(any(), any());
+        verify(notificationDispatcher, never()).dispatch(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void timedOutCallGoesBackToPendingAndFailsForRetry() throws Exception {
+        Payment payment = startedPayment("TXN-TIMEOUT");
+        when(paymentGateway.process(payment)).thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
+        when(paymentStatusService.revertProcessing(payment)).thenReturn(true);
+
+        PaymentAttemptException attempt = attemptFailure(processor().process("TXN-TIMEOUT", null));
+
+        assertEquals(Payment.PaymentStatus.PENDING, attempt.getResumeWith());
+        verify(paymentStatusService, never()).completeProcessing(any(), any());
+    }
+
+    @Test
+    void gatewayErrorFailsThePayment() throws Exception {
+        Payment payment = startedPayment("TXN-ERROR");
+        when(paymentGateway.process(payment)).thenReturn(CompletableFuture.failedFuture(
+                new IllegalStateException("Gateway returned 500")));
+        when(paymentStatusService.completeProcessing(payment, Payment.PaymentStatus.FAILED)).thenReturn(true);
+
+        assertEquals(Payment.PaymentStatus.FAILED,
+                processor().process("TXN-ERROR", null).get(5, TimeUnit.SECONDS));
+        verify(paymentStatusService, never()).revertProcessing(any());
+        verify(notificationDispatcher).dispatch(eq("TXN-ERROR"), eq("FAILED"), anyString());
+    }
+
+    @Test
+    void failedFinalWriteIsResumedWithoutCallingTheGatewayAgain() throws Exception {
+        Payment payment = startedPayment("TXN-RESUME");
+        when(paymentGateway.process(payment)).thenReturn(CompletableFuture.completedFuture(GatewayResult.approve()));
+        when(paymentStatusService.completeProcessing(payment, Payment.PaymentStatus.COMPLETED))
+                .thenThrow(new DataAccessResourceFailureException("connection reset"))
+                .thenReturn(true);
+
+        PaymentAttemptException attempt = attemptFailure(processor().process("TXN-RESUME", "1234567890"));
+        assertEquals(Payment.PaymentStatus.COMPLETED, attempt.getResumeWith());
+
+        // The retry message carries the instruction; the payment is still PROCESSING
+        when(paymentStatusService.findProcessing("TXN-RESUME")).thenReturn(Optional.of(payment));
+        assertEquals(Payment.PaymentStatus.COMPLETED, processor
+                .process("TXN-RESUME", "1234567890", Payment.PaymentStatus.COMPLETED).get(5, TimeUnit.SECONDS));
+        verify(paymentGateway, times(1)).process(payment);
+        verify(notificationDispatcher).dispatch(eq("TXN-RESUME"), eq("COMPLETED"), anyString());
+    }
+
+    @Test
+    void abandonedAttemptIsUndoneBeforeTheRetryStarts() throws Exception {
+        Payment payment = startedPayment("TXN-UNDO");
+        when(paymentStatusService.findProcessing("TXN-UNDO")).thenReturn(Optional.of(payment));
+        when(paymentStatusService.revertProcessing(payment)).thenReturn(true);
+        when(paymentGateway.process(payment)).thenReturn(CompletableFuture.completedFuture(GatewayResult.approve()));
+        when(paymentStatusService.completeProcessing(payment, Payment.PaymentStatus.COMPLETED)).thenReturn(true);
+
+        assertEquals(Payment.PaymentStatus.COMPLETED, processor()
+                .process("TXN-UNDO", null, Payment.PaymentStatus.PENDING).get(5, TimeUnit.SECONDS));
+        verify(paymentStatusService).revertProcessing(payment);
+    }
+
+    @Test
+    void resumeSkipsPaymentThatIsNoLongerProcessing() throws Exception {
+        when(paymentStatusService.findProcessing("TXN-DONE")).thenReturn(Optional.empty());
+
+        assertNull(processor().process("TXN-DONE", null, Payment.PaymentStatus.FAILED).get(5, TimeUnit.SECONDS));
+        verify(paymentStatusService, never()).completeProcessing(any(), any());
+        verify(paymentGateway, never()).process(any());
+    }
+
+    private AsyncPaymentProcessor processor() {
+        processor = new AsyncPaymentProcessor(paymentGateway, paymentStatusService, notificationDispatcher,
+                new PaymentMetrics(new SimpleMeterRegistry()), Optional.empty(), 10, 100, 2, false);
+        return processor;
+    }
+
+    private Payment startedPayment(String transactionId) {
+        Payment payment = Payment.builder()
+                .id(1L)
+                .transactionId(transactionId)
+                .senderAccount("1234567890")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal("10.00"))
+                .currency("INR")
+                .status(Payment.PaymentStatus.PROCESSING)
+                .build();
+        when(paymentStatusService.startProcessing(transactionId)).thenReturn(Optional.of(payment));
+        return payment;
+    }
+
+    private static PaymentAttemptException attemptFailure(CompletableFuture<Payment.PaymentStatus> result) {
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        return assertInstanceOf(PaymentAttemptException.class, failure.getCause());
+    }
+}
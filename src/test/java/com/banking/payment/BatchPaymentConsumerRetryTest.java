@@ -0,0 +1,231 @@
+package com.banking.payment;
+
+import com.banking.payment.gateway.GatewayRejectedException;
+import com.banking.payment.gateway.GatewayResult;
+import com.banking.payment.gateway.PaymentGateway;
+import com.banking.payment.ledger.PaymentLedger;
+import com.banking.payment.messaging.AsyncPaymentProcessor;
+import com.banking.payment.messaging.BatchPaymentConsumer;
+import com.banking.payment.messaging.JmsConsumer;
+import com.banking.payment.messaging.PaymentAttemptException;
+import com.banking.payment.messaging.PaymentMessage;
+import com.banking.payment.messaging.PaymentMessageCodec;
+import com.banking.payment.messaging.PaymentPipeline;
+import com.banking.payment.messaging.PaymentStageHandler;
+import com.banking.payment.messaging.PaymentRetryScheduler;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.model.Payment;
+import com.banking.payment.notification.NotificationDispatcher;
+import com.banking.payment.service.PaymentStatusService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.Session;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// How the batch consumer hands payments it cannot finish to the retry path instead of rolling back
+@ExtendWith(MockitoExtension.class)
+class BatchPaymentConsumerRetryTest {
+
+    @Mock
+    private PaymentStatusService paymentStatusService;
+
+    @Mock
+    private PaymentGateway paymentGateway;
+
+    @Mock
+    private PaymentLedger paymentLedger;
+
+    @Mock
+    private NotificationDispatcher notificationDispatcher;
+
+    @Mock
+    private AsyncPaymentProcessor asyncPaymentProcessor;
+
+    @Mock
+    private PaymentRetryScheduler paymentRetryScheduler;
+
+    @Mock
+    private Session session;
+
+    private final List<Payment> startedPayments = new ArrayList<>();
+
+    private BatchPaymentConsumer consumer;
+
+    @AfterEach
+    void tearDown() {
+        consumer.shutdown();
+    }
+
+    @Test
+    void failedFinalWriteRetriesEachPaymentWithItsGatewayAnswer() throws Exception {
+        Payment payment = startedPayment("TXN-STORE");
+        when(paymentLedger.hold(payment)).thenReturn(true);
+        when(paymentGateway.process(payment)).thenReturn(CompletableFuture.completedFuture(GatewayResult.approve()));
+        when(paymentStatusService.completeProcessingBatch(any()))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        Message message = message("TXN-STORE", null);
+        consumer().processAndCommit(session, List.of(message));
+
+        assertEquals(Payment.PaymentStatus.COMPLETED, retriedWith(message).getResumeWith());
+        verify(session).commit();
+        verify(session, never()).rollback();
+        // Still PROCESSING: the hold stays until the retry stores the answer
+        verify(paymentLedger, never()).settle(any());
+        verify(paymentLedger, never()).release(any());
+        verify(notificationDispatcher, never()).dispatch(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    void paymentLeftOutOfTheFinalWriteIsReleasedNotSettled() throws Exception {
+        Payment stored = startedPayment("TXN-STORED");
+        Payment failedByOperator = startedPayment("TXN-OPERATOR");
+        when(paymentLedger.hold(any())).thenReturn(true);
+        when(paymentGateway.process(any())).thenReturn(CompletableFuture.completedFuture(GatewayResult.approve()));
+        when(paymentStatusService.completeProcessingBatch(any())).thenAnswer(invocation -> {
+            stored.setStatus(Payment.PaymentStatus.COMPLETED);
+            return List.of(stored);
+        });
+
+        consumer().processAndCommit(session, List.of(message("TXN-STORED", null), message("TXN-OPERATOR", null)));
+
+        verify(paymentLedger).settle(stored);
+        verify(paymentLedger).release(failedByOperator);
+        verify(notificationDispatcher).dispatch(eq("TXN-STORED"), eq("COMPLETED"), anyString());
+        verify(notificationDispatcher, never()).dispatch(eq("TXN-OPERATOR"), anyString(), anyString());
+        verify(paymentRetryScheduler, never()).retryOrDeadLetter(any(), anyString(), any());
+        verify(session).commit();
+    }
+
+    @Test
+    void rejectedCallGoesBackToPendingAndIsRetried() throws Exception {
+        Payment payment = startedPayment("TXN-REJECTED");
+        when(paymentLedger.hold(payment)).thenReturn(true);
+        when(paymentGateway.process(payment)).thenReturn(CompletableFuture.failedFuture(
+                new GatewayRejectedException("circuit_open", "Gateway circuit is open")));
+        when(paymentStatusService.revertProcessingBatch(List.of(payment))).thenReturn(List.of(payment));
+
+        Message message = message("TXN-REJECTED", null);
+        consumer().processAndCommit(session, List.of(message));
+
+        assertEquals(Payment.PaymentStatus.PENDING, retriedWith(message).getResumeWith());
+        verify(paymentLedger).release(payment);
+        verify(paymentStatusService, never()).completeProcessingBatch(any());
+        verify(session).commit();
+    }
+
+    @Test
+    void retriedMessageIsResumedInsteadOfStartedAgain() throws Exception {
+        when(asyncPaymentProcessor.process("TXN-RESUME", "1234567890", Payment.PaymentStatus.COMPLETED))
+                .thenReturn(CompletableFuture.completedFuture(Payment.PaymentStatus.COMPLETED));
+
+        consumer().processAndCommit(session, List.of(message("TXN-RESUME", Payment.PaymentStatus.COMPLETED)));
+
+        verify(paymentStatusService, never()).startProcessingBatch(any());
+        verify(paymentGateway, never()).process(any());
+        verify(paymentRetryScheduler, never()).retryOrDeadLetter(any(), anyString(), any());
+        verify(session).commit();
+    }
+
+    @Test
+    void unreadableMessageIsHandedToTheRetrySchedulerNotDropped() throws Exception {
+        ActiveMQBytesMessage garbage = new ActiveMQBytesMessage();
+        garbage.writeBytes(new byte[]{1, 2, 3});
+        garbage.reset();
+
+        consumer().processAndCommit(session, List.of(garbage));
+
+        verify(paymentRetryScheduler).retryOrDeadLetter(eq(garbage), anyString(), any(IllegalArgumentException.class));
+        verify(session).commit();
+    }
+
+    @Test
+    void batchIsRolledBackWhenTheRetryCannotBeSent() throws Exception {
+        ActiveMQBytesMessage garbage = new ActiveMQBytesMessage();
+        garbage.writeBytes(new byte[]{1, 2, 3});
+        garbage.reset();
+        Mockito.doThrow(new JMSException("broker down"))
+                .when(paymentRetryScheduler).retryOrDeadLetter(eq(garbage), anyString(), any());
+
+        consumer().processAndCommit(session, List.of(garbage));
+
+        verify(session).rollback();
+        verify(session, never()).commit();
+    }
+
+    private BatchPaymentConsumer consumer() {
+        // Real readPayment for binary messages; nothing else of the listener is used
+        JmsConsumer jmsConsumer = Mockito.mock(JmsConsumer.class, Mockito.CALLS_REAL_METHODS);
+        PaymentPipeline paymentPipeline = new PaymentPipeline(PaymentPipeline.Topology.DIRECT,
+                new StaticListableBeanFactory().getBeanProvider(PaymentStageHandler.class));
+        consumer = new BatchPaymentConsumer(Mockito.mock(ConnectionFactory.class), jmsConsumer, paymentPipeline,
+                paymentStatusService, paymentGateway, notificationDispatcher,
+                new PaymentMetrics(new SimpleMeterRegistry()), Optional.of(paymentLedger),
+                asyncPaymentProcessor, paymentRetryScheduler, new SimpleMeterRegistry(), 2, 1, 10, 10, 10);
+        return consumer;
+    }
+
+    private Payment startedPayment(String transactionId) {
+        Payment payment = Payment.builder()
+                .id((long) transactionId.hashCode())
+                .transactionId(transactionId)
+                .senderAccount("1234567890")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal("10.00"))
+                .currency("INR")
+                .status(Payment.PaymentStatus.PROCESSING)
+                .build();
+        // The batch's IN query returns the payments the test started
+        if (startedPayments.isEmpty()) {
+            when(paymentStatusService.startProcessingBatch(any())).thenAnswer(invocation -> {
+                Collection<String> ids = invocation.getArgument(0);
+                return startedPayments.stream().filter(started -> ids.contains(started.getTransactionId())).toList();
+            });
+        }
+        startedPayments.add(payment);
+        return payment;
+    }
+
+    private static Message message(String transactionId, Payment.PaymentStatus resumeWith) throws JMSException {
+        ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+        if (resumeWith != null) {
+            message.setStringProperty("PaymentResumeWith", resumeWith.name());
+        }
+        message.writeBytes(PaymentMessageCodec.encode(new PaymentMessage(1L, transactionId, "1234567890",
+                "0987654321", new BigDecimal("10.00"), "INR")));
+        message.reset();
+        return message;
+    }
+
+    private PaymentAttemptException retriedWith(Message message) throws JMSException {
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(paymentRetryScheduler).retryOrDeadLetter(eq(message), anyString(), error.capture());
+        return assertInstanceOf(PaymentAttemptException.class, error.getValue());
+    }
+}
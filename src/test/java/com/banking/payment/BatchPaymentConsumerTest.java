@@ -0,0 +1,97 @@
+package com.banking.payment;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.dto.BatchPaymentResponse;
+import com.banking.payment.dto.PaymentRequest;
+import com.banking.payment.messaging.BatchPaymentConsumer;
+import com.banking.payment.model.Payment;
+import com.banking.payment.repository.PaymentRepository;
+import com.banking.payment.service.PaymentService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.AbstractMessageListenerContainer;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Closed afterwards so its consumers cannot pick up messages meant for other test contexts
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:batchconsumer;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.activemq.broker-url=vm://batchconsumer?broker.persistent=false",
+        "payment.processing.batch.enabled=true",
+        "payment.processing.batch.max-wait-ms=100",
+        "payment.gateway.simulated.min-latency-ms=10",
+        "payment.gateway.simulated.max-latency-ms=30",
+        "payment.gateway.simulated.success-rate-percent=100"
+})
+class BatchPaymentConsumerTest {
+
+    private static final int PAYMENTS = 300;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private BatchPaymentConsumer batchPaymentConsumer;
+
+    @Autowired
+    private JmsListenerEndpointRegistry listenerRegistry;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testPaymentsAreProcessedInBatches() throws Exception {
+        List<PaymentRequest> requests = new ArrayList<>();
+        for (int i = 0; i < PAYMENTS; i++) {
+            requests.add(PaymentRequest.builder()
+                    .senderAccount(String.format("10000000%02d", i % 20))
+                    .receiverAccount("2000000000")
+                    .amount(new BigDecimal("12.00"))
+                    .currency("INR")
+                    .build());
+        }
+        BatchPaymentResponse created = paymentService.createPayments(requests);
+        assertEquals(PAYMENTS, created.getAccepted());
+
+        long deadline = System.currentTimeMillis() + 30_000;
+        long completed;
+        do {
+            Thread.sleep(200);
+            completed = paymentRepository.findAll().stream()
+                    .filter(p -> p.getStatus() == Payment.PaymentStatus.COMPLETED)
+                    .count();
+        } while (completed < PAYMENTS && System.currentTimeMillis() < deadline);
+
+        assertEquals(PAYMENTS, completed);
+        assertTrue(meterRegistry.get("payment.processing.batch.size").summary().max() > 1,
+                "Messages should have been grouped into batches");
+        // The per-message processing listener stays stopped in batch mode
+        listenerRegistry.getListenerContainers().stream()
+                .map(AbstractMessageListenerContainer.class::cast)
+                .filter(container -> JmsConfig.PAYMENT_PROCESSING_QUEUE.equals(container.getDestinationName()))
+                .forEach(container -> assertFalse(container.isRunning()));
+    }
+
+    @Test
+    void testBatchSizeAdaptsToLoad() {
+        assertEquals(20, batchPaymentConsumer.nextBatchSize(10, 10), "Full batch doubles");
+        assertEquals(500, batchPaymentConsumer.nextBatchSize(400, 400), "Capped at max-size");
+        assertEquals(100, batchPaymentConsumer.nextBatchSize(100, 60), "Mostly full keeps the size");
+        assertEquals(50, batchPaymentConsumer.nextBatchSize(100, 3), "Sparse batch halves");
+        assertEquals(10, batchPaymentConsumer.nextBatchSize(12, 1), "Never below min-size");
+    }
+}
@@ -0,0 +1,165 @@
+package com.banking.payment;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.messaging.JmsProducer;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.model.OutboxMessage;
+import com.banking.payment.notification.PaymentNotification;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.BytesMessage;
+import jakarta.jms.Connection;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Session;
+import jakarta.jms.TextMessage;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerFilter;
+import org.apache.activemq.broker.BrokerPlugin;
+import org.apache.activemq.broker.BrokerService;
+import org.apache.activemq.broker.ProducerBrokerExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** {@link JmsProducer} against an embedded broker of its own. */
+class JmsProducerTest {
+
+    private static final String GROUP = "1234567890";
+
+    private final AtomicBoolean rejectSends = new AtomicBoolean();
+    private BrokerService broker;
+    private ActiveMQConnectionFactory brokerConnectionFactory;
+    private CachingConnectionFactory cachingConnectionFactory;
+    private Connection consumerConnection;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        broker = new BrokerService();
+        broker.setBrokerName("producer-test");
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.setPlugins(new BrokerPlugin[]{next -> new BrokerFilter(next) {
+            @Override
+            public void send(ProducerBrokerExchange exchange, org.apache.activemq.command.Message message)
+                    throws Exception {
+                if (rejectSends.get()) {
+                    throw new SecurityException("Send to " + message.getDestination() + " refused");
+                }
+                super.send(exchange, message);
+            }
+        }});
+        broker.start();
+        brokerConnectionFactory = new ActiveMQConnectionFactory("vm://producer-test?create=false");
+        cachingConnectionFactory = new CachingConnectionFactory(brokerConnectionFactory);
+        consumerConnection = brokerConnectionFactory.createConnection();
+        consumerConnection.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        consumerConnection.close();
+        cachingConnectionFactory.destroy();
+        broker.stop();
+    }
+
+    private JmsProducer producer(boolean asyncNotifications) {
+        JmsTemplate jmsTemplate = new JmsTemplate(cachingConnectionFactory);
+        jmsTemplate.setMessageConverter(new JmsConfig().jacksonJmsMessageConverter());
+        return new JmsProducer(jmsTemplate, cachingConnectionFactory,
+                new PaymentMetrics(new SimpleMeterRegistry()), asyncNotifications);
+    }
+
+    @Test
+    void retriedCopyKeepsItsGroupButQueuesBehindLaterMessages() throws Exception {
+        JmsProducer producer = producer(false);
+        Session session = consumerConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue(JmsConfig.PAYMENT_PROCESSING_QUEUE));
+
+        producer.publish(List.of(outbox("A"), outbox("B")));
+        Message failed = consumer.receive(5000);
+        assertEquals("A", body(failed));
+
+        // C is published while A waits for its retry; the retry goes back to the end of the queue
+        producer.publish(List.of(outbox("C")));
+        producer.sendCopy(failed, JmsConfig.PAYMENT_PROCESSING_QUEUE, Map.of("PaymentRetryAttempt", 1));
+
+        List<String> order = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Message message = consumer.receive(5000);
+            assertEquals(GROUP, message.getStringProperty("JMSXGroupID"));
+            order.add(body(message));
+            if (message.propertyExists("PaymentRetryAttempt")) {
+                assertEquals(1, message.getIntProperty("PaymentRetryAttempt"));
+            }
+        }
+        // Same group, so the same consumer, but the sender's order is not restored
+        assertEquals(List.of("B", "C", "A"), order);
+    }
+
+    @Test
+    void asyncNotificationsCompleteOnceTheBrokerHasEveryMessage() throws Exception {
+        JmsProducer producer = producer(true);
+        List<PaymentNotification> notifications = IntStream.range(0, 200)
+                .mapToObj(i -> new PaymentNotification("TXN-" + i, "COMPLETED", "Payment completed", LocalDateTime.now()))
+                .toList();
+
+        producer.publishNotifications(notifications).get(10, TimeUnit.SECONDS);
+
+        Session session = consumerConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageConsumer consumer = session.createConsumer(session.createQueue(JmsConfig.PAYMENT_NOTIFICATION_QUEUE));
+        Set<String> received = new HashSet<>();
+        for (int i = 0; i < notifications.size(); i++) {
+            TextMessage message = (TextMessage) consumer.receive(5000);
+            assertNotNull(message, "Missing notification " + i);
+            received.add(message.getText());
+        }
+        assertNull(consumer.receiveNoWait());
+        assertEquals(notifications.size(), received.size());
+        assertTrue(received.stream().anyMatch(text -> text.contains("\"TXN-199\"")));
+    }
+
+    @Test
+    void asyncNotificationsFailWhenTheBrokerRejectsASend() {
+        JmsProducer producer = producer(true);
+        rejectSends.set(true);
+
+        CompletableFuture<Void> sent = producer.publishNotifications(List.of(
+                new PaymentNotification("TXN-1", "COMPLETED", "Payment completed", LocalDateTime.now()),
+                new PaymentNotification("TXN-2", "FAILED", "Payment failed", LocalDateTime.now())));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> sent.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(JMSException.class, error.getCause());
+        assertTrue(error.getCause().getMessage().contains("refused"), error.getCause().getMessage());
+    }
+
+    private static OutboxMessage outbox(String body) {
+        return OutboxMessage.builder()
+                .destination(JmsConfig.PAYMENT_PROCESSING_QUEUE)
+                .aggregateId("TXN-" + body)
+                .body(body.getBytes(StandardCharsets.UTF_8))
+                .messageGroup(GROUP)
+                .build();
+    }
+
+    private static String body(Message message) throws JMSException {
+        return new String(JmsProducer.readBody((BytesMessage) message), StandardCharsets.UTF_8);
+    }
+}
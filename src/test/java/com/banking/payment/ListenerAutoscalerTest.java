@@ -0,0 +1,148 @@
+package com.banking.payment;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.messaging.BatchPaymentConsumer;
+import com.banking.payment.messaging.JmsConsumer;
+import com.banking.payment.messaging.ListenerAutoscaler;
+import com.banking.payment.metrics.QueueDepthMonitor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** The scheduled rescale loop against stubbed containers and queue depths. */
+@ExtendWith(MockitoExtension.class)
+class ListenerAutoscalerTest {
+
+    @Mock
+    private JmsListenerEndpointRegistry listenerRegistry;
+
+    @Mock
+    private QueueDepthMonitor queueDepthMonitor;
+
+    private final AtomicInteger paymentConsumers = new AtomicInteger(1);
+    private final AtomicInteger notificationConsumers = new AtomicInteger(1);
+    private final AtomicInteger processingConsumers = new AtomicInteger(3);
+    private DefaultMessageListenerContainer processingContainer;
+    private MockEnvironment environment;
+    private ListenerAutoscaler autoscaler;
+
+    @BeforeEach
+    void setUp() {
+        DefaultMessageListenerContainer paymentContainer = container(paymentConsumers);
+        DefaultMessageListenerContainer notificationContainer = container(notificationConsumers);
+        processingContainer = container(processingConsumers);
+        when(listenerRegistry.getListenerContainer(JmsConsumer.PAYMENT_LISTENER_ID)).thenReturn(paymentContainer);
+        when(listenerRegistry.getListenerContainer(JmsConsumer.NOTIFICATION_LISTENER_ID)).thenReturn(notificationContainer);
+        when(listenerRegistry.getListenerContainer(JmsConsumer.PROCESSING_LISTENER_ID)).thenReturn(processingContainer);
+
+        environment = new MockEnvironment()
+                .withProperty("payment.listener.autoscaling.payment-listener.min", "1")
+                .withProperty("payment.listener.autoscaling.payment-listener.max", "10")
+                .withProperty("payment.listener.autoscaling.processing-listener.min", "3")
+                .withProperty("payment.listener.autoscaling.processing-listener.max", "10")
+                .withProperty("payment.listener.autoscaling.notification-listener.min", "1")
+                .withProperty("payment.listener.autoscaling.notification-listener.max", "5")
+                .withProperty("payment.listener.autoscaling.batch-consumer.min", "1")
+                .withProperty("payment.listener.autoscaling.batch-consumer.max", "6");
+        autoscaler = autoscaler(Optional.empty());
+    }
+
+    @Test
+    void backlogScalesUpAndQuietScalesDownOneAtATime() {
+        when(queueDepthMonitor.refreshDepth(JmsConfig.PAYMENT_QUEUE)).thenReturn(750L);
+        when(queueDepthMonitor.refreshDepth(JmsConfig.PAYMENT_NOTIFICATION_QUEUE)).thenReturn(0L);
+
+        autoscaler.rescale();
+
+        // 750 waiting at 100 per consumer needs 8; the idle notification listener stays at its minimum
+        assertEquals(8, paymentConsumers.get());
+        assertEquals(1, notificationConsumers.get());
+
+        when(queueDepthMonitor.refreshDepth(JmsConfig.PAYMENT_QUEUE)).thenReturn(0L);
+        autoscaler.rescale();
+        assertEquals(8, paymentConsumers.get(), "One quiet check is not enough to scale down");
+        autoscaler.rescale();
+        assertEquals(7, paymentConsumers.get());
+
+        List<?> decisions = (List<?>) autoscaler.report().get("decisions");
+        assertEquals(2, decisions.size());
+        ListenerAutoscaler.ScalingDecision latest = (ListenerAutoscaler.ScalingDecision) decisions.get(0);
+        assertEquals(8, latest.from());
+        assertEquals(7, latest.to());
+    }
+
+    @Test
+    void processingListenerIsScaledFromTheProcessingQueue() {
+        when(queueDepthMonitor.refreshDepth(anyString())).thenReturn(0L);
+        when(queueDepthMonitor.refreshDepth(JmsConfig.PAYMENT_PROCESSING_QUEUE)).thenReturn(100_000L);
+
+        autoscaler.rescale();
+
+        assertEquals(10, processingConsumers.get());
+        verify(processingContainer).setMaxConcurrentConsumers(10);
+        Map<?, ?> listeners = (Map<?, ?>) autoscaler.report().get("listeners");
+        assertTrue(listeners.containsKey(JmsConsumer.PROCESSING_LISTENER_ID));
+        assertFalse(listeners.containsKey(BatchPaymentConsumer.CONSUMER_ID));
+    }
+
+    @Test
+    void batchConsumerIsScaledInsteadOfTheStoppedProcessingListener() {
+        when(processingContainer.isRunning()).thenReturn(false);
+        AtomicInteger batchThreads = new AtomicInteger(3);
+        BatchPaymentConsumer batchPaymentConsumer = Mockito.mock(BatchPaymentConsumer.class);
+        when(batchPaymentConsumer.isRunning()).thenReturn(true);
+        when(batchPaymentConsumer.getConsumers()).thenAnswer(invocation -> batchThreads.get());
+        Mockito.doAnswer(invocation -> {
+            batchThreads.set(invocation.getArgument(0));
+            return null;
+        }).when(batchPaymentConsumer).setConsumers(Mockito.anyInt());
+        when(queueDepthMonitor.refreshDepth(anyString())).thenReturn(0L);
+        when(queueDepthMonitor.refreshDepth(JmsConfig.PAYMENT_PROCESSING_QUEUE)).thenReturn(100_000L);
+        autoscaler = autoscaler(Optional.of(batchPaymentConsumer));
+
+        autoscaler.rescale();
+
+        // Capped at its own maximum; the stopped container is left alone
+        assertEquals(6, batchThreads.get());
+        verify(processingContainer, never()).setConcurrentConsumers(Mockito.anyInt());
+        Map<?, ?> batch = (Map<?, ?>) ((Map<?, ?>) autoscaler.report().get("listeners")).get(BatchPaymentConsumer.CONSUMER_ID);
+        assertEquals(6, batch.get("consumers"));
+    }
+
+    // Heap and CPU limits out of reach, so the host running the test cannot hold scaling back
+    private ListenerAutoscaler autoscaler(Optional<BatchPaymentConsumer> batchPaymentConsumer) {
+        return new ListenerAutoscaler(listenerRegistry, queueDepthMonitor, new SimpleMeterRegistry(), environment,
+                batchPaymentConsumer, 100, 1000, 2, 101, 101);
+    }
+
+    // A running container whose consumer count follows what the autoscaler sets; not every test scales every one
+    private static DefaultMessageListenerContainer container(AtomicInteger consumers) {
+        DefaultMessageListenerContainer container = Mockito.mock(DefaultMessageListenerContainer.class);
+        lenient().when(container.isRunning()).thenReturn(true);
+        lenient().when(container.getConcurrentConsumers()).thenAnswer(invocation -> consumers.get());
+        lenient().doAnswer(invocation -> {
+            consumers.set(invocation.getArgument(0));
+            return null;
+        }).when(container).setConcurrentConsumers(Mockito.anyInt());
+        return container;
+    }
+}
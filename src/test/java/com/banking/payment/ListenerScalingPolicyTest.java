@@ -0,0 +1,44 @@
+package com.banking.payment;
+
+import com.banking.payment.messaging.ListenerScalingPolicy;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListenerScalingPolicyTest {
+
+    private final ListenerScalingPolicy policy = new ListenerScalingPolicy(100, 1000, 3);
+
+    @Test
+    void testBacklogScalesUpToWhatTheDepthNeeds() {
+        // 2,500 waiting: 25 consumers wanted, capped at 20
+        assertEquals(20, policy.decide(3, 3, 20, 2_500, 50, true, 0).consumers());
+        // Small backlog still at least doubles
+        assertEquals(6, policy.decide(3, 3, 20, 350, 50, true, 0).consumers());
+        // Messages waiting too long with a shallow queue
+        assertEquals(8, policy.decide(4, 3, 20, 10, 5_000, true, 0).consumers());
+        // Already at the maximum
+        assertEquals(20, policy.decide(20, 3, 20, 10_000, 5_000, true, 0).consumers());
+    }
+
+    @Test
+    void testNoScaleUpWithoutHeadroom() {
+        ListenerScalingPolicy.Decision decision = policy.decide(6, 3, 20, 5_000, 50, false, 0);
+
+        assertEquals(5, decision.consumers());
+        assertTrue(decision.reason().contains("headroom"));
+        assertEquals(3, policy.decide(3, 3, 20, 5_000, 50, false, 0).consumers());
+    }
+
+    @Test
+    void testScalesDownOneAtATimeAfterQuietChecks() {
+        assertTrue(policy.isQuiet(10, 0, 10));
+        assertFalse(policy.isQuiet(10, 600, 10));
+
+        assertEquals(10, policy.decide(10, 3, 20, 0, 10, true, 2).consumers());
+        assertEquals(9, policy.decide(10, 3, 20, 0, 10, true, 3).consumers());
+        assertEquals(3, policy.decide(3, 3, 20, 0, 10, true, 10).consumers());
+        // Limits changed under a running container
+        assertEquals(3, policy.decide(1, 3, 20, 0, 0, true, 0).consumers());
+    }
+}
@@ -0,0 +1,85 @@
+package com.banking.payment;
+
+import com.banking.payment.messaging.JmsProducer;
+import com.banking.payment.notification.NotificationDispatcher;
+import com.banking.payment.notification.PaymentNotification;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationDispatcherTest {
+
+    @Mock
+    private JmsProducer jmsProducer;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // Not started, so the test drives publishing through flush()
+    private NotificationDispatcher dispatcher(int capacity, int batchSize) {
+        return new NotificationDispatcher(jmsProducer, meterRegistry, capacity, batchSize, 0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testNotificationsForTheSameTransactionAreCoalesced() {
+        NotificationDispatcher dispatcher = dispatcher(10, 10);
+        when(jmsProducer.publishNotifications(anyList())).thenReturn(CompletableFuture.completedFuture(null));
+
+        dispatcher.dispatch("TXN-1", "PROCESSING", "Payment is being processed");
+        dispatcher.dispatch("TXN-2", "FAILED", "Payment failed: insufficient funds.");
+        dispatcher.dispatch("TXN-1", "COMPLETED", "Payment \"1\" completed");
+        dispatcher.flush();
+
+        ArgumentCaptor<List<PaymentNotification>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jmsProducer).publishNotifications(batch.capture());
+        assertEquals(List.of("TXN-1:COMPLETED", "TXN-2:FAILED"), batch.getValue().stream()
+                .map(notification -> notification.transactionId() + ":" + notification.status())
+                .toList());
+        assertEquals(1.0, meterRegistry.get("payment.notifications.coalesced").counter().count());
+        assertEquals(2.0, meterRegistry.get("payment.notifications.published").counter().count());
+    }
+
+    @Test
+    void testNotificationsAreDroppedWhenTheQueueIsFull() {
+        NotificationDispatcher dispatcher = dispatcher(2, 10);
+        when(jmsProducer.publishNotifications(anyList())).thenReturn(CompletableFuture.completedFuture(null));
+
+        dispatcher.dispatch("TXN-1", "COMPLETED", "ok");
+        dispatcher.dispatch("TXN-2", "COMPLETED", "ok");
+        dispatcher.dispatch("TXN-3", "COMPLETED", "ok");
+        dispatcher.flush();
+
+        verify(jmsProducer).publishNotifications(argThat(batch -> batch.size() == 2));
+        assertEquals(1.0, meterRegistry.get("payment.notifications.dropped").counter().count());
+    }
+
+    @Test
+    void testFlushPublishesInBatchesAndCountsFailures() {
+        NotificationDispatcher dispatcher = dispatcher(100, 4);
+        // A synchronous failure, a failed async send, then a good batch
+        when(jmsProducer.publishNotifications(anyList()))
+                .thenThrow(new IllegalStateException("broker down"))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("send not acknowledged")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+        for (int i = 0; i < 10; i++) {
+            dispatcher.dispatch("TXN-" + i, "COMPLETED", "ok");
+        }
+        dispatcher.flush();
+
+        verify(jmsProducer, times(3)).publishNotifications(anyList());
+        assertEquals(8.0, meterRegistry.get("payment.notifications.failed").counter().count());
+        assertEquals(2.0, meterRegistry.get("payment.notifications.published").counter().count());
+    }
+}
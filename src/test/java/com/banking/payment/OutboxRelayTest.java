@@ -0,0 +1,239 @@
+package com.banking.payment;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.messaging.JmsProducer;
+import com.banking.payment.messaging.OutboxRelay;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.model.OutboxMessage;
+import com.banking.payment.repository.OutboxMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.BytesMessage;
+import jakarta.jms.Connection;
+import jakarta.jms.Message;
+import jakarta.jms.MessageConsumer;
+import jakarta.jms.Session;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jms.UncategorizedJmsException;
+import org.springframework.jms.connection.CachingConnectionFactory;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+
+/**
+ * {@link OutboxRelay} draining a real outbox table into an embedded broker of its own.
+ * Each relay call commits on its own, so the tests run outside a test transaction.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(locations = "classpath:application-test.properties",
+        properties = "spring.datasource.url=jdbc:h2:mem:outbox;MODE=MySQL;DB_CLOSE_DELAY=-1")
+class OutboxRelayTest {
+
+    private static final String QUEUE = JmsConfig.PAYMENT_PROCESSING_QUEUE;
+
+    @Autowired
+    private OutboxMessageRepository outboxMessageRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private BrokerService broker;
+    private CachingConnectionFactory cachingConnectionFactory;
+    private Connection consumerConnection;
+    private JmsProducer jmsProducer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        outboxMessageRepository.deleteAllInBatch();
+        broker = new BrokerService();
+        broker.setBrokerName("outbox-test");
+        broker.setPersistent(false);
+        broker.setUseJmx(false);
+        broker.start();
+        ActiveMQConnectionFactory brokerConnectionFactory = new ActiveMQConnectionFactory("vm://outbox-test?create=false");
+        cachingConnectionFactory = new CachingConnectionFactory(brokerConnectionFactory);
+        consumerConnection = brokerConnectionFactory.createConnection();
+        consumerConnection.start();
+        JmsTemplate jmsTemplate = new JmsTemplate(cachingConnectionFactory);
+        jmsTemplate.setMessageConverter(new JmsConfig().jacksonJmsMessageConverter());
+        jmsProducer = new JmsProducer(jmsTemplate, cachingConnectionFactory,
+                new PaymentMetrics(new SimpleMeterRegistry()), false);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        consumerConnection.close();
+        cachingConnectionFactory.destroy();
+        broker.stop();
+    }
+
+    @Test
+    void failingPublishKeepsTheRowsForTheNextPoll() throws Exception {
+        saveOutbox(5);
+        JmsProducer failing = Mockito.mock(JmsProducer.class);
+        doThrow(new UncategorizedJmsException("broker down")).when(failing).publish(anyList());
+
+        relay(failing, 500).relay();
+
+        assertEquals(5, outboxMessageRepository.count());
+        assertEquals(List.of(), receiveAll());
+
+        relay(jmsProducer, 500).relay();
+
+        assertEquals(0, outboxMessageRepository.count());
+        assertEquals(transactionIds(0, 5), receiveAll());
+    }
+
+    @Test
+    void rowsAreDeletedOnlyAfterTheBatchIsPublished() throws Exception {
+        saveOutbox(3);
+        JmsProducer observing = Mockito.mock(JmsProducer.class);
+        List<Long> rowsDuringPublish = new ArrayList<>();
+        doAnswer(invocation -> {
+            rowsDuringPublish.add(outboxMessageRepository.count());
+            jmsProducer.publish(invocation.getArgument(0));
+            return null;
+        }).when(observing).publish(anyList());
+
+        relay(observing, 500).relay();
+
+        assertEquals(List.of(3L), rowsDuringPublish);
+        assertEquals(0, outboxMessageRepository.count());
+        assertEquals(transactionIds(0, 3), receiveAll());
+    }
+
+    @Test
+    void everyRowReachesTheBrokerAcrossSeveralBatches() throws Exception {
+        saveOutbox(1_250);
+
+        // Full batches are drained in one poll
+        relay(jmsProducer, 500).relay();
+
+        assertEquals(0, outboxMessageRepository.count());
+        assertEquals(transactionIds(0, 1_250), receiveAll());
+    }
+
+    @Test
+    void restartAfterPublishingRepublishesRatherThanLoses() throws Exception {
+        saveOutbox(4);
+        // The broker has the batch but the node dies before the delete commits
+        JmsProducer crashing = Mockito.mock(JmsProducer.class);
+        doAnswer(invocation -> {
+            jmsProducer.publish(invocation.getArgument(0));
+            throw new IllegalStateException("node stopped");
+        }).when(crashing).publish(anyList());
+
+        relay(crashing, 500).relay();
+        assertEquals(4, outboxMessageRepository.count());
+
+        // A fresh relay picks the same rows up again: duplicates, never gaps
+        relay(jmsProducer, 500).relay();
+
+        assertEquals(0, outboxMessageRepository.count());
+        List<String> received = receiveAll();
+        assertEquals(8, received.size());
+        assertEquals(new HashSet<>(transactionIds(0, 4)), new HashSet<>(received));
+    }
+
+    @Test
+    @Timeout(30)
+    void rowsClaimedByOneRelayAreNeverPublishedByAnother() throws Exception {
+        saveOutbox(20);
+        CountDownLatch firstClaimed = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+        List<String> published = new CopyOnWriteArrayList<>();
+        JmsProducer holding = Mockito.mock(JmsProducer.class);
+        doAnswer(invocation -> {
+            List<OutboxMessage> batch = invocation.getArgument(0);
+            batch.forEach(message -> published.add(message.getAggregateId()));
+            jmsProducer.publish(batch);
+            if (firstClaimed.getCount() > 0) {
+                // The first relay keeps its batch locked while the second one polls
+                firstClaimed.countDown();
+                assertTrue(secondDone.await(20, TimeUnit.SECONDS));
+            }
+            return null;
+        }).when(holding).publish(anyList());
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> relay(holding, 10).relay());
+        assertTrue(firstClaimed.await(10, TimeUnit.SECONDS));
+        // SKIP LOCKED takes the next batch; H2 has no SKIP LOCKED, so there the poll waits out the lock
+        relay(holding, 10).relay();
+        List<String> publishedWhileHeld = List.copyOf(published);
+        secondDone.countDown();
+        first.get(20, TimeUnit.SECONDS);
+
+        assertEquals(transactionIds(0, 10), publishedWhileHeld.subList(0, 10));
+        assertEquals(publishedWhileHeld.size(), Set.copyOf(publishedWhileHeld).size(), "No row published twice");
+        assertEquals(0, outboxMessageRepository.count());
+        List<String> received = receiveAll();
+        assertEquals(20, received.size(), "Each row is published once");
+        assertEquals(new HashSet<>(transactionIds(0, 20)), new HashSet<>(received));
+    }
+
+    private OutboxRelay relay(JmsProducer producer, int batchSize) {
+        OutboxRelay relay = new OutboxRelay(outboxMessageRepository, producer, transactionManager);
+        ReflectionTestUtils.setField(relay, "batchSize", batchSize);
+        return relay;
+    }
+
+    private void saveOutbox(int count) {
+        outboxMessageRepository.saveAll(IntStream.range(0, count).mapToObj(i -> OutboxMessage.builder()
+                .destination(QUEUE)
+                .aggregateId(transactionId(i))
+                .body(transactionId(i).getBytes(StandardCharsets.UTF_8))
+                .messageGroup("1234567890")
+                .build()).toList());
+    }
+
+    private List<String> receiveAll() throws Exception {
+        Session session = consumerConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        try (MessageConsumer consumer = session.createConsumer(session.createQueue(QUEUE))) {
+            List<String> received = new ArrayList<>();
+            Message message;
+            while ((message = consumer.receive(500)) != null) {
+                received.add(new String(JmsProducer.readBody((BytesMessage) message), StandardCharsets.UTF_8));
+            }
+            return received;
+        } finally {
+            session.close();
+        }
+    }
+
+    private static List<String> transactionIds(int from, int to) {
+        return IntStream.range(from, to).mapToObj(OutboxRelayTest::transactionId).toList();
+    }
+
+    private static String transactionId(int i) {
+        return String.format("TXN-%05d", i);
+    }
+}
@@ -0,0 +1,107 @@
+package com.banking.payment;
+
+import com.banking.payment.dto.PaymentPage;
+import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.model.Payment;
+import com.banking.payment.repository.ArchivedPaymentRepository;
+import com.banking.payment.repository.PaymentRepository;
+import com.banking.payment.service.PaymentArchiver;
+import com.banking.payment.service.PaymentService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Own database, shared vm broker: close the context so its listeners stop taking other tests' messages
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:archive;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "payment.archive.enabled=true",
+        "payment.archive.min-age=7d",
+        "payment.archive.batch-size=2",
+        "payment.archive.interval-ms=3600000"
+})
+class PaymentArchiverTest {
+
+    @Autowired
+    private PaymentArchiver paymentArchiver;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private ArchivedPaymentRepository archivedPaymentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testArchivesOldFinalPaymentsAndReadsBothTiers() throws Exception {
+        String account = "7777777777";
+        Payment oldCompleted1 = save(account, Payment.PaymentStatus.COMPLETED, 30);
+        Payment recentCompleted = save(account, Payment.PaymentStatus.COMPLETED, 0);
+        Payment oldCompleted2 = save(account, Payment.PaymentStatus.COMPLETED, 10);
+        Payment oldFailed = save(account, Payment.PaymentStatus.FAILED, 8);
+        Payment oldPending = save(account, Payment.PaymentStatus.PENDING, 30);
+        Payment oldCompleted3 = save(account, Payment.PaymentStatus.COMPLETED, 9);
+
+        assertEquals(4, paymentArchiver.archive());
+
+        assertEquals(List.of(recentCompleted.getId(), oldPending.getId()), paymentRepository.findAll().stream()
+                .filter(p -> account.equals(p.getSenderAccount())).map(Payment::getId).sorted().toList());
+        assertEquals(4, archivedPaymentRepository.count());
+        assertEquals(0, paymentArchiver.archive(), "Nothing left to move");
+
+        // Lookups fall back to the archive transparently
+        PaymentResponse byId = paymentService.getPaymentById(oldCompleted2.getId());
+        assertEquals(oldCompleted2.getTransactionId(), byId.getTransactionId());
+        assertEquals(Payment.PaymentStatus.COMPLETED, byId.getStatus());
+        assertEquals(oldFailed.getId(), paymentService.getPaymentByTransactionId(oldFailed.getTransactionId()).getId());
+
+        // Pages and streams merge both tiers in ID order
+        List<Long> expected = List.of(oldCompleted1.getId(), recentCompleted.getId(), oldCompleted2.getId(),
+                oldFailed.getId(), oldPending.getId(), oldCompleted3.getId());
+        List<Long> paged = new ArrayList<>();
+        long after = 0;
+        PaymentPage page;
+        do {
+            page = paymentService.getPaymentsBySender(account, after, 4);
+            page.getItems().forEach(p -> paged.add(p.getId()));
+            after = page.getNextCursor() == null ? 0 : page.getNextCursor();
+        } while (page.getNextCursor() != null);
+        assertEquals(expected, paged);
+
+        List<Long> streamed = new ArrayList<>();
+        paymentService.streamPaymentsBySender(account, p -> streamed.add(p.getId()));
+        assertEquals(expected, streamed);
+    }
+
+    private Payment save(String sender, Payment.PaymentStatus status, int ageDays) {
+        Payment payment = paymentRepository.save(Payment.builder()
+                .transactionId("TXN-" + UUID.randomUUID())
+                .senderAccount(sender)
+                .receiverAccount("8888888888")
+                .amount(new BigDecimal("15.00"))
+                .currency("INR")
+                .status(status)
+                .build());
+        jdbcTemplate.update("update payments set updated_at = ? where id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(ageDays)), payment.getId());
+        return payment;
+    }
+}
@@ -0,0 +1,64 @@
+package com.banking.payment;
+
+import com.banking.payment.model.Payment;
+import com.banking.payment.service.PaymentIdSequenceSeeder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// payment_seq as Hibernate keeps it on MySQL: a one-row table, here next to pre-sequence payment ids
+class PaymentIdSequenceSeederTest {
+
+    private final JdbcTemplate jdbcTemplate = new JdbcTemplate(
+            new DriverManagerDataSource("jdbc:h2:mem:sequenceseed;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", ""));
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        jdbcTemplate.execute("CREATE TABLE payments (id BIGINT PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE TABLE payments_archive (id BIGINT PRIMARY KEY)");
+        // What ddl-auto=update creates next to an existing payments table
+        jdbcTemplate.execute("CREATE TABLE payment_seq (next_val BIGINT)");
+        jdbcTemplate.update("INSERT INTO payment_seq VALUES (1)");
+    }
+
+    @Test
+    void sequenceIsRaisedAboveExistingIdsInBothTiers() {
+        jdbcTemplate.update("INSERT INTO payments VALUES (1200), (1201)");
+        jdbcTemplate.update("INSERT INTO payments_archive VALUES (1500)");
+
+        new PaymentIdSequenceSeeder(jdbcTemplate, true).seed();
+
+        // The pooled optimizer hands out the ids up to the value it reads, so the whole first block is new
+        long nextVal = nextVal();
+        assertEquals(1500 + Payment.ID_ALLOCATION_SIZE, nextVal);
+        assertTrue(nextVal - Payment.ID_ALLOCATION_SIZE + 1 > 1500);
+    }
+
+    @Test
+    void sequenceAlreadyAheadIsNeverMovedBack() {
+        jdbcTemplate.update("INSERT INTO payments VALUES (10)");
+        jdbcTemplate.update("UPDATE payment_seq SET next_val = 5000");
+
+        new PaymentIdSequenceSeeder(jdbcTemplate, true).seed();
+
+        assertEquals(5000, nextVal());
+    }
+
+    @Test
+    void emptySchemaAndNativeSequencesAreLeftAlone() {
+        new PaymentIdSequenceSeeder(jdbcTemplate, true).seed();
+        assertEquals(1, nextVal());
+
+        jdbcTemplate.update("INSERT INTO payments VALUES (1200)");
+        new PaymentIdSequenceSeeder(jdbcTemplate, false).seed();
+        assertEquals(1, nextVal());
+    }
+
+    private long nextVal() {
+        return jdbcTemplate.queryForObject("SELECT next_val FROM payment_seq", Long.class);
+    }
+}
@@ -1,20 +1,48 @@
 package com.banking.payment;
 
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.controller.PaymentController;
+import com.banking.payment.dto.BatchPaymentItemResult;
+import com.banking.payment.dto.BatchPaymentResponse;
 import com.banking.payment.dto.PaymentRequest;
 import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.dto.PaymentStatsEntry;
+import com.banking.payment.dto.PaymentStatsResponse;
+import com.banking.payment.messaging.AsyncPaymentProcessor;
+import com.banking.payment.messaging.StaleProcessingRecovery;
+import com.banking.payment.model.Payment;
+import com.banking.payment.notification.LocalNotificationSink;
+import com.banking.payment.notification.PaymentNotification;
+import com.banking.payment.repository.PaymentRepository;
+import com.banking.payment.service.PaymentStatusService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.BytesMessage;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jms.core.JmsTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context. TestPropertySource;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api. Assertions.*;
 
+@AutoConfigureObservability
 @SpringBootTest(webEnvironment = SpringBootTest. WebEnvironment.RANDOM_PORT)
 @TestPropertySource(locations = "classpath:application-test.properties")
 @DirtiesContext(classMode = DirtiesContext. ClassMode.AFTER_EACH_TEST_METHOD)
@@ -23,6 +51,21 @@ class PaymentIntegrationTest {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private LocalNotificationSink localNotificationSink;
+
+    @Autowired
+    private JmsTemplate jmsTemplate;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PaymentStatusService paymentStatusService;
+
+    @Autowired
+    private AsyncPaymentProcessor asyncPaymentProcessor;
+
     @Test
     void testCreateAndRetrievePayment() {
         // Create payment request
@@ -86,6 +129,290 @@ class PaymentIntegrationTest {
         assertTrue(response.getBody().length > 0);
     }
 
+    @Test
+    void testCreatePaymentBatch() {
+        PaymentRequest valid = PaymentRequest.builder()
+                .senderAccount("1111111111")
+                .receiverAccount("2222222222")
+                .amount(new BigDecimal("250.00"))
+                .currency("EUR")
+                .paymentMethod("SEPA")
+                .build();
+        PaymentRequest invalid = PaymentRequest.builder()
+                .senderAccount("1111111111")
+                .receiverAccount("2222222222")
+                .amount(new BigDecimal("250.00"))
+                .currency("XYZ")  // Unsupported currency
+                .build();
+
+        ResponseEntity<BatchPaymentResponse> response = restTemplate.postForEntity(
+                "/api/payments/batch",
+                List.of(valid, valid, invalid),
+                BatchPaymentResponse.class
+        );
+
+        assertEquals(HttpStatus.MULTI_STATUS, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(2, response.getBody().getAccepted());
+        assertEquals(1, response.getBody().getRejected());
+        assertEquals(BatchPaymentItemResult.ItemStatus.REJECTED, response.getBody().getResults().get(2).getStatus());
+
+        Long paymentId = response.getBody().getResults().get(0).getId();
+        ResponseEntity<PaymentResponse> getResponse = restTemplate.getForEntity(
+                "/api/payments/" + paymentId,
+                PaymentResponse.class
+        );
+        assertEquals(HttpStatus.OK, getResponse.getStatusCode());
+        assertEquals("EUR", getResponse.getBody().getCurrency());
+    }
+
+    @Test
+    void testKeysetPaginationAndStreaming() {
+        for (int i = 0; i < 3; i++) {
+            PaymentRequest request = PaymentRequest.builder()
+                    .senderAccount("5555555555")
+                    .receiverAccount("6666666666")
+                    .amount(new BigDecimal("10.00"))
+                    .currency("GBP")
+                    .build();
+            restTemplate.postForEntity("/api/payments", request, PaymentResponse.class);
+        }
+
+        // First page is full, so the response carries a cursor
+        ResponseEntity<PaymentResponse[]> firstPage = restTemplate.getForEntity(
+                "/api/payments/sender/5555555555?limit=2",
+                PaymentResponse[].class
+        );
+        assertEquals(HttpStatus.OK, firstPage.getStatusCode());
+        assertEquals(2, firstPage.getBody().length);
+        String cursor = firstPage.getHeaders().getFirst(PaymentController.NEXT_CURSOR_HEADER);
+        assertEquals(String.valueOf(firstPage.getBody()[1].getId()), cursor);
+
+        // Second page holds the remainder and no cursor
+        ResponseEntity<PaymentResponse[]> secondPage = restTemplate.getForEntity(
+                "/api/payments/sender/5555555555?limit=2&after=" + cursor,
+                PaymentResponse[].class
+        );
+        assertEquals(1, secondPage.getBody().length);
+        assertNull(secondPage.getHeaders().getFirst(PaymentController.NEXT_CURSOR_HEADER));
+
+        // NDJSON export returns one line per payment
+        ResponseEntity<String> stream = restTemplate.getForEntity(
+                "/api/payments/sender/5555555555/stream",
+                String.class
+        );
+        assertEquals(HttpStatus.OK, stream.getStatusCode());
+        assertEquals(3, stream.getBody().lines().count());
+    }
+
+    @Test
+    void testIdempotentPaymentCreation() {
+        PaymentRequest request = PaymentRequest.builder()
+                .senderAccount("7777777777")
+                .receiverAccount("8888888888")
+                .amount(new BigDecimal("99.99"))
+                .currency("USD")
+                .build();
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(PaymentController.IDEMPOTENCY_KEY_HEADER, "order-42");
+
+        ResponseEntity<PaymentResponse> first = restTemplate.postForEntity(
+                "/api/payments", new HttpEntity<>(request, headers), PaymentResponse.class);
+        ResponseEntity<PaymentResponse> retry = restTemplate.postForEntity(
+                "/api/payments", new HttpEntity<>(request, headers), PaymentResponse.class);
+
+        assertEquals(HttpStatus.CREATED, first.getStatusCode());
+        assertEquals("false", first.getHeaders().getFirst(PaymentController.IDEMPOTENT_REPLAYED_HEADER));
+        assertEquals("true", retry.getHeaders().getFirst(PaymentController.IDEMPOTENT_REPLAYED_HEADER));
+        assertEquals(first.getBody().getTransactionId(), retry.getBody().getTransactionId());
+
+        // Same key, different payment
+        request.setAmount(new BigDecimal("100.00"));
+        ResponseEntity<String> conflict = restTemplate.postForEntity(
+                "/api/payments", new HttpEntity<>(request, headers), String.class);
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, conflict.getStatusCode());
+    }
+
+    @Test
+    void testPaymentMetricsArePublished() {
+        PaymentRequest request = PaymentRequest.builder()
+                .senderAccount("1234567890")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal("75.00"))
+                .currency("EUR")
+                .build();
+        assertEquals(HttpStatus.CREATED, restTemplate.postForEntity("/api/payments", request, String.class).getStatusCode());
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, scrape.getStatusCode());
+        assertNotNull(scrape.getBody());
+        assertTrue(scrape.getBody().contains("payment_create_commit_seconds_bucket"));
+        assertTrue(scrape.getBody().contains("payment_status_total{currency=\"EUR\",status=\"PENDING\"} 1.0"));
+        assertTrue(scrape.getBody().contains("payment_queue_depth{queue=\"payment.processing.queue\"}"));
+
+        ResponseEntity<String> scaling = restTemplate.getForEntity("/actuator/listenerscaling", String.class);
+        assertEquals(HttpStatus.OK, scaling.getStatusCode());
+        assertTrue(scaling.getBody().contains("\"notification-listener\":{\"queue\":\"payment.notification.queue\""), scaling.getBody());
+        assertTrue(scaling.getBody().contains("\"processing-listener\":{\"queue\":\"payment.processing.queue\""), scaling.getBody());
+    }
+
+    @Test
+    void testPaymentStatusEventStreamEndsOnFinalStatus() {
+        PaymentRequest request = PaymentRequest.builder()
+                .senderAccount("5555555555")
+                .receiverAccount("6666666666")
+                .amount(new BigDecimal("20.00"))
+                .currency("INR")
+                .build();
+        PaymentResponse created = restTemplate.postForObject("/api/payments", request, PaymentResponse.class);
+
+        // The server completes the stream once the payment reaches COMPLETED or FAILED
+        String events = restTemplate.execute(
+                "/api/payments/transaction/" + created.getTransactionId() + "/events",
+                HttpMethod.GET,
+                httpRequest -> httpRequest.getHeaders().setAccept(List.of(MediaType.TEXT_EVENT_STREAM)),
+                response -> new String(response.getBody().readAllBytes(), StandardCharsets.UTF_8));
+
+        assertNotNull(events);
+        assertTrue(events.contains("event:status"));
+        assertTrue(events.contains("\"newStatus\":\"COMPLETED\"") || events.contains("\"newStatus\":\"FAILED\""), events);
+
+        ResponseEntity<String> missing = restTemplate.exchange("/api/payments/transaction/TXN-MISSING/events",
+                HttpMethod.GET, null, String.class);
+        assertEquals(HttpStatus.NOT_FOUND, missing.getStatusCode());
+    }
+
+    @Test
+    void testFinalStatusNotificationIsDelivered() throws InterruptedException {
+        PaymentRequest request = PaymentRequest.builder()
+                .senderAccount("7777777777")
+                .receiverAccount("8888888888")
+                .amount(new BigDecimal("15.00"))
+                .currency("USD")
+                .build();
+        PaymentResponse created = restTemplate.postForObject("/api/payments", request, PaymentResponse.class);
+
+        PaymentNotification delivered = null;
+        for (int attempt = 0; attempt < 100 && delivered == null; attempt++) {
+            delivered = localNotificationSink.recent().stream()
+                    .filter(notification -> notification.transactionId().equals(created.getTransactionId()))
+                    .findFirst()
+                    .orElse(null);
+            if (delivered == null) {
+                Thread.sleep(100);
+            }
+        }
+
+        assertNotNull(delivered, "notification not delivered");
+        assertTrue(List.of("COMPLETED", "FAILED").contains(delivered.status()));
+        assertNotNull(delivered.timestamp());
+    }
+
+    @Test
+    void testPaymentStatsAreUpdatedOnCreate() {
+        PaymentRequest request = PaymentRequest.builder()
+                .senderAccount("1234567890")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal("40.00"))
+                .currency("GBP")
+                .build();
+        restTemplate.postForEntity("/api/payments", request, PaymentResponse.class);
+        restTemplate.postForEntity("/api/payments", request, PaymentResponse.class);
+
+        ResponseEntity<PaymentStatsResponse> response = restTemplate.getForEntity(
+                "/api/payments/stats?granularity=MINUTE", PaymentStatsResponse.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        PaymentStatsResponse stats = response.getBody();
+        assertNotNull(stats);
+        // Processing may already have moved them on, but every payment is in exactly one status
+        List<PaymentStatsEntry> gbp = stats.getTotals().stream().filter(e -> "GBP".equals(e.getCurrency())).toList();
+        assertEquals(2, gbp.stream().mapToLong(PaymentStatsEntry::getCount).sum());
+        assertEquals(0, new BigDecimal("80.00").compareTo(
+                gbp.stream().map(PaymentStatsEntry::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add)));
+        assertTrue(stats.getBuckets().stream().anyMatch(e -> e.getStatus() == Payment.PaymentStatus.PENDING
+                && "GBP".equals(e.getCurrency()) && e.getCount() == 2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testUnreadablePaymentMessageIsDeadLetteredAndReplayed() throws InterruptedException {
+        jmsTemplate.send(JmsConfig.PAYMENT_PROCESSING_QUEUE, session -> {
+            BytesMessage message = session.createBytesMessage();
+            message.writeBytes(new byte[] {99});
+            return message;
+        });
+
+        List<Map<String, Object>> deadLetters = List.of();
+        for (int i = 0; i < 50 && deadLetters.isEmpty(); i++) {
+            Thread.sleep(100);
+            deadLetters = restTemplate.getForObject("/actuator/deadletters", List.class);
+        }
+        assertEquals(1, deadLetters.size());
+        assertEquals("poison", deadLetters.get(0).get("reason"));
+        assertEquals(JmsConfig.PAYMENT_PROCESSING_QUEUE, deadLetters.get(0).get("originQueue"));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<Map> replay = restTemplate.postForEntity("/actuator/deadletters",
+                new HttpEntity<>(Map.of("messageId", deadLetters.get(0).get("messageId")), headers), Map.class);
+        assertEquals(HttpStatus.OK, replay.getStatusCode());
+        assertEquals(1, replay.getBody().get("replayed"));
+    }
+
+    @Test
+    void testPaymentStuckInProcessingIsRequeued() throws InterruptedException {
+        // As left by a node that died during the gateway call: PROCESSING, message already gone
+        Payment stuck = paymentRepository.save(Payment.builder()
+                .transactionId("TXN-STUCK-1")
+                .senderAccount("1234567890")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal("42.00"))
+                .currency("INR")
+                .status(Payment.PaymentStatus.PROCESSING)
+                .build());
+        Thread.sleep(10);
+
+        new StaleProcessingRecovery(paymentStatusService, asyncPaymentProcessor, Optional.empty(),
+                new SimpleMeterRegistry(), 0).requeueStale();
+
+        Set<Payment.PaymentStatus> finalStatuses = EnumSet.of(Payment.PaymentStatus.COMPLETED, Payment.PaymentStatus.FAILED);
+        Payment.PaymentStatus status = Payment.PaymentStatus.PROCESSING;
+        for (int i = 0; i < 100 && !finalStatuses.contains(status); i++) {
+            Thread.sleep(100);
+            status = paymentRepository.findStatusById(stuck.getId()).orElseThrow();
+        }
+        assertTrue(finalStatuses.contains(status), "Requeued payment should be processed again, was " + status);
+    }
+
+    @Test
+    void testStuckPaymentWithRecordedGatewayAnswerIsFinishedNotRecharged() throws InterruptedException {
+        // As left by a dead-lettered attempt whose gateway call was declined but whose FAILED could not be stored
+        Payment stuck = paymentRepository.save(Payment.builder()
+                .transactionId("TXN-STUCK-ANSWERED")
+                .senderAccount("1234567890")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal("42.00"))
+                .currency("INR")
+                .status(Payment.PaymentStatus.PROCESSING)
+                .build());
+        assertTrue(paymentStatusService.recordGatewayAnswer("TXN-STUCK-ANSWERED", Payment.PaymentStatus.FAILED));
+        Thread.sleep(10);
+
+        new StaleProcessingRecovery(paymentStatusService, asyncPaymentProcessor, Optional.empty(),
+                new SimpleMeterRegistry(), 0).requeueStale();
+
+        // Never handed back to PENDING, so the gateway is not called again
+        Payment.PaymentStatus status = paymentRepository.findStatusById(stuck.getId()).orElseThrow();
+        assertNotEquals(Payment.PaymentStatus.PENDING, status);
+        for (int i = 0; i < 100 && status == Payment.PaymentStatus.PROCESSING; i++) {
+            Thread.sleep(100);
+            status = paymentRepository.findStatusById(stuck.getId()).orElseThrow();
+        }
+        assertEquals(Payment.PaymentStatus.FAILED, status);
+    }
+
     @Test
     void testInvalidPaymentRequest() {
         // Invalid request (amount too low)
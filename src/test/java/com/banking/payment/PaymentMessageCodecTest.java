@@ -0,0 +1,77 @@
+package com.banking.payment;
+
+import com.banking.payment.messaging.PaymentMessage;
+import com.banking.payment.messaging.PaymentMessageCodec;
+import com.banking.payment.model.Payment;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentMessageCodecTest {
+
+    private final Payment payment = Payment.builder()
+            .id(123456L)
+            .transactionId("TXN-6f1c2d3e-4b5a-4c7d-8e9f-0a1b2c3d4e5f")
+            .senderAccount("1234567890")
+            .receiverAccount("0987654321")
+            .amount(new BigDecimal("1000.50"))
+            .currency("INR")
+            .status(Payment.PaymentStatus.PENDING)
+            .paymentMethod("UPI")
+            .description("Codec test payment")
+            .createdAt(LocalDateTime.now())
+            .updatedAt(LocalDateTime.now())
+            .build();
+
+    @Test
+    void testRoundTrip() {
+        PaymentMessage message = PaymentMessage.from(payment);
+
+        assertEquals(message, PaymentMessageCodec.decode(PaymentMessageCodec.encode(message)));
+    }
+
+    @Test
+    void testMissingFieldsDecodeAsNull() {
+        PaymentMessage message = new PaymentMessage(null, "TXN-1", null, null, null, null);
+
+        assertEquals(message, PaymentMessageCodec.decode(PaymentMessageCodec.encode(message)));
+    }
+
+    @Test
+    void testUnknownFieldsAreSkipped() {
+        byte[] encoded = PaymentMessageCodec.encode(PaymentMessage.from(payment));
+        // A newer producer appended tag 42 with a 3-byte value
+        byte[] extended = Arrays.copyOf(encoded, encoded.length + 5);
+        System.arraycopy(new byte[]{42, 3, 'n', 'e', 'w'}, 0, extended, encoded.length, 5);
+
+        assertEquals(PaymentMessage.from(payment), PaymentMessageCodec.decode(extended));
+    }
+
+    @Test
+    void testRejectsNonBinaryPayload() {
+        byte[] json = "{\"transactionId\":\"TXN-1\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(IllegalArgumentException.class, () -> PaymentMessageCodec.decode(json));
+    }
+
+    @Test
+    void testSmallerThanJsonPayload() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        // The converter wrapped the entity JSON in a JSON string before sending it as text
+        int jsonBytes = objectMapper.writeValueAsString(objectMapper.writeValueAsString(payment))
+                .getBytes(StandardCharsets.UTF_8).length;
+        int binaryBytes = PaymentMessageCodec.encode(PaymentMessage.from(payment)).length;
+
+        // About 85 bytes against ~370, as documented in the README
+        assertTrue(binaryBytes <= 100, "Binary payment message grew to " + binaryBytes + " bytes");
+        assertTrue(jsonBytes >= 300, "JSON payment message shrank to " + jsonBytes + " bytes");
+        assertTrue(binaryBytes * 3 < jsonBytes, "Expected the binary message to be under a third of the JSON one");
+    }
+}
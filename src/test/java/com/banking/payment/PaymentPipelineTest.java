@@ -0,0 +1,246 @@
+package com.banking.payment;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.messaging.AsyncPaymentProcessor;
+import com.banking.payment.messaging.JmsConsumer;
+import com.banking.payment.messaging.JmsProducer;
+import com.banking.payment.messaging.PaymentMessage;
+import com.banking.payment.messaging.PaymentMessageCodec;
+import com.banking.payment.messaging.PaymentPipeline;
+import com.banking.payment.messaging.PaymentRetryScheduler;
+import com.banking.payment.messaging.PaymentStageHandler;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.model.Payment;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.JMSException;
+import jakarta.jms.Message;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.jms.support.converter.MessageConverter;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// In-process stages between the processing queue and AsyncPaymentProcessor
+@ExtendWith(MockitoExtension.class)
+class PaymentPipelineTest {
+
+    private static final String SENDER = "1234567890";
+
+    @Mock
+    private AsyncPaymentProcessor asyncPaymentProcessor;
+
+    @Mock
+    private PaymentRetryScheduler paymentRetryScheduler;
+
+    private final List<String> handled = new CopyOnWriteArrayList<>();
+    private final GenericApplicationContext context = new GenericApplicationContext();
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+    }
+
+    @Test
+    void topologyPicksTheIngressQueue() {
+        assertEquals(JmsConfig.PAYMENT_PROCESSING_QUEUE, pipeline(PaymentPipeline.Topology.DIRECT).ingressDestination());
+        assertEquals(JmsConfig.PAYMENT_QUEUE, pipeline(PaymentPipeline.Topology.STAGED).ingressDestination());
+    }
+
+    @Test
+    void stagesRunInOrderAndHandTheSamePaymentOn() {
+        List<PaymentMessage> seen = new CopyOnWriteArrayList<>();
+        // Registered out of order; the pipeline sorts them
+        stage("enrich", 2, observe(seen));
+        stage("route", 1, observe(seen));
+        stage("screen", 3, observe(seen));
+        PaymentMessage payment = payment("TXN-1");
+
+        pipeline(PaymentPipeline.Topology.DIRECT).applyStages(payment);
+
+        assertEquals(List.of("route:TXN-1", "enrich:TXN-1", "screen:TXN-1"), handled);
+        assertEquals(List.of(payment, payment, payment), seen);
+    }
+
+    @Test
+    void eachStageGetsWhatThePreviousOneReturned() throws Exception {
+        // Enrichment rewrites the payment; screening stops one and the rest reach the processor rewritten
+        stage("enrich", 1, payment -> new PaymentMessage(payment.paymentId(), payment.transactionId() + "-E",
+                "5555555555", payment.receiverAccount(), payment.amount(), payment.currency()));
+        stage("screen", 2, payment -> payment.transactionId().startsWith("TXN-2") ? null : payment);
+        when(asyncPaymentProcessor.process(anyString(), anyString(), isNull()))
+                .thenReturn(new CompletableFuture<>());
+        JmsConsumer consumer = consumer();
+        Message stopped = spy(message("TXN-2"));
+
+        consumer.processPayment(message("TXN-1"));
+        consumer.processPayment(stopped);
+
+        assertEquals(List.of("enrich:TXN-1", "screen:TXN-1-E", "enrich:TXN-2", "screen:TXN-2-E"), handled);
+        verify(asyncPaymentProcessor).process("TXN-1-E", "5555555555", null);
+        verify(asyncPaymentProcessor, never()).process(eq("TXN-2-E"), anyString(), any());
+        verify(stopped).acknowledge();
+        assertNull(pipeline(PaymentPipeline.Topology.DIRECT).applyStages(payment("TXN-2")));
+    }
+
+    @Test
+    void paymentsReachTheProcessorInArrivalOrderAfterEveryStage() throws Exception {
+        stage("route", 1, payment -> payment);
+        stage("enrich", 2, payment -> payment);
+        when(asyncPaymentProcessor.process(anyString(), eq(SENDER), isNull()))
+                .thenAnswer(invocation -> {
+                    handled.add("process:" + invocation.getArgument(0));
+                    return new CompletableFuture<Payment.PaymentStatus>();
+                });
+        JmsConsumer consumer = consumer();
+
+        for (String transactionId : List.of("TXN-1", "TXN-2", "TXN-3")) {
+            consumer.processPayment(message(transactionId));
+        }
+
+        assertEquals(List.of(
+                "route:TXN-1", "enrich:TXN-1", "process:TXN-1",
+                "route:TXN-2", "enrich:TXN-2", "process:TXN-2",
+                "route:TXN-3", "enrich:TXN-3", "process:TXN-3"), handled);
+        InOrder order = inOrder(asyncPaymentProcessor);
+        order.verify(asyncPaymentProcessor).process("TXN-1", SENDER, null);
+        order.verify(asyncPaymentProcessor).process("TXN-2", SENDER, null);
+        order.verify(asyncPaymentProcessor).process("TXN-3", SENDER, null);
+    }
+
+    @Test
+    @Timeout(30)
+    void slowStageHoldsTheListenerThreadInsteadOfBuffering() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        stage("slow", 1, payment -> {
+            entered.countDown();
+            try {
+                assertTrue(release.await(20, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return payment;
+        });
+        when(asyncPaymentProcessor.process("TXN-1", SENDER, null))
+                .thenReturn(CompletableFuture.completedFuture(Payment.PaymentStatus.COMPLETED));
+        JmsConsumer consumer = consumer();
+        Message message = message("TXN-1");
+
+        CompletableFuture<Void> listener = CompletableFuture.runAsync(() -> consumer.processPayment(message));
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+
+        // No queue between stages: until the stage returns, the listener takes nothing else and nothing moves on
+        Thread.sleep(200);
+        assertFalse(listener.isDone());
+        verify(asyncPaymentProcessor, never()).process(anyString(), anyString(), any());
+
+        release.countDown();
+        listener.get(10, TimeUnit.SECONDS);
+        verify(asyncPaymentProcessor).process("TXN-1", SENDER, null);
+    }
+
+    @Test
+    void failingStageStopsThePipelineAndSendsThePaymentToRetry() throws Exception {
+        IllegalArgumentException rejected = new IllegalArgumentException("unknown receiver bank");
+        stage("route", 1, payment -> {
+            throw rejected;
+        });
+        stage("enrich", 2, payment -> payment);
+        Message message = message("TXN-1");
+
+        assertSame(rejected, assertThrows(IllegalArgumentException.class,
+                () -> pipeline(PaymentPipeline.Topology.DIRECT).applyStages(payment("TXN-1"))));
+        handled.clear();
+
+        consumer().processPayment(message);
+
+        assertEquals(List.of("route:TXN-1"), handled);
+        verify(asyncPaymentProcessor, never()).process(anyString(), anyString(), any());
+        verify(paymentRetryScheduler).retryOrDeadLetter(message, JmsConfig.PAYMENT_PROCESSING_QUEUE, rejected);
+    }
+
+    private static PaymentStageHandler observe(List<PaymentMessage> seen) {
+        return payment -> {
+            seen.add(payment);
+            return payment;
+        };
+    }
+
+    private void stage(String name, int order, PaymentStageHandler body) {
+        context.registerBean(name, PaymentStageHandler.class, () -> new OrderedStage(name, order, body));
+    }
+
+    private PaymentPipeline pipeline(PaymentPipeline.Topology topology) {
+        if (!context.isActive()) {
+            context.refresh();
+        }
+        return new PaymentPipeline(topology, context.getBeanProvider(PaymentStageHandler.class));
+    }
+
+    private JmsConsumer consumer() {
+        return new JmsConsumer(mock(JmsProducer.class), pipeline(PaymentPipeline.Topology.DIRECT),
+                asyncPaymentProcessor, new ObjectMapper(), mock(MessageConverter.class),
+                new PaymentMetrics(new SimpleMeterRegistry()), List.of(), paymentRetryScheduler);
+    }
+
+    private static PaymentMessage payment(String transactionId) {
+        return new PaymentMessage(1L, transactionId, SENDER, "0987654321", new BigDecimal("10.00"), "INR");
+    }
+
+    private static Message message(String transactionId) throws JMSException {
+        ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+        message.writeBytes(PaymentMessageCodec.encode(payment(transactionId)));
+        message.reset();
+        return message;
+    }
+
+    private final class OrderedStage implements PaymentStageHandler, Ordered {
+
+        private final String name;
+        private final int order;
+        private final PaymentStageHandler body;
+
+        private OrderedStage(String name, int order, PaymentStageHandler body) {
+            this.name = name;
+            this.order = order;
+            this.body = body;
+        }
+
+        @Override
+        public PaymentMessage handle(PaymentMessage payment) {
+            handled.add(name + ":" + payment.transactionId());
+            return body.handle(payment);
+        }
+
+        @Override
+        public int getOrder() {
+            return order;
+        }
+    }
+}
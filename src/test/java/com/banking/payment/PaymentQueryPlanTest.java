@@ -0,0 +1,92 @@
+package com.banking.payment;
+
+import com.banking.payment.model.Payment;
+import com.banking.payment.repository.PaymentRepository;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs each keyset lookup through {@link PaymentRepository}, captures the SQL Hibernate sends,
+ * and asks H2 for the plan of exactly that statement. The plan must use the matching composite
+ * index rather than scan the payments table.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(locations = "classpath:application-test.properties",
+        properties = "spring.datasource.url=jdbc:h2:mem:queryplan;MODE=MySQL;DB_CLOSE_DELAY=-1")
+class PaymentQueryPlanTest {
+
+    private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+    private static final Limit PAGE = Limit.of(50);
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @TestConfiguration
+    static class StatementCapture {
+
+        @Bean
+        HibernatePropertiesCustomizer statementInspector() {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, (StatementInspector) sql -> {
+                STATEMENTS.add(sql);
+                return sql;
+            });
+        }
+    }
+
+    @BeforeEach
+    void clearStatements() {
+        STATEMENTS.clear();
+    }
+
+    @Test
+    void senderLookupUsesSenderIndex() {
+        paymentRepository.findPageBySenderAccount("1234567890", 0L, PAGE);
+
+        assertThat(explainLast("1234567890", 0L, PAGE.max()))
+                .containsIgnoringCase("IDX_PAYMENTS_SENDER_ID").doesNotContainIgnoringCase("tableScan");
+    }
+
+    @Test
+    void receiverLookupUsesReceiverIndex() {
+        paymentRepository.findPageByReceiverAccount("0987654321", 0L, PAGE);
+
+        assertThat(explainLast("0987654321", 0L, PAGE.max()))
+                .containsIgnoringCase("IDX_PAYMENTS_RECEIVER_ID").doesNotContainIgnoringCase("tableScan");
+    }
+
+    @Test
+    void statusLookupUsesStatusIndex() {
+        paymentRepository.findPageByStatus(Payment.PaymentStatus.PENDING, 0L, PAGE);
+
+        assertThat(explainLast(Payment.PaymentStatus.PENDING.name(), 0L, PAGE.max()))
+                .containsIgnoringCase("IDX_PAYMENTS_STATUS_ID").doesNotContainIgnoringCase("tableScan");
+    }
+
+    // Binds the captured statement's parameters in the order they appear in its SQL
+    private String explainLast(Object... parameters) {
+        assertThat(STATEMENTS).isNotEmpty();
+        String sql = STATEMENTS.get(STATEMENTS.size() - 1);
+        assertThat(sql.chars().filter(c -> c == '?').count()).as(sql).isEqualTo(parameters.length);
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, parameters);
+    }
+}
@@ -0,0 +1,204 @@
+package com.banking.payment;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.exception.InvalidStatusTransitionException;
+import com.banking.payment.gateway.GatewayRejectedException;
+import com.banking.payment.messaging.JmsProducer;
+import com.banking.payment.messaging.MalformedPaymentMessageException;
+import com.banking.payment.messaging.PaymentAttemptException;
+import com.banking.payment.messaging.PaymentRetryScheduler;
+import com.banking.payment.model.Payment;
+import com.banking.payment.service.PaymentStatusService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.ConnectionFactory;
+import jakarta.jms.JMSException;
+import org.apache.activemq.command.ActiveMQBytesMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.jms.core.JmsTemplate;
+
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentRetrySchedulerTest {
+
+    @Mock
+    private JmsProducer jmsProducer;
+
+    @Mock
+    private JmsTemplate jmsTemplate;
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+
+    @Mock
+    private PaymentStatusService paymentStatusService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private PaymentRetryScheduler scheduler() {
+        return new PaymentRetryScheduler(jmsProducer, jmsTemplate, connectionFactory, paymentStatusService, meterRegistry,
+                3, 1000, 2.0, 60000);
+    }
+
+    private static ActiveMQBytesMessage messageOnAttempt(int attempt) throws JMSException {
+        ActiveMQBytesMessage message = new ActiveMQBytesMessage();
+        if (attempt > 0) {
+            message.setIntProperty("PaymentRetryAttempt", attempt);
+        }
+        return message;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testTransientFailureIsRetriedWithBackoff() throws JMSException {
+        PaymentRetryScheduler scheduler = scheduler();
+
+        long before = System.currentTimeMillis();
+        scheduler.retryOrDeadLetter(messageOnAttempt(1), JmsConfig.PAYMENT_PROCESSING_QUEUE,
+                new CompletionException(new TransientDataAccessResourceException("connection reset")));
+
+        ArgumentCaptor<Map<String, Object>> properties = ArgumentCaptor.forClass(Map.class);
+        verify(jmsProducer).sendCopy(any(), eq(JmsConfig.PAYMENT_RETRY_QUEUE), properties.capture());
+        assertEquals(2, properties.getValue().get("PaymentRetryAttempt"));
+        assertEquals(JmsConfig.PAYMENT_PROCESSING_QUEUE, properties.getValue().get("PaymentOriginQueue"));
+        // Second retry: 2000 ms +/- 20% jitter
+        long delay = (long) properties.getValue().get("PaymentRetryDueAt") - before;
+        assertTrue(delay >= 1600 && delay <= 2400 + (System.currentTimeMillis() - before), "delay " + delay);
+        assertEquals(1.0, meterRegistry.get("payment.retry.scheduled").counter().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPoisonMessageIsDeadLetteredImmediately() throws JMSException {
+        PaymentRetryScheduler scheduler = scheduler();
+
+        scheduler.retryOrDeadLetter(messageOnAttempt(0), JmsConfig.PAYMENT_PROCESSING_QUEUE,
+                new MalformedPaymentMessageException("Truncated payment message"));
+        scheduler.retryOrDeadLetter(messageOnAttempt(0), JmsConfig.PAYMENT_PROCESSING_QUEUE,
+                new CompletionException(new InvalidStatusTransitionException("no longer PROCESSING")));
+
+        ArgumentCaptor<Map<String, Object>> properties = ArgumentCaptor.forClass(Map.class);
+        verify(jmsProducer, times(2)).sendCopy(any(), eq(JmsConfig.PAYMENT_DEAD_LETTER_QUEUE), properties.capture());
+        assertEquals("poison", properties.getAllValues().get(0).get("PaymentFailureReason"));
+        assertEquals("Truncated payment message", properties.getAllValues().get(0).get("PaymentFailure"));
+        assertEquals(2.0, meterRegistry.get("payment.retry.dead.lettered").tag("reason", "poison").counter().count());
+    }
+
+    @Test
+    void testIllegalArgumentFromOutsideTheDecoderIsRetried() throws JMSException {
+        PaymentRetryScheduler scheduler = scheduler();
+
+        scheduler.retryOrDeadLetter(messageOnAttempt(0), JmsConfig.PAYMENT_PROCESSING_QUEUE,
+                new IllegalArgumentException("Invalid connection state"));
+
+        verify(jmsProducer).sendCopy(any(), eq(JmsConfig.PAYMENT_RETRY_QUEUE), any());
+        verify(jmsProducer, never()).sendCopy(any(), eq(JmsConfig.PAYMENT_DEAD_LETTER_QUEUE), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testDeadLetterWithGatewayAnswerRecordsItOnThePayment() throws JMSException {
+        PaymentRetryScheduler scheduler = scheduler();
+        when(paymentStatusService.recordGatewayAnswer("TXN-1", Payment.PaymentStatus.COMPLETED)).thenReturn(true);
+
+        scheduler.retryOrDeadLetter(messageOnAttempt(2), JmsConfig.PAYMENT_PROCESSING_QUEUE,
+                new CompletionException(new PaymentAttemptException("TXN-1", Payment.PaymentStatus.COMPLETED,
+                        "Could not store COMPLETED", new TransientDataAccessResourceException("connection reset"))));
+
+        ArgumentCaptor<Map<String, Object>> properties = ArgumentCaptor.forClass(Map.class);
+        verify(jmsProducer).sendCopy(any(), eq(JmsConfig.PAYMENT_DEAD_LETTER_QUEUE), properties.capture());
+        assertEquals("exhausted", properties.getValue().get("PaymentFailureReason"));
+        assertEquals("COMPLETED", properties.getValue().get("PaymentResumeWith"));
+        verify(paymentStatusService).recordGatewayAnswer("TXN-1", Payment.PaymentStatus.COMPLETED);
+    }
+
+    @Test
+    void testAbandonedAttemptIsDeadLetteredWithoutAnAnswer() throws JMSException {
+        PaymentRetryScheduler scheduler = scheduler();
+
+        scheduler.retryOrDeadLetter(messageOnAttempt(2), JmsConfig.PAYMENT_PROCESSING_QUEUE,
+                new PaymentAttemptException("TXN-1", Payment.PaymentStatus.PENDING, "Attempt not completed", null));
+
+        verify(jmsProducer).sendCopy(any(), eq(JmsConfig.PAYMENT_DEAD_LETTER_QUEUE), any());
+        verifyNoInteractions(paymentStatusService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMessageIsDeadLetteredAfterMaxAttempts() throws JMSException {
+        PaymentRetryScheduler scheduler = scheduler();
+
+        // Third delivery (two retries already) with max-attempts=3
+        scheduler.retryOrDeadLetter(messageOnAttempt(2), JmsConfig.PAYMENT_QUEUE,
+                new TransientDataAccessResourceException("connection reset"));
+
+        ArgumentCaptor<Map<String, Object>> properties = ArgumentCaptor.forClass(Map.class);
+        verify(jmsProducer).sendCopy(any(), eq(JmsConfig.PAYMENT_DEAD_LETTER_QUEUE), properties.capture());
+        verify(jmsProducer, never()).sendCopy(any(), eq(JmsConfig.PAYMENT_RETRY_QUEUE), any());
+        assertEquals("exhausted", properties.getValue().get("PaymentFailureReason"));
+        assertEquals(JmsConfig.PAYMENT_QUEUE, properties.getValue().get("PaymentOriginQueue"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGatewayRejectionWaitsForTheCircuitWithoutUsingAnAttempt() throws JMSException {
+        PaymentRetryScheduler scheduler = scheduler();
+
+        // Last attempt with max-attempts=3, but the call never reached the gateway
+        long before = System.currentTimeMillis();
+        scheduler.retryOrDeadLetter(messageOnAttempt(2), JmsConfig.PAYMENT_PROCESSING_QUEUE,
+                new CompletionException(new PaymentAttemptException("TXN-1", Payment.PaymentStatus.PENDING,
+                        "Attempt not completed", new GatewayRejectedException("circuit_open", "Gateway circuit open", 25000))));
+
+        ArgumentCaptor<Map<String, Object>> properties = ArgumentCaptor.forClass(Map.class);
+        verify(jmsProducer).sendCopy(any(), eq(JmsConfig.PAYMENT_RETRY_QUEUE), properties.capture());
+        verify(jmsProducer, never()).sendCopy(any(), eq(JmsConfig.PAYMENT_DEAD_LETTER_QUEUE), any());
+        assertEquals(2, properties.getValue().get("PaymentRetryAttempt"));
+        // Not due before the circuit half-opens, then the first backoff step: 1000 ms +/- 20%
+        long delay = (long) properties.getValue().get("PaymentRetryDueAt") - before;
+        assertTrue(delay >= 25800 && delay <= 26200 + (System.currentTimeMillis() - before), "delay " + delay);
+    }
+
+    @Test
+    void testBulkheadRejectionIsRetriedWithoutUsingAnAttempt() throws JMSException {
+        PaymentRetryScheduler scheduler = scheduler();
+
+        for (int i = 0; i < 5; i++) {
+            scheduler.retryOrDeadLetter(messageOnAttempt(2), JmsConfig.PAYMENT_PROCESSING_QUEUE,
+                    new GatewayRejectedException("bulkhead", "Gateway bulkhead full"));
+        }
+
+        verify(jmsProducer, times(5)).sendCopy(any(), eq(JmsConfig.PAYMENT_RETRY_QUEUE), any());
+        verify(jmsProducer, never()).sendCopy(any(), eq(JmsConfig.PAYMENT_DEAD_LETTER_QUEUE), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRetryCarriesTheResumeInstruction() throws JMSException {
+        PaymentRetryScheduler scheduler = scheduler();
+
+        scheduler.retryOrDeadLetter(messageOnAttempt(0), JmsConfig.PAYMENT_PROCESSING_QUEUE,
+                new CompletionException(new PaymentAttemptException("TXN-1", Payment.PaymentStatus.COMPLETED,
+                        "Could not store COMPLETED", new TransientDataAccessResourceException("connection reset"))));
+
+        ArgumentCaptor<Map<String, Object>> properties = ArgumentCaptor.forClass(Map.class);
+        verify(jmsProducer).sendCopy(any(), eq(JmsConfig.PAYMENT_RETRY_QUEUE), properties.capture());
+        assertEquals("COMPLETED", properties.getValue().get("PaymentResumeWith"));
+
+        ActiveMQBytesMessage retried = messageOnAttempt(1);
+        retried.setStringProperty("PaymentResumeWith", "COMPLETED");
+        assertEquals(Payment.PaymentStatus.COMPLETED, PaymentRetryScheduler.resumeWith(retried));
+        assertNull(PaymentRetryScheduler.resumeWith(messageOnAttempt(0)));
+    }
+}
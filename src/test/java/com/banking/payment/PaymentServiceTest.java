@@ -1,24 +1,47 @@
 package com.banking.payment;
 
+import com.banking.payment.dto.BatchPaymentItemResult;
+import com.banking.payment.dto.BatchPaymentResponse;
 import com.banking.payment.dto.PaymentRequest;
 import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.event.PaymentStatusChangedEvent;
+import com.banking.payment.exception.InvalidStatusTransitionException;
 import com.banking.payment.exception.PaymentNotFoundException;
-import com.banking.payment.messaging.JmsProducer;
+import com.banking.payment.messaging.PaymentOutbox;
+import com.banking.payment.metrics.PaymentMetrics;
+import com.banking.payment.metrics.PaymentStatistics;
 import com.banking.payment.model.Payment;
 import com.banking.payment.repository.PaymentRepository;
+import com.banking.payment.service.PaymentCache;
 import com.banking.payment.service.PaymentServiceImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org. junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit. jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,7 +51,30 @@ class PaymentServiceTest {
     private PaymentRepository paymentRepository;
 
     @Mock
-    private JmsProducer jmsProducer;
+    private PaymentOutbox paymentOutbox;
+
+    @Mock
+    private Validator validator;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ConstraintViolation<PaymentRequest> violation;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private PaymentStatistics paymentStatistics;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private PaymentMetrics paymentMetrics = new PaymentMetrics(meterRegistry);
+
+    @Spy
+    private PaymentCache paymentCache = new PaymentCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
 
     @InjectMocks
     private PaymentServiceImpl paymentService;
@@ -62,7 +108,6 @@ class PaymentServiceTest {
     void testCreatePayment_Success() {
         // Arrange
         when(paymentRepository.save(any(Payment.class))).thenReturn(payment);
-        doNothing().when(jmsProducer).sendPaymentMessage(any(Payment.class));
 
         // Act
         PaymentResponse response = paymentService.createPayment(paymentRequest);
@@ -75,13 +120,48 @@ class PaymentServiceTest {
         assertEquals(Payment.PaymentStatus.PENDING, response.getStatus());
 
         verify(paymentRepository, times(1)).save(any(Payment.class));
-        verify(jmsProducer, times(1)).sendPaymentMessage(any(Payment.class));
+        verify(paymentOutbox, times(1)).enqueue(any(Payment.class));
+        assertEquals(1.0, meterRegistry.counter("payment.status", "status", "PENDING", "currency", "INR").count());
+        assertEquals(1, meterRegistry.timer("payment.create.commit", "mode", "single").count());
+        verify(paymentStatistics, times(1)).recordCreated(List.of(payment));
+    }
+
+    @Test
+    void testCreatePayments_ReportsPerItemResults() {
+        // Arrange
+        ReflectionTestUtils.setField(paymentService, "batchMaxItems", 10);
+        ReflectionTestUtils.setField(paymentService, "batchChunkSize", 10);
+        PaymentRequest invalidRequest = PaymentRequest.builder()
+                .senderAccount("123")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal("10.00"))
+                .currency("INR")
+                .build();
+        when(violation.getMessage()).thenReturn("Invalid sender account format");
+        when(validator.validate(paymentRequest)).thenReturn(Set.of());
+        when(validator.validate(invalidRequest)).thenReturn(Set.of(violation));
+        when(paymentRepository.saveAll(anyList())).thenReturn(List.of(payment));
+
+        // Act
+        BatchPaymentResponse response = paymentService.createPayments(List.of(paymentRequest, invalidRequest));
+
+        // Assert
+        assertEquals(2, response.getReceived());
+        assertEquals(1, response.getAccepted());
+        assertEquals(1, response.getRejected());
+        assertEquals(BatchPaymentItemResult.ItemStatus.ACCEPTED, response.getResults().get(0).getStatus());
+        assertEquals("TXN-123", response.getResults().get(0).getTransactionId());
+        assertEquals(BatchPaymentItemResult.ItemStatus.REJECTED, response.getResults().get(1).getStatus());
+
+        verify(paymentRepository, times(1)).saveAll(anyList());
+        verify(paymentOutbox, times(1)).enqueueAll(anyList());
+        verify(paymentOutbox, never()).enqueue(any(Payment.class));
     }
 
     @Test
     void testGetPaymentById_Success() {
         // Arrange
-        when(paymentRepository.findById(1L)).thenReturn(Optional. of(payment));
+        when(paymentRepository.findResponseById(1L)).thenReturn(Optional.of(PaymentResponse.fromEntity(payment)));
 
         // Act
         PaymentResponse response = paymentService.getPaymentById(1L);
@@ -91,48 +171,122 @@ class PaymentServiceTest {
         assertEquals(1L, response.getId());
         assertEquals("TXN-123", response.getTransactionId());
 
-        verify(paymentRepository, times(1)).findById(1L);
+        verify(paymentRepository, times(1)).findResponseById(1L);
+    }
+
+    @Test
+    void testGetPaymentById_CachedUntilStatusChanges() {
+        // Arrange
+        when(paymentRepository.findResponseById(1L)).thenAnswer(invocation -> Optional.of(PaymentResponse.fromEntity(payment)));
+
+        // Act: second lookup is a cache hit
+        paymentService.getPaymentById(1L);
+        paymentService.getPaymentById(1L);
+        verify(paymentRepository, times(1)).findResponseById(1L);
+
+        // A committed status change evicts the entry, so the next read goes to the database
+        payment.setStatus(Payment.PaymentStatus.COMPLETED);
+        paymentCache.onStatusChanged(PaymentStatusChangedEvent.of(payment, Payment.PaymentStatus.PENDING));
+        PaymentResponse response = paymentService.getPaymentById(1L);
+
+        // Assert
+        assertEquals(Payment.PaymentStatus.COMPLETED, response.getStatus());
+        verify(paymentRepository, times(2)).findResponseById(1L);
     }
 
     @Test
     void testGetPaymentById_NotFound() {
         // Arrange
-        when(paymentRepository. findById(999L)).thenReturn(Optional. empty());
+        when(paymentRepository.findResponseById(999L)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(PaymentNotFoundException.class, () -> {
             paymentService.getPaymentById(999L);
         });
 
-        verify(paymentRepository, times(1)).findById(999L);
+        verify(paymentRepository, times(1)).findResponseById(999L);
     }
 
     @Test
     void testUpdatePaymentStatus_Success() {
         // Arrange
-        when(paymentRepository.findById(1L)).thenReturn(Optional. of(payment));
-        when(paymentRepository.save(any(Payment.class))).thenReturn(payment);
+        payment.setStatus(Payment.PaymentStatus.COMPLETED);
+        when(paymentRepository.transition(eq(1L), eq(EnumSet.of(Payment.PaymentStatus.PROCESSING)),
+                eq(Payment.PaymentStatus.COMPLETED), any(LocalDateTime.class))).thenReturn(1);
+        when(paymentRepository.findResponseById(1L)).thenReturn(Optional.of(PaymentResponse.fromEntity(payment)));
 
         // Act
         PaymentResponse response = paymentService.updatePaymentStatus(1L, Payment.PaymentStatus. COMPLETED);
 
         // Assert
         assertNotNull(response);
-        verify(paymentRepository, times(1)).findById(1L);
-        verify(paymentRepository, times(1)).save(any(Payment.class));
+        assertEquals(Payment.PaymentStatus.COMPLETED, response.getStatus());
+        verify(paymentRepository, never()).findById(anyLong());
+        verify(paymentRepository, never()).save(any(Payment.class));
+        // One UPDATE, and no status read when it matched
+        verify(paymentRepository, times(1)).transition(anyLong(), any(), any(), any());
+        verify(paymentRepository, never()).findStatusById(anyLong());
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof PaymentStatusChangedEvent changed
+                && changed.previousStatus() == Payment.PaymentStatus.PROCESSING));
+    }
+
+    @Test
+    void testUpdatePaymentStatus_FailedNamesTheStatusItLeft() {
+        // FAILED is reachable from PENDING and PROCESSING, so the event needs the one the payment was in
+        payment.setStatus(Payment.PaymentStatus.FAILED);
+        when(paymentRepository.findStatusById(1L)).thenReturn(Optional.of(Payment.PaymentStatus.PROCESSING));
+        when(paymentRepository.transition(eq(1L), eq(EnumSet.of(Payment.PaymentStatus.PROCESSING)),
+                eq(Payment.PaymentStatus.FAILED), any(LocalDateTime.class))).thenReturn(1);
+        when(paymentRepository.findResponseById(1L)).thenReturn(Optional.of(PaymentResponse.fromEntity(payment)));
+
+        paymentService.updatePaymentStatus(1L, Payment.PaymentStatus.FAILED);
+
+        verify(paymentRepository, times(1)).transition(anyLong(), any(), any(), any());
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof PaymentStatusChangedEvent changed
+                && changed.previousStatus() == Payment.PaymentStatus.PROCESSING));
+    }
+
+    @Test
+    void testUpdatePaymentStatus_LostRaceReportsTheCurrentStatus() {
+        // The pipeline completed the payment between the request and the UPDATE
+        when(paymentRepository.transition(eq(1L), eq(EnumSet.of(Payment.PaymentStatus.PROCESSING)),
+                eq(Payment.PaymentStatus.COMPLETED), any(LocalDateTime.class))).thenReturn(0);
+        when(paymentRepository.findStatusById(1L)).thenReturn(Optional.of(Payment.PaymentStatus.COMPLETED));
+
+        InvalidStatusTransitionException error = assertThrows(InvalidStatusTransitionException.class,
+                () -> paymentService.updatePaymentStatus(1L, Payment.PaymentStatus.COMPLETED));
+
+        assertTrue(error.getMessage().contains("from COMPLETED"), error.getMessage());
+        verify(paymentRepository, never()).findResponseById(anyLong());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    void testUpdatePaymentStatus_RejectsIllegalTransition() {
+        // Arrange: nothing may move back to PENDING, so no update is even attempted
+        when(paymentRepository.findStatusById(1L)).thenReturn(Optional.of(Payment.PaymentStatus.COMPLETED));
+
+        // Act & Assert
+        assertThrows(InvalidStatusTransitionException.class,
+                () -> paymentService.updatePaymentStatus(1L, Payment.PaymentStatus.PENDING));
+        verify(eventPublisher, never()).publishEvent(any());
+        verify(paymentRepository, never()).transition(anyLong(), any(), any(), any());
+        assertTrue(Payment.PaymentStatus.sourcesOf(Payment.PaymentStatus.PENDING).isEmpty());
+        assertFalse(Payment.PaymentStatus.COMPLETED.canTransitionTo(Payment.PaymentStatus.PENDING));
     }
 
     @Test
     void testDeletePayment_Success() {
         // Arrange
-        when(paymentRepository.existsById(1L)).thenReturn(true);
-        doNothing().when(paymentRepository).deleteById(1L);
+        when(paymentRepository.findById(1L)).thenReturn(Optional.of(payment));
+        doNothing().when(paymentRepository).delete(payment);
 
         // Act
         paymentService.deletePayment(1L);
 
         // Assert
-        verify(paymentRepository, times(1)).existsById(1L);
-        verify(paymentRepository, times(1)).deleteById(1L);
+        verify(paymentRepository, times(1)).findById(1L);
+        verify(paymentRepository, times(1)).delete(payment);
+        verify(paymentStatistics, times(1)).recordDeleted(Payment.PaymentStatus.PENDING, "INR", new BigDecimal("1000.00"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.banking.payment;
+
+import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.dto.PaymentStatsEntry;
+import com.banking.payment.dto.PaymentStatsResponse;
+import com.banking.payment.event.PaymentStatusChangedEvent;
+import com.banking.payment.metrics.PaymentStatistics;
+import com.banking.payment.model.Payment;
+import com.banking.payment.model.PaymentStatsCheckpoint;
+import com.banking.payment.model.StatsGranularity;
+import com.banking.payment.repository.ArchivedPaymentRepository;
+import com.banking.payment.repository.PaymentRepository;
+import com.banking.payment.repository.PaymentStatsCheckpointRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaymentStatisticsTest {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private ArchivedPaymentRepository archivedPaymentRepository;
+
+    @Mock
+    private PaymentStatsCheckpointRepository checkpointRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void testTransitionsMovePaymentsBetweenStatuses() {
+        when(paymentRepository.aggregateByStatusAndCurrency()).thenReturn(List.of(
+                new PaymentStatsEntry(Payment.PaymentStatus.COMPLETED, "INR", 3L, new BigDecimal("300.00"))));
+        PaymentStatistics statistics = newStatistics();
+
+        statistics.recordCreated(List.of(payment("25.50")));
+        statistics.onStatusChanged(event("25.50", Payment.PaymentStatus.PENDING, Payment.PaymentStatus.PROCESSING));
+        statistics.onStatusChanged(event("25.50", Payment.PaymentStatus.PROCESSING, Payment.PaymentStatus.COMPLETED));
+
+        PaymentStatsResponse stats = statistics.snapshot(StatsGranularity.HOUR);
+        assertEquals(new PaymentStatsEntry(null, Payment.PaymentStatus.COMPLETED, "INR", 4, new BigDecimal("325.50")),
+                total(stats, Payment.PaymentStatus.COMPLETED));
+        assertEquals(0, total(stats, Payment.PaymentStatus.PENDING).getCount());
+        assertEquals(0, total(stats, Payment.PaymentStatus.PROCESSING).getCount());
+        // Buckets count entries into a status, so each status saw the payment once this hour
+        assertEquals(3, stats.getBuckets().size());
+        assertTrue(stats.getBuckets().stream().allMatch(e -> e.getCount() == 1));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRestartRebuildsTotalsFromTablesAndRestoresBuckets() {
+        PaymentStatistics statistics = newStatistics();
+        statistics.recordCreated(List.of(payment("10.00"), payment("5.25")));
+        statistics.checkpoint();
+
+        ArgumentCaptor<List<PaymentStatsCheckpoint>> saved = ArgumentCaptor.forClass(List.class);
+        verify(checkpointRepository).deleteByInstanceId("node-1");
+        verify(checkpointRepository).saveAll(saved.capture());
+        assertTrue(saved.getValue().stream().allMatch(row -> row.getGranularity() != null), "Totals are not checkpointed");
+
+        // Stale totals row from an earlier release, and a payment another node completed meanwhile
+        List<PaymentStatsCheckpoint> checkpoint = new ArrayList<>(saved.getValue());
+        checkpoint.add(PaymentStatsCheckpoint.builder().instanceId("node-1").status(Payment.PaymentStatus.PENDING)
+                .currency("INR").paymentCount(2).amountMinor(1525).build());
+        when(checkpointRepository.findByInstanceId("node-1")).thenReturn(checkpoint);
+        when(paymentRepository.aggregateByStatusAndCurrency()).thenReturn(List.of(
+                new PaymentStatsEntry(Payment.PaymentStatus.PENDING, "INR", 1L, new BigDecimal("10.00")),
+                new PaymentStatsEntry(Payment.PaymentStatus.COMPLETED, "INR", 1L, new BigDecimal("5.25"))));
+
+        PaymentStatistics restored = newStatistics();
+
+        PaymentStatsResponse stats = restored.snapshot(StatsGranularity.MINUTE);
+        assertEquals("node-1", stats.getInstanceId());
+        assertEquals(new PaymentStatsEntry(null, Payment.PaymentStatus.PENDING, "INR", 1, new BigDecimal("10.00")),
+                total(stats, Payment.PaymentStatus.PENDING));
+        assertEquals(1, total(stats, Payment.PaymentStatus.COMPLETED).getCount());
+        assertEquals(statistics.snapshot(StatsGranularity.MINUTE).getBuckets(), stats.getBuckets());
+    }
+
+    @Test
+    void testMissingInstanceIdFallsBackToOneOfThisNode() {
+        for (String instanceId : new String[]{"", "  ", "default"}) {
+            String derived = new PaymentStatistics(paymentRepository, archivedPaymentRepository, checkpointRepository,
+                    transactionManager, instanceId).snapshot(StatsGranularity.MINUTE).getInstanceId();
+            assertFalse(derived.isBlank());
+            assertNotEquals("default", derived);
+        }
+        assertEquals("node-1", newStatistics().snapshot(StatsGranularity.MINUTE).getInstanceId());
+    }
+
+    private PaymentStatistics newStatistics() {
+        PaymentStatistics statistics = new PaymentStatistics(paymentRepository, archivedPaymentRepository,
+                checkpointRepository, transactionManager, "node-1");
+        statistics.restore();
+        return statistics;
+    }
+
+    private static PaymentStatsEntry total(PaymentStatsResponse stats, Payment.PaymentStatus status) {
+        return stats.getTotals().stream()
+                .filter(e -> e.getStatus() == status)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static Payment payment(String amount) {
+        return Payment.builder()
+                .id(1L)
+                .transactionId("TXN-1")
+                .senderAccount("1234567890")
+                .receiverAccount("0987654321")
+                .amount(new BigDecimal(amount))
+                .currency("INR")
+                .status(Payment.PaymentStatus.PENDING)
+                .build();
+    }
+
+    private static PaymentStatusChangedEvent event(String amount, Payment.PaymentStatus from, Payment.PaymentStatus to) {
+        Payment payment = payment(amount);
+        payment.setStatus(to);
+        return new PaymentStatusChangedEvent(1L, "TXN-1", from, to, PaymentResponse.fromEntity(payment));
+    }
+}
@@ -0,0 +1,175 @@
+package com.banking.payment;
+
+import com.banking.payment.dto.PaymentResponse;
+import com.banking.payment.event.PaymentStatusChangedEvent;
+import com.banking.payment.model.Payment;
+import com.banking.payment.service.PaymentStatusBroadcaster;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentStatusBroadcasterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PaymentStatusBroadcaster broadcaster = new PaymentStatusBroadcaster(meterRegistry, 4, 2, 60_000, 60_000);
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void testEventsAreRoutedByTransactionAndAccount() throws Exception {
+        RecordingEmitter transaction = new RecordingEmitter();
+        RecordingEmitter account = new RecordingEmitter();
+        RecordingEmitter all = new RecordingEmitter();
+        broadcaster.subscribeToTransaction("TXN-1", transaction);
+        broadcaster.subscribeToAccount("2222222222", account);
+        broadcaster.subscribeToAll(all);
+
+        broadcaster.onStatusChanged(event("TXN-1", "1111111111", "2222222222", Payment.PaymentStatus.PROCESSING));
+        broadcaster.onStatusChanged(event("TXN-2", "3333333333", "4444444444", Payment.PaymentStatus.PROCESSING));
+        broadcaster.onStatusChanged(event("TXN-1", "1111111111", "2222222222", Payment.PaymentStatus.COMPLETED));
+
+        assertTrue(transaction.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("TXN-1:PROCESSING", "TXN-1:COMPLETED"), transaction.received);
+        awaitSize(account, 2);
+        assertEquals(List.of("TXN-1:PROCESSING", "TXN-1:COMPLETED"), account.received);
+        awaitSize(all, 3);
+        assertEquals(List.of("TXN-1:PROCESSING", "TXN-2:PROCESSING", "TXN-1:COMPLETED"), all.received);
+        assertEquals(2, broadcaster.subscriberCount());
+    }
+
+    @Test
+    void testSnapshotIsSkippedWhenALiveEventArrivedFirst() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        PaymentStatusBroadcaster.Subscription subscription = broadcaster.subscribeToTransaction("TXN-1", emitter);
+
+        broadcaster.onStatusChanged(event("TXN-1", "1111111111", "2222222222", Payment.PaymentStatus.PROCESSING));
+        subscription.sendCurrent(event("TXN-1", "1111111111", "2222222222", Payment.PaymentStatus.PENDING).payment());
+
+        awaitSize(emitter, 1);
+        Thread.sleep(100);
+        assertEquals(List.of("TXN-1:PROCESSING"), emitter.received);
+    }
+
+    @Test
+    void testSlowSubscriberIsDisconnectedWithoutBlockingPublisher() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingEmitter slow = new RecordingEmitter(release);
+        RecordingEmitter fast = new RecordingEmitter();
+        broadcaster.subscribeToAll(slow);
+        broadcaster.subscribeToAccount("1111111111", fast);
+
+        long started = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            broadcaster.onStatusChanged(event("TXN-" + i, "1111111111", "2222222222", Payment.PaymentStatus.PROCESSING));
+            awaitSize(fast, i + 1);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        release.countDown();
+
+        assertTrue(elapsedMs < 5_000, "publishing was held up by a slow subscriber: " + elapsedMs + " ms");
+        assertTrue(slow.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(slow.received.size() < 100);
+        assertEquals(100, fast.received.size());
+        assertEquals(1.0, meterRegistry.get("payment.events.overflow.disconnects").counter().count());
+        assertEquals(1.0, meterRegistry.get("payment.events.subscribers").gauge().value());
+    }
+
+    @Test
+    void testStalledSendIsCutOffSoOtherSubscribersAreServed() throws Exception {
+        // One sender thread, so a send that never returns would starve every other subscriber
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        PaymentStatusBroadcaster single = new PaymentStatusBroadcaster(registry, 4, 1, 60_000, 200);
+        try {
+            RecordingEmitter stalled = new RecordingEmitter(new CountDownLatch(1));
+            RecordingEmitter healthy = new RecordingEmitter();
+            single.subscribeToAll(stalled);
+            single.subscribeToAccount("1111111111", healthy);
+
+            single.onStatusChanged(event("TXN-1", "1111111111", "2222222222", Payment.PaymentStatus.PROCESSING));
+            Thread.sleep(300);
+            assertEquals(List.of(), healthy.received);
+
+            single.disconnectStalledSubscribers();
+
+            assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+            awaitSize(healthy, 1);
+            assertEquals(List.of("TXN-1:PROCESSING"), healthy.received);
+            assertEquals(1, single.subscriberCount());
+            assertEquals(1.0, registry.get("payment.events.stalled.disconnects").counter().count());
+
+            // The freed thread keeps serving the remaining subscriber
+            single.onStatusChanged(event("TXN-2", "1111111111", "2222222222", Payment.PaymentStatus.PROCESSING));
+            awaitSize(healthy, 2);
+        } finally {
+            single.shutdown();
+        }
+    }
+
+    private static void awaitSize(RecordingEmitter emitter, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (emitter.received.size() < size && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(emitter.received.size() >= size, "expected " + size + " events, got " + emitter.received);
+    }
+
+    private static PaymentStatusChangedEvent event(String transactionId, String sender, String receiver,
+                                                   Payment.PaymentStatus status) {
+        PaymentResponse payment = PaymentResponse.builder()
+                .id((long) transactionId.hashCode())
+                .transactionId(transactionId)
+                .senderAccount(sender)
+                .receiverAccount(receiver)
+                .amount(new BigDecimal("10.00"))
+                .currency("INR")
+                .status(status)
+                .build();
+        return new PaymentStatusChangedEvent(payment.getId(), transactionId, null, status, payment);
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> received = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private final CountDownLatch release;
+
+        RecordingEmitter() {
+            this(new CountDownLatch(0));
+        }
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(PaymentStatusChangedEvent.class::isInstance)
+                    .map(PaymentStatusChangedEvent.class::cast)
+                    .forEach(event -> received.add(event.transactionId() + ":" + event.newStatus()));
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.banking.payment;
+
+import com.banking.payment.config.JmsConfig;
+import com.banking.payment.metrics.QueueDepthMonitor;
+import com.banking.payment.repository.OutboxMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.jms.Connection;
+import jakarta.jms.MessageProducer;
+import jakarta.jms.Session;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.apache.activemq.broker.BrokerService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** {@link QueueDepthMonitor} reading QueueSize from an embedded broker registered in this JVM's MBean server. */
+class QueueDepthMonitorTest {
+
+    private BrokerService broker;
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        broker = new BrokerService();
+        broker.setBrokerName("depth-test");
+        broker.setPersistent(false);
+        broker.setUseJmx(true);
+        broker.getManagementContext().setCreateConnector(false);
+        broker.start();
+        connection = new ActiveMQConnectionFactory("vm://depth-test?create=false").createConnection();
+        connection.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        connection.close();
+        broker.stop();
+    }
+
+    @Test
+    void depthIsTheBrokerQueueSizeWithoutBrowsing() throws Exception {
+        Session session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        MessageProducer producer = session.createProducer(session.createQueue(JmsConfig.PAYMENT_PROCESSING_QUEUE));
+        for (int i = 0; i < 12_000; i++) {
+            producer.send(session.createTextMessage("payment " + i));
+        }
+
+        QueueDepthMonitor monitor = new QueueDepthMonitor(Mockito.mock(OutboxMessageRepository.class),
+                new SimpleMeterRegistry(), "vm://depth-test?broker.persistent=false", "ignored", "");
+
+        // More than the old browse limit of 10000, read as one attribute
+        assertEquals(12_000, monitor.refreshDepth(JmsConfig.PAYMENT_PROCESSING_QUEUE));
+        assertEquals(12_000, monitor.depth(JmsConfig.PAYMENT_PROCESSING_QUEUE));
+        // Not created on the broker yet
+        assertEquals(0, monitor.refreshDepth(JmsConfig.PAYMENT_NOTIFICATION_QUEUE));
+    }
+
+    @Test
+    void unreachableBrokerKeepsTheLastKnownDepth() {
+        QueueDepthMonitor monitor = new QueueDepthMonitor(Mockito.mock(OutboxMessageRepository.class),
+                new SimpleMeterRegistry(), "tcp://localhost:61616", "localhost",
+                "service:jmx:rmi:///jndi/rmi://localhost:1/jmxrmi");
+
+        assertEquals(0, monitor.refreshDepth(JmsConfig.PAYMENT_PROCESSING_QUEUE));
+        monitor.closeConnector();
+    }
+}
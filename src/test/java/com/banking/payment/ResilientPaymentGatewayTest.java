@@ -0,0 +1,121 @@
+package com.banking.payment;
+
+import com.banking.payment.gateway.AdaptiveConcurrencyLimiter;
+import com.banking.payment.gateway.CircuitBreaker;
+import com.banking.payment.gateway.GatewayRejectedException;
+import com.banking.payment.gateway.GatewayResult;
+import com.banking.payment.gateway.ResilientPaymentGateway;
+import com.banking.payment.model.Payment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResilientPaymentGatewayTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testLimitGrowsWhileLatencyHoldsAndShrinksWhenItClimbs() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 500, 2.0, 0.2);
+
+        runAtLimit(limiter, 200, TimeUnit.MILLISECONDS.toNanos(100));
+        int grown = limiter.getLimit();
+        assertTrue(grown > 100, "limit should grow under steady latency, was " + grown);
+
+        // Queueing at the gateway: latency five times the baseline
+        runAtLimit(limiter, 200, TimeUnit.MILLISECONDS.toNanos(500));
+        int shrunk = limiter.getLimit();
+        assertTrue(shrunk < grown / 2, "limit should shrink when latency climbs, was " + shrunk);
+
+        assertTrue(limiter.tryAcquire());
+        limiter.onComplete(0, true);
+        assertTrue(limiter.getLimit() < shrunk);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testCallsOverTheLimitWaitInTheBulkheadAndOverflowIsRejected() {
+        List<CompletableFuture<GatewayResult>> responses = new ArrayList<>();
+        ResilientPaymentGateway gateway = new ResilientPaymentGateway(payment -> {
+            CompletableFuture<GatewayResult> response = new CompletableFuture<>();
+            responses.add(response);
+            return response;
+        }, meterRegistry, 60_000, new AdaptiveConcurrencyLimiter(2, 2, 2, 2.0, 0.2), 1,
+                new CircuitBreaker(10, 10, 50, 60_000, 1, System::nanoTime));
+
+        CompletableFuture<GatewayResult> first = gateway.process(new Payment());
+        gateway.process(new Payment());
+        CompletableFuture<GatewayResult> queued = gateway.process(new Payment());
+        CompletableFuture<GatewayResult> rejected = gateway.process(new Payment());
+
+        assertEquals(2, responses.size());
+        assertEquals(1, gateway.queued());
+        assertRejected(rejected, "bulkhead");
+
+        responses.get(0).complete(GatewayResult.approve());
+        assertTrue(first.join().approved());
+        assertEquals(3, responses.size(), "queued call should start once a permit is free");
+        assertEquals(0, gateway.queued());
+
+        responses.get(2).complete(GatewayResult.decline("no"));
+        assertFalse(queued.join().approved());
+        assertEquals(1.0, meterRegistry.get("payment.gateway.rejected").tag("reason", "bulkhead").counter().count());
+        assertEquals(2.0, meterRegistry.get("payment.gateway.limit").gauge().value());
+    }
+
+    @Test
+    void testCircuitOpensOnErrorsAndClosesAfterSuccessfulTrials() {
+        AtomicLong clock = new AtomicLong();
+        CircuitBreaker breaker = new CircuitBreaker(10, 4, 50, 1_000, 2, clock::get);
+        boolean[] failing = {true};
+        ResilientPaymentGateway gateway = new ResilientPaymentGateway(payment -> failing[0]
+                ? CompletableFuture.failedFuture(new IllegalStateException("gateway down"))
+                : CompletableFuture.completedFuture(GatewayResult.approve()),
+                meterRegistry, 60_000, new AdaptiveConcurrencyLimiter(10, 1, 10, 2.0, 0.2), 10, breaker);
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(CompletionException.class, () -> gateway.process(new Payment()).join());
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertRejected(gateway.process(new Payment()), "circuit_open");
+        // The rejection says when the breaker lets trial calls through, for the retry to wait that out
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(400));
+        CompletionException rejection = assertThrows(CompletionException.class, () -> gateway.process(new Payment()).join());
+        assertEquals(600, ((GatewayRejectedException) rejection.getCause()).getRetryAfterMs());
+
+        failing[0] = false;
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        assertTrue(gateway.process(new Payment()).join().approved());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(gateway.process(new Payment()).join().approved());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    // Keeps the limiter saturated: every completion is reported with the limit fully in use
+    private static void runAtLimit(AdaptiveConcurrencyLimiter limiter, int samples, long rttNanos) {
+        for (int i = 0; i < samples; i++) {
+            int started = 0;
+            while (limiter.tryAcquire()) {
+                started++;
+            }
+            limiter.onComplete(rttNanos, false);
+            for (int j = 1; j < started; j++) {
+                limiter.release();
+            }
+        }
+    }
+
+    private static void assertRejected(CompletableFuture<GatewayResult> result, String reason) {
+        CompletionException error = assertThrows(CompletionException.class, result::join);
+        GatewayRejectedException rejected = assertInstanceOf(GatewayRejectedException.class, error.getCause());
+        assertEquals(reason, rejected.getReason());
+    }
+}
@@ -0,0 +1,91 @@
+package com.banking.payment.ledger;
+
+import com.banking.payment.model.Payment;
+import com.banking.payment.repository.JournalEntryRepository;
+import com.banking.payment.repository.LedgerSnapshotBalanceRepository;
+import com.banking.payment.repository.LedgerSnapshotRepository;
+import com.banking.payment.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// A restarted ledger journals with sequences the context's own ledger would reuse, so it gets its own database
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:ledger-reconcile;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "payment.ledger.enabled=true",
+        "payment.ledger.snapshot-interval-ms=3600000"
+})
+class PaymentLedgerReconciliationTest {
+
+    @Autowired
+    private PaymentLedger paymentLedger;
+
+    @Autowired
+    private LedgerJournalWriter journalWriter;
+
+    @Autowired
+    private JournalEntryRepository journalEntryRepository;
+
+    @Autowired
+    private LedgerSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private LedgerSnapshotBalanceRepository snapshotBalanceRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void testRecoveryReconcilesHoldsWithPaymentStatuses() throws Exception {
+        paymentLedger.deposit("6000000001", "GBP", new BigDecimal("100.00"));
+        Payment completed = save("TXN-LEDGER-DONE", "10.00", Payment.PaymentStatus.COMPLETED);
+        Payment failed = save("TXN-LEDGER-FAILED", "20.00", Payment.PaymentStatus.FAILED);
+        Payment processing = save("TXN-LEDGER-PROCESSING", "30.00", Payment.PaymentStatus.PROCESSING);
+        Payment unheld = save("TXN-LEDGER-UNHELD", "5.00", Payment.PaymentStatus.PROCESSING);
+        // The statuses were stored but the process died before the ledger steps
+        assertTrue(paymentLedger.hold(completed));
+        assertTrue(paymentLedger.hold(failed));
+        assertTrue(paymentLedger.hold(processing));
+        assertTrue(journalWriter.awaitFlushed(journalWriter.lastSequence(), Duration.ofSeconds(10)));
+
+        LedgerJournalWriter restartedWriter = new LedgerJournalWriter(journalEntryRepository, transactionManager, 500, 1000);
+        PaymentLedger restarted = new PaymentLedger(restartedWriter, journalEntryRepository,
+                snapshotRepository, snapshotBalanceRepository, paymentRepository, transactionManager);
+        try {
+            restarted.recover();
+
+            assertEquals(new BigDecimal("10.00"), restarted.balance("6000000002", "GBP"), "Completed one settled");
+            assertEquals(new BigDecimal("55.00"), restarted.balance("6000000001", "GBP"), "Failed one released, 5.00 held again");
+            assertTrue(restarted.isHeld(processing.getId()));
+            assertTrue(restarted.isHeld(unheld.getId()));
+            assertFalse(restarted.isHeld(completed.getId()));
+            assertFalse(restarted.isHeld(failed.getId()));
+        } finally {
+            restartedWriter.shutdown();
+        }
+    }
+
+    private Payment save(String transactionId, String amount, Payment.PaymentStatus status) {
+        return paymentRepository.save(Payment.builder()
+                .transactionId(transactionId)
+                .senderAccount("6000000001")
+                .receiverAccount("6000000002")
+                .amount(new BigDecimal(amount))
+                .currency("GBP")
+                .status(status)
+                .build());
+    }
+}
@@ -0,0 +1,153 @@
+package com.banking.payment.ledger;
+
+import com.banking.payment.model.JournalEntry;
+import com.banking.payment.model.Payment;
+import com.banking.payment.repository.JournalEntryRepository;
+import com.banking.payment.repository.LedgerSnapshotBalanceRepository;
+import com.banking.payment.repository.LedgerSnapshotRepository;
+import com.banking.payment.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Own database, shared vm broker: close the context so its listeners stop taking other tests' messages
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:ledger;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "payment.ledger.enabled=true",
+        "payment.ledger.snapshot-interval-ms=3600000"
+})
+class PaymentLedgerTest {
+
+    @Autowired
+    private PaymentLedger paymentLedger;
+
+    @Autowired
+    private LedgerJournalWriter journalWriter;
+
+    @Autowired
+    private JournalEntryRepository journalEntryRepository;
+
+    @Autowired
+    private LedgerSnapshotRepository snapshotRepository;
+
+    @Autowired
+    private LedgerSnapshotBalanceRepository snapshotBalanceRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void testHoldSettleAndRelease() throws Exception {
+        paymentLedger.deposit("1111111111", "INR", new BigDecimal("100.00"));
+
+        assertTrue(paymentLedger.hold(payment(1L, "1111111111", "2222222222", "60.00", "INR")));
+        assertFalse(paymentLedger.hold(payment(2L, "1111111111", "2222222222", "60.00", "INR")), "Only 40.00 left");
+        assertEquals(new BigDecimal("40.00"), paymentLedger.balance("1111111111", "INR"));
+
+        paymentLedger.settle(payment(1L, "1111111111", "2222222222", "60.00", "INR"));
+        assertEquals(new BigDecimal("60.00"), paymentLedger.balance("2222222222", "INR"));
+        assertEquals(new BigDecimal("0.00"), paymentLedger.balance(PaymentLedger.SUSPENSE_ACCOUNT, "INR"));
+
+        assertTrue(paymentLedger.hold(payment(3L, "2222222222", "1111111111", "25.50", "INR")));
+        assertTrue(paymentLedger.release(payment(3L, "2222222222", "1111111111", "25.50", "INR")));
+        assertEquals(new BigDecimal("60.00"), paymentLedger.balance("2222222222", "INR"));
+
+        // Repeated steps of a redelivered payment post nothing
+        assertFalse(paymentLedger.settle(payment(1L, "1111111111", "2222222222", "60.00", "INR")));
+        assertFalse(paymentLedger.release(payment(3L, "2222222222", "1111111111", "25.50", "INR")));
+        assertTrue(paymentLedger.hold(payment(4L, "1111111111", "2222222222", "10.00", "INR")));
+        assertTrue(paymentLedger.hold(payment(4L, "1111111111", "2222222222", "10.00", "INR")));
+        assertEquals(new BigDecimal("30.00"), paymentLedger.balance("1111111111", "INR"));
+        assertTrue(paymentLedger.release(payment(4L, "1111111111", "2222222222", "10.00", "INR")));
+
+        // Every posting is journaled as two legs that cancel out
+        assertTrue(journalWriter.awaitFlushed(journalWriter.lastSequence(), Duration.ofSeconds(10)));
+        List<JournalEntry> journal = journalEntryRepository.findAll();
+        assertEquals(0, journal.stream().mapToLong(JournalEntry::getAmountMinor).sum());
+    }
+
+    @Test
+    void testBalancesRecoverFromSnapshotAndJournalTail() throws Exception {
+        paymentLedger.deposit("3333333333", "USD", new BigDecimal("500.00"));
+        paymentLedger.hold(payment(10L, "3333333333", "4444444444", "120.00", "USD"));
+        paymentLedger.settle(payment(10L, "3333333333", "4444444444", "120.00", "USD"));
+        paymentLedger.snapshot();
+
+        // Postings after the snapshot are only in the journal tail
+        paymentLedger.hold(payment(11L, "3333333333", "4444444444", "80.25", "USD"));
+        paymentLedger.settle(payment(11L, "3333333333", "4444444444", "80.25", "USD"));
+        paymentLedger.hold(payment(12L, "4444444444", "3333333333", "10.00", "USD"));
+        assertTrue(journalWriter.awaitFlushed(journalWriter.lastSequence(), Duration.ofSeconds(10)));
+
+        LedgerJournalWriter restartedWriter = new LedgerJournalWriter(journalEntryRepository, transactionManager, 500, 1000);
+        PaymentLedger restarted = new PaymentLedger(restartedWriter, journalEntryRepository,
+                snapshotRepository, snapshotBalanceRepository, paymentRepository, transactionManager);
+        try {
+            restarted.recover();
+
+            assertEquals(1, snapshotRepository.count());
+            for (String account : List.of("3333333333", "4444444444",
+                    PaymentLedger.SUSPENSE_ACCOUNT, PaymentLedger.EXTERNAL_ACCOUNT)) {
+                assertEquals(paymentLedger.balance(account, "USD"), restarted.balance(account, "USD"), account);
+            }
+            assertEquals(new BigDecimal("299.75"), restarted.balance("3333333333", "USD"));
+            assertEquals(journalWriter.lastSequence(), restartedWriter.lastSequence());
+        } finally {
+            restartedWriter.shutdown();
+        }
+    }
+
+    @Test
+    void testConcurrentTransfersConserveMoney() throws Exception {
+        List<String> accounts = List.of("5000000001", "5000000002", "5000000003", "5000000004");
+        accounts.forEach(account -> paymentLedger.deposit(account, "EUR", new BigDecimal("1000.00")));
+
+        List<Thread> threads = accounts.stream().map(sender -> new Thread(() -> {
+            long firstId = 100_000L * (accounts.indexOf(sender) + 1);
+            for (int i = 0; i < 2_000; i++) {
+                String receiver = accounts.get(i % accounts.size());
+                Payment payment = payment(firstId + i, sender, receiver, "1.00", "EUR");
+                if (paymentLedger.hold(payment)) {
+                    paymentLedger.settle(payment);
+                }
+            }
+        })).collect(Collectors.toList());
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Map<String, BigDecimal> balances = accounts.stream()
+                .collect(Collectors.toMap(account -> account, account -> paymentLedger.balance(account, "EUR")));
+        assertEquals(new BigDecimal("4000.00"), balances.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add));
+        balances.values().forEach(balance -> assertTrue(balance.signum() >= 0));
+    }
+
+    private static Payment payment(Long id, String sender, String receiver, String amount, String currency) {
+        return Payment.builder()
+                .id(id)
+                .transactionId("TXN-LEDGER-" + id)
+                .senderAccount(sender)
+                .receiverAccount(receiver)
+                .amount(new BigDecimal(amount))
+                .currency(currency)
+                .status(Payment.PaymentStatus.PROCESSING)
+                .build();
+    }
+}
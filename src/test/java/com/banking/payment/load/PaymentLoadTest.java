@@ -0,0 +1,293 @@
+package com.banking.payment.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the full stack (H2, embedded broker, simulated gateway) at a fixed open-loop rate and
+ * reports request and end-to-end latency. Run with {@code mvn -Pload test}; settings are system
+ * properties, e.g. {@code -Dload.rate=200 -Dload.duration-s=60}. Add
+ * {@code -Dspring.threads.virtual.enabled=true} on Java 21 to measure the virtual-thread mode.
+ *
+ * <p>Each create is scheduled at {@code start + i / rate} and its latency is measured from that
+ * intended time, so a stalled server shows up as latency instead of a lower send rate. End-to-end
+ * latency runs from the intended time to the COMPLETED/FAILED event on the {@code /events} stream.
+ */
+@Tag("load")
+@DirtiesContext
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(locations = "classpath:application-test.properties", properties = {
+        "spring.datasource.url=jdbc:h2:mem:load;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "payment.events.buffer-size=100000",
+        // The /events response is only committed by its first event; a heartbeat opens it promptly
+        "payment.events.heartbeat-interval-ms=1000",
+        "server.shutdown=immediate",
+        "logging.level.root=WARN",
+        "logging.level.com.banking.payment=WARN"
+})
+class PaymentLoadTest {
+
+    private static final Set<String> FINAL_STATUSES = Set.of("COMPLETED", "FAILED");
+    private static final long MAX_TRACKED_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final int rate = Integer.getInteger("load.rate", 100);
+    private final int durationSeconds = Integer.getInteger("load.duration-s", 30);
+    private final int warmupSeconds = Integer.getInteger("load.warmup-s", 5);
+    private final int lookupsPerPayment = Integer.getInteger("load.lookups-per-payment", 2);
+    private final int accounts = Integer.getInteger("load.accounts", 1000);
+    private final int settleTimeoutSeconds = Integer.getInteger("load.settle-timeout-s", 120);
+
+    @LocalServerPort
+    private int port;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Histogram createLatency = new ConcurrentHistogram(MAX_TRACKED_NANOS, 3);
+    private final Histogram lookupLatency = new ConcurrentHistogram(MAX_TRACKED_NANOS, 3);
+    private final Histogram endToEndLatency = new ConcurrentHistogram(MAX_TRACKED_NANOS, 3);
+    private final Map<String, Long> intendedStartByTransaction = new ConcurrentHashMap<>();
+    private final Map<String, Long> finalStatusAt = new ConcurrentHashMap<>();
+    private final AtomicLong errors = new AtomicLong();
+
+    @Test
+    void sustainedPaymentLoad() throws Exception {
+        ExecutorService clientExecutor = Executors.newFixedThreadPool(16);
+        HttpClient client = HttpClient.newBuilder()
+                .executor(clientExecutor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        try (EventStream events = EventStream.open(client, uri("/api/payments/events"), this::onEvent)) {
+            int total = rate * durationSeconds;
+            int warmup = rate * warmupSeconds;
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+
+            for (int i = 0; i < total; i++) {
+                long intendedStart = start + i * intervalNanos;
+                long delay = intendedStart - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                submit(client, i, intendedStart, i >= warmup);
+            }
+
+            int measured = total - warmup;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(settleTimeoutSeconds);
+            while (settled() < measured && System.nanoTime() < deadline) {
+                Thread.sleep(200);
+            }
+
+            List<Long> finals = intendedStartByTransaction.keySet().stream()
+                    .map(finalStatusAt::get)
+                    .filter(Objects::nonNull)
+                    .sorted()
+                    .toList();
+            intendedStartByTransaction.forEach((transactionId, intendedStart) -> {
+                Long finalAt = finalStatusAt.get(transactionId);
+                if (finalAt != null) {
+                    endToEndLatency.recordValue(Math.min(finalAt - intendedStart, MAX_TRACKED_NANOS));
+                }
+            });
+            long settled = endToEndLatency.getTotalCount();
+            // Completion rate between the first and last final status, excluding the gateway ramp-up
+            double throughput = finals.size() < 2 ? 0
+                    : (finals.size() - 1) / ((finals.get(finals.size() - 1) - finals.get(0)) / 1e9);
+
+            String report = report(total, warmup, settled, throughput, measured - settled, events.failure());
+            System.out.println(report);
+            Files.writeString(Path.of("target", "load-report.txt"), report);
+
+            assertEquals(0, errors.get(), "request errors");
+            assertEquals(measured, settled, "payments without a final status after " + settleTimeoutSeconds + " s");
+            assertGate("load.max-create-p99-ms", createLatency.getValueAtPercentile(99.0));
+            assertGate("load.max-e2e-p99-ms", endToEndLatency.getValueAtPercentile(99.0));
+            String minThroughput = System.getProperty("load.min-throughput");
+            if (minThroughput != null) {
+                assertTrue(throughput >= Double.parseDouble(minThroughput),
+                        String.format("throughput %.1f/s below %s/s", throughput, minThroughput));
+            }
+        } finally {
+            clientExecutor.shutdownNow();
+        }
+    }
+
+    private void submit(HttpClient client, int index, long intendedStart, boolean measured) {
+        String sender = String.format("1%09d", index % accounts);
+        String receiver = String.format("2%09d", (index * 7) % accounts);
+        String body = String.format(
+                "{\"senderAccount\":\"%s\",\"receiverAccount\":\"%s\",\"amount\":%d.00,\"currency\":\"USD\"}",
+                sender, receiver, 10 + index % 90);
+        HttpRequest request = HttpRequest.newBuilder(uri("/api/payments"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, error) -> {
+            long now = System.nanoTime();
+            if (error != null || response.statusCode() != 201) {
+                errors.incrementAndGet();
+                return;
+            }
+            if (!measured) {
+                return;
+            }
+            createLatency.recordValue(Math.min(now - intendedStart, MAX_TRACKED_NANOS));
+            try {
+                JsonNode payment = objectMapper.readTree(response.body());
+                intendedStartByTransaction.put(payment.get("transactionId").asText(), intendedStart);
+                lookup(client, payment);
+            } catch (IOException e) {
+                errors.incrementAndGet();
+            }
+        });
+    }
+
+    // Alternates between the two lookup endpoints; measured from send, as they follow a create
+    private void lookup(HttpClient client, JsonNode payment) {
+        for (int i = 0; i < lookupsPerPayment; i++) {
+            String path = i % 2 == 0
+                    ? "/api/payments/" + payment.get("id").asText()
+                    : "/api/payments/transaction/" + payment.get("transactionId").asText();
+            long sent = System.nanoTime();
+            client.sendAsync(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        if (error != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        } else {
+                            lookupLatency.recordValue(Math.min(System.nanoTime() - sent, MAX_TRACKED_NANOS));
+                        }
+                    });
+        }
+    }
+
+    private void onEvent(JsonNode event) {
+        if (FINAL_STATUSES.contains(event.path("newStatus").asText())) {
+            finalStatusAt.putIfAbsent(event.path("transactionId").asText(), System.nanoTime());
+        }
+    }
+
+    private long settled() {
+        return intendedStartByTransaction.keySet().stream().filter(finalStatusAt::containsKey).count();
+    }
+
+    private String report(int total, int warmup, long settled, double throughput, long unsettled, String streamFailure) {
+        StringBuilder report = new StringBuilder()
+                .append(String.format("%n=== Payment load: %d payments/s for %d s (%d s warm-up), %d payments, %s threads ===%n",
+                        rate, durationSeconds, warmupSeconds, total, virtualThreads ? "virtual" : "platform"))
+                .append(String.format("%-18s %8s %10s %10s %10s %10s%n", "latency (ms)", "count", "p50", "p99", "p99.9", "max"));
+        row(report, "create request", createLatency);
+        row(report, "lookup request", lookupLatency);
+        row(report, "end-to-end", endToEndLatency);
+        report.append(String.format("sustained: %.1f payments/s settled (%d of %d measured), errors: %d, unsettled: %d%n",
+                throughput, settled, total - warmup, errors.get(), unsettled));
+        if (streamFailure != null) {
+            report.append("event stream ended early: ").append(streamFailure).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    private static void row(StringBuilder report, String name, Histogram histogram) {
+        report.append(String.format("%-18s %8d %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getTotalCount(),
+                millis(histogram.getValueAtPercentile(50.0)), millis(histogram.getValueAtPercentile(99.0)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue())));
+    }
+
+    private static void assertGate(String property, long valueNanos) {
+        String limit = System.getProperty(property);
+        if (limit != null) {
+            assertTrue(millis(valueNanos) <= Double.parseDouble(limit),
+                    String.format("%s: %.2f ms exceeds %s ms", property, millis(valueNanos), limit));
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    /** Reads {@code data:} lines of a Server-Sent Events response on its own thread. */
+    private static final class EventStream implements AutoCloseable {
+
+        private final Stream<String> lines;
+        private final Thread reader;
+        private volatile String failure;
+
+        private EventStream(Stream<String> lines, ObjectMapper objectMapper, Consumer<JsonNode> listener) {
+            this.lines = lines;
+            this.reader = new Thread(() -> {
+                try {
+                    lines.filter(line -> line.startsWith("data:")).forEach(line -> {
+                        try {
+                            listener.accept(objectMapper.readTree(line.substring("data:".length())));
+                        } catch (IOException e) {
+                            failure = e.getMessage();
+                        }
+                    });
+                    failure = "stream closed by server";
+                } catch (RuntimeException e) {
+                    failure = e.getMessage();
+                }
+            }, "load-events");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        static EventStream open(HttpClient client, URI uri, Consumer<JsonNode> listener)
+                throws Exception {
+            HttpRequest request = HttpRequest.newBuilder(uri).header("Accept", "text/event-stream").GET().build();
+            // Returns once headers arrive, i.e. the subscription is registered before load starts
+            HttpResponse<Stream<String>> response = client.sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                    .get(10, TimeUnit.SECONDS);
+            assertEquals(200, response.statusCode());
+            return new EventStream(response.body(), new ObjectMapper(), listener);
+        }
+
+        String failure() {
+            return failure;
+        }
+
+        @Override
+        public void close() {
+            lines.close();
+        }
+    }
+}